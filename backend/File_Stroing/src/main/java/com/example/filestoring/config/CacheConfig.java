@@ -0,0 +1,19 @@
+package com.example.filestoring.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * In-process caches for hot lookups. Size, expiry and statistics come from spring.cache.caffeine.spec;
+ * the names must also be listed in spring.cache.cache-names so their hit/miss metrics are registered.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String USERS = "users";
+    public static final String USERS_BY_EMAIL = "usersByEmail";
+    public static final String EMAIL_TAKEN = "emailTaken";
+    public static final String FILE_DETAILS = "fileDetails";
+    public static final String USER_FILES = "userFiles";
+}
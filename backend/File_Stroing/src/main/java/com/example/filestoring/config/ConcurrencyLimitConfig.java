@@ -0,0 +1,32 @@
+package com.example.filestoring.config;
+
+import com.example.filestoring.util.ThrottledDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+@Configuration
+public class ConcurrencyLimitConfig {
+
+    // Off (0) by default; the virtual profile sets it because virtual threads remove the Tomcat pool's natural cap
+    @Bean
+    public static BeanPostProcessor throttledDataSourcePostProcessor(Environment environment) {
+        Binder binder = Binder.get(environment);
+        int maxConcurrent = binder.bind("app.limits.db-concurrency", Integer.class).orElse(0);
+        long maxWaitMillis = binder.bind("app.limits.db-wait-ms", Long.class).orElse(30_000L);
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (maxConcurrent > 0 && bean instanceof DataSource dataSource
+                        && !(bean instanceof ThrottledDataSource)) {
+                    return new ThrottledDataSource(dataSource, maxConcurrent, maxWaitMillis);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.filestoring.config;
+
+import com.example.filestoring.util.MappedTransfer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+@Configuration
+public class DeliveryConfig {
+
+    // Only with app.delivery.read-engine=mapped; otherwise downloads keep FileChannel.transferTo
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "app.delivery.read-engine", havingValue = "mapped")
+    public MappedTransfer mappedTransfer(@Value("${app.delivery.mapped.window-size:16MB}") DataSize windowSize,
+                                        @Value("${app.delivery.mapped.read-ahead:1}") int readAhead,
+                                        @Value("${app.delivery.mapped.max-windows:1024}") int maxWindows,
+                                        MeterRegistry meterRegistry) {
+        MappedTransfer mappedTransfer = new MappedTransfer(windowSize.toBytes(), readAhead, maxWindows);
+        Gauge.builder("files.delivery.mapped.windows", mappedTransfer, MappedTransfer::mappedWindows)
+                .description("File windows currently memory-mapped for downloads")
+                .register(meterRegistry);
+        return mappedTransfer;
+    }
+}
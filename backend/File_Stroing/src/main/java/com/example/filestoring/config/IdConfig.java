@@ -0,0 +1,14 @@
+package com.example.filestoring.config;
+
+import com.example.filestoring.util.IdGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class IdConfig {
+
+    // Entities generate IDs from @PrePersist, so the node ID lives in IdGenerator rather than a bean
+    public IdConfig(@Value("${app.id.node:0}") int nodeId) {
+        IdGenerator.setNodeId(nodeId);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.filestoring.config;
+
+import com.example.filestoring.config.RateLimitFilter.Endpoint;
+import com.example.filestoring.config.RateLimitFilter.Policy;
+import com.example.filestoring.ratelimit.InMemoryRateLimitStore;
+import com.example.filestoring.ratelimit.RateLimit;
+import com.example.filestoring.ratelimit.RateLimitStore;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.util.unit.DataSize;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+@Configuration
+@ConditionalOnProperty(name = "app.ratelimit.enabled", havingValue = "true", matchIfMissing = true)
+public class RateLimitConfig {
+
+    // The embedded store; a RateLimitStore bean of one's own (shared between instances, or a stand-in) replaces it
+    @Bean
+    @ConditionalOnMissingBean(RateLimitStore.class)
+    public RateLimitStore rateLimitStore(MeterRegistry meterRegistry) {
+        InMemoryRateLimitStore store = new InMemoryRateLimitStore();
+        Gauge.builder("files.ratelimit.buckets", store, InMemoryRateLimitStore::size)
+                .description("Token buckets held for clients that are not back at full")
+                .register(meterRegistry);
+        return store;
+    }
+
+    @Bean
+    public RateLimitFilter rateLimitFilter(RateLimitStore store, MeterRegistry meterRegistry, Environment environment) {
+        Binder binder = Binder.get(environment);
+        Map<Endpoint, Policy> policies = new EnumMap<>(Endpoint.class);
+        policies.put(Endpoint.API, policy(binder, "api", 20, 50, null, 0));
+        policies.put(Endpoint.UPLOAD, policy(binder, "upload", 2, 10, DataSize.ofMegabytes(32), 4));
+        policies.put(Endpoint.DOWNLOAD, policy(binder, "download", 20, 100, DataSize.ofMegabytes(64), 8));
+        return new RateLimitFilter(store, policies, meterRegistry);
+    }
+
+    // app.ratelimit.<endpoint>.* with the given defaults; a byte burst defaults to a quarter second at the rate
+    private Policy policy(Binder binder, String endpoint, double requestsPerSecond, long requestBurst,
+                          DataSize bytesPerSecond, int maxConcurrent) {
+        String prefix = "app.ratelimit." + endpoint + ".";
+        RateLimit requests = new RateLimit(
+                binder.bind(prefix + "requests-per-second", Double.class).orElse(requestsPerSecond),
+                binder.bind(prefix + "request-burst", Long.class).orElse(requestBurst));
+
+        DataSize byteRate = binder.bind(prefix + "bytes-per-second", DataSize.class)
+                .orElse(bytesPerSecond != null ? bytesPerSecond : DataSize.ofBytes(0));
+        DataSize byteBurst = binder.bind(prefix + "byte-burst", DataSize.class)
+                .orElse(DataSize.ofBytes(Math.max(64 * 1024, byteRate.toBytes() / 4)));
+        RateLimit bytes = new RateLimit(byteRate.toBytes(), byteBurst.toBytes());
+
+        return new Policy(requests, bytes,
+                binder.bind(prefix + "max-concurrent", Integer.class).orElse(maxConcurrent));
+    }
+}
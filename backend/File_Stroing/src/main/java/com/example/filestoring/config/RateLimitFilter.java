@@ -0,0 +1,271 @@
+package com.example.filestoring.config;
+
+import com.example.filestoring.ratelimit.BandwidthShaper;
+import com.example.filestoring.ratelimit.RateLimit;
+import com.example.filestoring.ratelimit.RateLimitStore;
+import com.example.filestoring.ratelimit.ShapedRequest;
+import com.example.filestoring.ratelimit.ShapedResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Admission control in front of the file and user endpoints, per client and per kind of endpoint. Every request is
+ * charged to its remote address, and one naming a user in its path to that user as well, so picking another id in
+ * the path never escapes the address's limits. Each kind has a request rate, a byte rate and a cap on the
+ * client's requests in flight. Over a rate or the cap the request gets 429 with Retry-After before any of it is
+ * read. An upload's Content-Length is charged up front; bodies of unknown length and all downloads are paced as
+ * they move instead
+ */
+public class RateLimitFilter extends OncePerRequestFilter implements Ordered {
+
+    public enum Endpoint {
+        API, UPLOAD, DOWNLOAD;
+
+        private final String tag = name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * What one client may do on one kind of endpoint
+     * @param maxConcurrent 0 for no cap
+     */
+    public record Policy(RateLimit requests, RateLimit bytes, int maxConcurrent) {
+    }
+
+    // Ahead of the quota check and anything else that reads the request
+    public static final int ORDER = Ordered.HIGHEST_PRECEDENCE + 50;
+
+    private static final Pattern UPLOAD_PATH = Pattern.compile(
+            "/files/(?:upload/\\d+|uploads/[^/]+/chunks/\\d+|import/\\d+)");
+    private static final Pattern DOWNLOAD_PATH = Pattern.compile("/files/(?:download|view)/.+|/uploads/.+");
+    private static final Pattern USER_PATH = Pattern.compile(
+            "/files/(?:upload|uploads|user|import|download/user)/(\\d+)(?:/.*)?"
+            + "|/files/(?:update|delete)/\\d+/(\\d+)"
+            + "|/users/(\\d+)(?:/.*)?");
+
+    private final RateLimitStore store;
+    private final Map<Endpoint, Policy> policies;
+    private final MeterRegistry meterRegistry;
+    private final Timer shapingDelays;
+
+    // Requests in flight per client and endpoint; emptied entries are dropped once nothing holds them
+    private final ConcurrentHashMap<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    public RateLimitFilter(RateLimitStore store, Map<Endpoint, Policy> policies, MeterRegistry meterRegistry) {
+        this.store = store;
+        this.policies = policies;
+        this.meterRegistry = meterRegistry;
+        this.shapingDelays = Timer.builder("files.ratelimit.delay")
+                .description("Time request threads slept to keep a client's transfers at its byte rate")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getServletPath();
+        // CORS preflights are answered without touching files
+        return "OPTIONS".equals(request.getMethod())
+                || !(path.startsWith("/files") || path.startsWith("/users") || path.startsWith("/uploads/"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getServletPath();
+        Endpoint endpoint = classify(request.getMethod(), path);
+        Policy policy = policies.get(endpoint);
+        List<String> clients = clientsOf(request, path);
+        List<String> bytesKeys = keys(endpoint.tag + ":bytes:", clients);
+
+        if (!policy.requests().isUnlimited()) {
+            for (String key : keys(endpoint.tag + ":requests:", clients)) {
+                long wait = store.tryAcquire(key, 1, policy.requests());
+                if (wait > 0) {
+                    reject(response, endpoint, "requests", wait);
+                    return;
+                }
+            }
+        }
+
+        boolean shaped = !policy.bytes().isUnlimited();
+        long length = request.getContentLengthLong();
+        if (shaped && endpoint == Endpoint.UPLOAD && length > 0) {
+            for (String key : bytesKeys) {
+                long wait = store.tryAcquire(key, length, policy.bytes());
+                if (wait > 0) {
+                    // The body is left unread, so don't let the connector try to drain it for keep-alive
+                    response.setHeader(HttpHeaders.CONNECTION, "close");
+                    reject(response, endpoint, "bytes", wait);
+                    return;
+                }
+            }
+        }
+
+        List<Slot> slots = new ArrayList<>();
+        if (policy.maxConcurrent() > 0) {
+            for (String key : keys(endpoint.tag + ":", clients)) {
+                Slot slot = enter(key, policy.maxConcurrent());
+                if (slot == null) {
+                    slots.forEach(this::leave);
+                    reject(response, endpoint, "concurrency", TimeUnit.SECONDS.toNanos(1));
+                    return;
+                }
+                slots.add(slot);
+            }
+        }
+
+        boolean async = false;
+        try {
+            HttpServletRequest shapedRequest = request;
+            HttpServletResponse shapedResponse = response;
+            if (shaped && endpoint == Endpoint.UPLOAD && length < 0) {
+                shapedRequest = new ShapedRequest(request, shaper(bytesKeys, policy), null);
+            } else if (shaped && endpoint == Endpoint.DOWNLOAD) {
+                ShapedResponse paced = new ShapedResponse(response, shaper(bytesKeys, policy));
+                shapedRequest = new ShapedRequest(request, null, paced);
+                shapedResponse = paced;
+            }
+            chain.doFilter(shapedRequest, shapedResponse);
+
+            // Streamed bodies (ZIP exports) are written after this returns; hold the slot until they finish
+            if (!slots.isEmpty() && request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new SlotRelease(slots));
+                async = true;
+            }
+        } finally {
+            if (!async) {
+                slots.forEach(this::leave);
+            }
+        }
+    }
+
+    private Endpoint classify(String method, String path) {
+        if (("POST".equals(method) || "PUT".equals(method)) && UPLOAD_PATH.matcher(path).matches()) {
+            return Endpoint.UPLOAD;
+        }
+        if (("GET".equals(method) || "HEAD".equals(method) || "POST".equals(method))
+                && DOWNLOAD_PATH.matcher(path).matches()) {
+            return Endpoint.DOWNLOAD;
+        }
+        return Endpoint.API;
+    }
+
+    // The remote address always; the user named in the path is charged in addition, never instead
+    private List<String> clientsOf(HttpServletRequest request, String path) {
+        String address = "ip:" + request.getRemoteAddr();
+        Matcher matcher = USER_PATH.matcher(path);
+        if (matcher.matches()) {
+            for (int group = 1; group <= matcher.groupCount(); group++) {
+                if (matcher.group(group) != null) {
+                    return List.of(address, "user:" + matcher.group(group));
+                }
+            }
+        }
+        return List.of(address);
+    }
+
+    private static List<String> keys(String prefix, List<String> clients) {
+        return clients.stream().map(client -> prefix + client).toList();
+    }
+
+    private BandwidthShaper shaper(List<String> keys, Policy policy) {
+        return new BandwidthShaper(store, keys, policy.bytes(), shapingDelays);
+    }
+
+    private record Slot(String key, AtomicInteger count) {
+    }
+
+    // A slot in the client's in-flight count, or null when it is at the cap
+    private Slot enter(String key, int max) {
+        while (true) {
+            AtomicInteger slots = inFlight.computeIfAbsent(key, k -> new AtomicInteger());
+            int current = slots.get();
+            if (current < 0) {
+                // Retired by leave() after reaching zero; a fresh counter replaces it
+                inFlight.remove(key, slots);
+                continue;
+            }
+            if (current >= max) {
+                return null;
+            }
+            if (slots.compareAndSet(current, current + 1)) {
+                return new Slot(key, slots);
+            }
+        }
+    }
+
+    private void leave(Slot slot) {
+        // The last one out retires the counter (-1) so a concurrent enter() cannot count into a removed entry
+        if (slot.count().decrementAndGet() == 0 && slot.count().compareAndSet(0, -1)) {
+            inFlight.remove(slot.key(), slot.count());
+        }
+    }
+
+    private void reject(HttpServletResponse response, Endpoint endpoint, String reason, long waitNanos)
+            throws IOException {
+        Counter.builder("files.ratelimit.rejected")
+                .description("Requests refused with 429, by endpoint kind and the limit they hit")
+                .tag("endpoint", endpoint.tag)
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+        long seconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(seconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"message\":\"Too many requests\"}");
+    }
+
+    private class SlotRelease implements AsyncListener {
+
+        private final List<Slot> slots;
+
+        SlotRelease(List<Slot> slots) {
+            this.slots = slots;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            slots.forEach(RateLimitFilter.this::leave);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.filestoring.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Logs a warning at startup for each development setting that costs throughput in production
+ */
+@Component
+public class SlowSettingsCheck {
+
+    private static final Logger log = LoggerFactory.getLogger(SlowSettingsCheck.class);
+
+    private final Environment environment;
+
+    private final DataSource dataSource;
+
+    public SlowSettingsCheck(Environment environment, DataSource dataSource) {
+        this.environment = environment;
+        this.dataSource = dataSource;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warnAboutSlowSettings() {
+        for (String warning : findSlowSettings()) {
+            log.warn("Slow setting active: {}", warning);
+        }
+    }
+
+    List<String> findSlowSettings() {
+        List<String> warnings = new ArrayList<>();
+        if (isTrue("spring.jpa.show-sql")) {
+            warnings.add("spring.jpa.show-sql=true writes every statement to stdout synchronously");
+        }
+        if (isTrue("spring.jpa.properties.hibernate.format_sql")) {
+            warnings.add("hibernate.format_sql=true pretty-prints every logged statement");
+        }
+        if (isTrue("spring.jpa.properties.hibernate.generate_statistics")) {
+            warnings.add("hibernate.generate_statistics=true records timings for every statement");
+        }
+        String ddlAuto = environment.getProperty("spring.jpa.hibernate.ddl-auto", "none");
+        if (!"none".equals(ddlAuto) && !"validate".equals(ddlAuto)) {
+            warnings.add("spring.jpa.hibernate.ddl-auto=" + ddlAuto + " inspects and alters the schema on startup; "
+                    + "use Flyway migrations with validate");
+        }
+        if (environment.getProperty("spring.jpa.properties.hibernate.jdbc.batch_size") == null) {
+            warnings.add("hibernate.jdbc.batch_size is unset, so every insert and update is its own round trip");
+        }
+
+        String url = environment.getProperty("spring.datasource.url", "");
+        if (url.startsWith("jdbc:mysql:")) {
+            for (String option : List.of("rewriteBatchedStatements=true", "cachePrepStmts=true")) {
+                if (!url.contains(option)) {
+                    warnings.add("spring.datasource.url lacks " + option);
+                }
+            }
+        }
+
+        HikariDataSource hikari = hikari();
+        if (hikari != null && hikari.getMaximumPoolSize() > 50) {
+            warnings.add("Hikari maximum-pool-size=" + hikari.getMaximumPoolSize()
+                    + "; a pool far larger than the database's cores adds contention, not throughput");
+        }
+        return warnings;
+    }
+
+    // The pool may be wrapped, e.g. by ThrottledDataSource
+    private HikariDataSource hikari() {
+        try {
+            return dataSource.isWrapperFor(HikariDataSource.class) ? dataSource.unwrap(HikariDataSource.class) : null;
+        } catch (SQLException ex) {
+            return null;
+        }
+    }
+
+    private boolean isTrue(String property) {
+        return environment.getProperty(property, Boolean.class, false);
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.filestoring.config;
+
+import com.example.filestoring.storage.InMemoryStorageBackend;
+import com.example.filestoring.storage.LocalStorageBackend;
+import com.example.filestoring.storage.StorageBackend;
+import com.example.filestoring.storage.ThrottledStorageBackend;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Paths;
+
+@Configuration
+public class StorageConfig {
+
+    @Bean
+    public StorageBackend storageBackend(@Value("${app.storage.backend:local}") String backend,
+                                         @Value("${app.storage.local.root:uploads}") String localRoot,
+                                         @Value("${app.storage.memory.off-heap:false}") boolean offHeap,
+                                         @Value("${app.limits.disk-concurrency:0}") int diskConcurrency) {
+        StorageBackend storage;
+        switch (backend) {
+            case "local":
+                storage = new LocalStorageBackend(Paths.get(localRoot));
+                break;
+            case "memory":
+                storage = new InMemoryStorageBackend(offHeap);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown storage backend: " + backend);
+        }
+        return diskConcurrency > 0 ? new ThrottledStorageBackend(storage, diskConcurrency) : storage;
+    }
+}
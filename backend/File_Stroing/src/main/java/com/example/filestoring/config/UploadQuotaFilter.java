@@ -0,0 +1,70 @@
+package com.example.filestoring.config;
+
+import com.example.filestoring.service.UsageService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Turns away a multipart upload that cannot fit in its owner's quota from the Content-Length alone, before the
+ * body is parsed and spooled to disk. Filters run ahead of the DispatcherServlet's multipart resolution, so none of
+ * the body has been read yet. The quota is checked exactly when the file is saved; this only spares the transfer
+ */
+@Component
+public class UploadQuotaFilter extends OncePerRequestFilter {
+
+    private static final Pattern UPLOAD_PATH = Pattern.compile("/files/upload/(\\d+)");
+
+    private final UsageService usageService;
+    private final long multipartOverhead;
+    private final Counter rejected;
+
+    public UploadQuotaFilter(UsageService usageService, MeterRegistry meterRegistry,
+                             @Value("${app.quota.multipart-overhead:64KB}") DataSize multipartOverhead) {
+        this.usageService = usageService;
+        this.multipartOverhead = multipartOverhead.toBytes();
+        this.rejected = Counter.builder("files.quota.rejected")
+                .description("Uploads refused at the start of the request for exceeding the owner's quota")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod())
+                || !UPLOAD_PATH.matcher(request.getServletPath()).matches();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Matcher matcher = UPLOAD_PATH.matcher(request.getServletPath());
+        long length = request.getContentLengthLong();
+        // Chunked bodies have no length to judge; the save still enforces the quota
+        if (matcher.matches() && length > 0) {
+            // The form fields and part headers around the file are not charged
+            long fileBytes = length - multipartOverhead;
+            if (fileBytes > 0 && fileBytes > usageService.remainingBytes(Long.valueOf(matcher.group(1)))) {
+                rejected.increment();
+                response.setStatus(HttpStatus.PAYLOAD_TOO_LARGE.value());
+                response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                response.setHeader("Connection", "close");
+                response.getWriter().write("{\"message\":\"Storage quota exceeded\"}");
+                return;
+            }
+        }
+        chain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.filestoring.controller;
+
+import com.example.filestoring.model.FileEntity;
+import com.example.filestoring.model.UploadSession;
+import com.example.filestoring.service.ChunkedUploadService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@CrossOrigin(origins = "https://filehuub.netlify.app/")
+@RestController
+@RequestMapping("/files/uploads")
+public class ChunkedUploadController {
+
+    private final ChunkedUploadService chunkedUploadService;
+
+    public ChunkedUploadController(ChunkedUploadService chunkedUploadService) {
+        this.chunkedUploadService = chunkedUploadService;
+    }
+
+    // Starts an upload; the body carries fileName, totalSize and optionally chunkSize, title and description
+    @PostMapping("/{userId}")
+    public UploadSession initiateUpload(@PathVariable Long userId, @RequestBody UploadSession request) throws Exception {
+        return chunkedUploadService.initiateUpload(userId, request);
+    }
+
+    // The raw request body is the chunk, so nothing is spooled by a multipart parser
+    @PutMapping("/{sessionId}/chunks/{chunkIndex}")
+    public UploadSession uploadChunk(@PathVariable String sessionId,
+                                     @PathVariable int chunkIndex,
+                                     HttpServletRequest request) throws Exception {
+        return chunkedUploadService.writeChunk(sessionId, chunkIndex, request.getInputStream());
+    }
+
+    @GetMapping("/{sessionId}")
+    public UploadSession getUpload(@PathVariable String sessionId) throws Exception {
+        return chunkedUploadService.getUpload(sessionId);
+    }
+
+    @PostMapping("/{sessionId}/complete")
+    public FileEntity completeUpload(@PathVariable String sessionId) throws Exception {
+        return chunkedUploadService.completeUpload(sessionId);
+    }
+
+    @DeleteMapping("/{sessionId}")
+    public Map<String, String> abortUpload(@PathVariable String sessionId) throws Exception {
+        chunkedUploadService.abortUpload(sessionId);
+        return Map.of("message", "Upload aborted");
+    }
+}
@@ -1,12 +1,23 @@
 package com.example.filestoring.controller;
 
+import com.example.filestoring.dto.FileDetail;
+import com.example.filestoring.dto.FileSummary;
+import com.example.filestoring.dto.ImportReport;
+import com.example.filestoring.model.CursorPage;
 import com.example.filestoring.model.FileEntity;
+import com.example.filestoring.service.ExportService;
 import com.example.filestoring.service.FileService;
+import com.example.filestoring.service.ImportService;
+import com.example.filestoring.util.RenditionSize;
+import com.example.filestoring.util.ZipCompression;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -17,8 +28,14 @@ public class FileController {
 
 	private final FileService fileService;
 
-    public FileController(FileService fileService) {
+    private final ExportService exportService;
+
+    private final ImportService importService;
+
+    public FileController(FileService fileService, ExportService exportService, ImportService importService) {
         this.fileService = fileService;
+        this.exportService = exportService;
+        this.importService = importService;
     }
 
     @PostMapping("/upload/{userId}")
@@ -29,19 +46,47 @@ public class FileController {
         return fileService.uploadFile(userId, file, title, description);
     }
 
+    // Pass owner=true to include each file's owner name
     @GetMapping("/all")
-    public List<FileEntity> getAllFiles() {
-        return fileService.getAllFiles();
+    public List<FileSummary> getAllFiles(@RequestParam(value = "owner", defaultValue = "false") boolean owner) {
+        return fileService.getAllFiles(owner);
     }
 
     @GetMapping("/user/{userId}")
-    public List<FileEntity> getUserFiles(@PathVariable Long userId) {
-        return fileService.getUserFiles(userId);
+    public List<FileSummary> getUserFiles(@PathVariable Long userId,
+                                          @RequestParam(value = "owner", defaultValue = "false") boolean owner) {
+        return fileService.getUserFiles(userId, owner);
+    }
+
+    @GetMapping("/page")
+    public CursorPage<FileSummary> getFilesPage(@RequestParam(value = "cursor", required = false) String cursor,
+                                               @RequestParam(value = "limit", required = false) Integer limit) throws Exception {
+        return fileService.getFilesPage(cursor, limit);
+    }
+
+    @GetMapping("/user/{userId}/page")
+    public CursorPage<FileSummary> getUserFilesPage(@PathVariable Long userId,
+                                                   @RequestParam(value = "cursor", required = false) String cursor,
+                                                   @RequestParam(value = "limit", required = false) Integer limit) throws Exception {
+        return fileService.getUserFilesPage(userId, cursor, limit);
+    }
+
+    // Full catalog (or one user's files) as newline-delimited JSON, one file per line
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody exportFiles(@RequestParam(value = "userId", required = false) Long userId) {
+        return exportService.exportFiles(userId);
+    }
+
+    // Bulk title/description updates and registrations of already-stored content, as NDJSON or a JSON array
+    @PostMapping(value = "/import/{userId}",
+            consumes = { MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE })
+    public ImportReport importFiles(@PathVariable Long userId, HttpServletRequest request) throws Exception {
+        return importService.importFiles(userId, request.getInputStream());
     }
 
     @GetMapping("/{fileId}")
-    public ResponseEntity<FileEntity> getFileById(@PathVariable Long fileId) {
-        FileEntity file = fileService.getFileById(fileId);
+    public ResponseEntity<FileDetail> getFileById(@PathVariable Long fileId) {
+        FileDetail file = fileService.getFileDetail(fileId);
         return file != null ? ResponseEntity.ok(file) : ResponseEntity.notFound().build();
     }
 
@@ -59,18 +104,43 @@ public class FileController {
     }
 
     @GetMapping("/download/{fileId}")
-    public ResponseEntity<Resource> downloadFile(@PathVariable Long fileId) throws Exception {
-        return ResponseEntity.ok()
-                .body(fileService.downloadFile(fileId));
+    public void downloadFile(@PathVariable Long fileId,
+                             HttpServletRequest request,
+                             HttpServletResponse response) throws Exception {
+        fileService.downloadFile(fileId, request, response);
+    }
+
+    @GetMapping("/download/{fileId}/zip")
+    public ResponseEntity<StreamingResponseBody> downloadFileAsZip(@PathVariable Long fileId,
+                                                                   @RequestParam(value = "compression", required = false) String compression) throws Exception {
+        return fileService.downloadFileAsZip(fileId, ZipCompression.fromString(compression));
+    }
+
+    @PostMapping("/download/zip")
+    public ResponseEntity<StreamingResponseBody> downloadFilesAsZip(@RequestBody List<Long> fileIds,
+                                                                    @RequestParam(value = "compression", required = false) String compression) throws Exception {
+        return fileService.downloadFilesAsZip(fileIds, ZipCompression.fromString(compression));
+    }
+
+    @GetMapping("/download/user/{userId}/zip")
+    public ResponseEntity<StreamingResponseBody> downloadUserFilesAsZip(@PathVariable Long userId,
+                                                                        @RequestParam(value = "compression", required = false) String compression) throws Exception {
+        return fileService.downloadUserFilesAsZip(userId, ZipCompression.fromString(compression));
     }
 
+    // ?size=thumb or ?size=preview serves a downscaled copy of an image for list and gallery views
     @GetMapping("/view/{fileName}")
-    public ResponseEntity<Resource> viewFile(@PathVariable String fileName) throws Exception {
-        return fileService.viewFile(fileName);
+    public void viewFile(@PathVariable String fileName,
+                         @RequestParam(value = "size", required = false) String size,
+                         HttpServletRequest request,
+                         HttpServletResponse response) throws Exception {
+        fileService.viewFile(fileName, RenditionSize.fromString(size), request, response);
     }
     
     @GetMapping("/search")
-    public List<FileEntity> searchFiles(@RequestParam String query) {
-        return fileService.searchFiles(query);
+    public List<FileSummary> searchFiles(@RequestParam String query,
+                                         @RequestParam(value = "page", defaultValue = "0") int page,
+                                         @RequestParam(value = "limit", required = false) Integer limit) throws Exception {
+        return fileService.searchFiles(query, page, limit);
     }
 }
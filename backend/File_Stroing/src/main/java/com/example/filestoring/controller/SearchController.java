@@ -0,0 +1,31 @@
+package com.example.filestoring.controller;
+
+import com.example.filestoring.service.SuggestionService;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@CrossOrigin(origins = "https://filehuub.netlify.app/")
+@RestController
+@RequestMapping("/search")
+public class SearchController {
+
+    // Typeahead lists stay short; longer ones are what /files/search is for
+    private static final int MAX_SUGGESTIONS = 20;
+
+    private final SuggestionService suggestionService;
+
+    public SearchController(SuggestionService suggestionService) {
+        this.suggestionService = suggestionService;
+    }
+
+    // Completions for what has been typed so far, served from memory
+    @GetMapping("/suggest")
+    public Map<String, List<String>> suggest(@RequestParam("q") String prefix,
+                                             @RequestParam(value = "limit", defaultValue = "8") int limit) {
+        int size = Math.min(limit, MAX_SUGGESTIONS);
+        return Map.of("files", suggestionService.suggestFileTitles(prefix, size),
+                "users", suggestionService.suggestUserNames(prefix, size));
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.filestoring.controller;
+
+import com.example.filestoring.service.FileService;
+import com.example.filestoring.util.RenditionSize;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+// Keeps fileUrl values from before the storage backend working; content comes from the backend, not the disk
+@CrossOrigin(origins = "https://filehuub.netlify.app/")
+@RestController
+public class UploadsController {
+
+    private final FileService fileService;
+
+    public UploadsController(FileService fileService) {
+        this.fileService = fileService;
+    }
+
+    @GetMapping("/uploads/{fileName}")
+    public void viewUpload(@PathVariable String fileName,
+                           @RequestParam(value = "size", required = false) String size,
+                           HttpServletRequest request,
+                           HttpServletResponse response) throws Exception {
+        fileService.viewFile(fileName, RenditionSize.fromString(size), request, response);
+    }
+}
@@ -1,11 +1,17 @@
 package com.example.filestoring.controller;
 
+import com.example.filestoring.dto.UserUsageSummary;
+import com.example.filestoring.model.CursorPage;
 import com.example.filestoring.model.User;
+import com.example.filestoring.service.ExportService;
+import com.example.filestoring.service.UsageService;
 import com.example.filestoring.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.HashMap;
 import java.util.List;
@@ -19,6 +25,12 @@ public class UserController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private UsageService usageService;
+
     // Home endpoint
     @GetMapping("/")
     public String home() {
@@ -50,6 +62,19 @@ public class UserController {
         return userService.getAllUsers();
     }
 
+    // Fetch users one page at a time; pass nextCursor back as cursor for the next page
+    @GetMapping("/page")
+    public CursorPage<User> getUsersPage(@RequestParam(value = "cursor", required = false) String cursor,
+                                         @RequestParam(value = "limit", required = false) Integer limit) throws Exception {
+        return userService.getUsersPage(cursor, limit);
+    }
+
+    // All users as newline-delimited JSON, one user per line
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody exportUsers() {
+        return exportService.exportUsers();
+    }
+
     @PostMapping("/register")
     public ResponseEntity<?> registerUser(@RequestBody User user) {
         // Check if user already exists by email
@@ -91,9 +116,17 @@ public class UserController {
         return userService.updateUser(user, id);
     }
 
+    // Bytes and files stored, with the quota that applies
+    @GetMapping("/{id}/usage")
+    public UserUsageSummary getUsage(@PathVariable Long id) throws Exception {
+        return usageService.getUsage(id);
+    }
+
     // Search users by name or email
     @GetMapping("/search")
-    public List<User> searchUsers(@RequestParam String query) {
-        return userService.serachUser(query);
+    public List<User> searchUsers(@RequestParam String query,
+                                  @RequestParam(value = "page", defaultValue = "0") int page,
+                                  @RequestParam(value = "limit", required = false) Integer limit) throws Exception {
+        return userService.serachUser(query, page, limit);
     }
 }
@@ -0,0 +1,20 @@
+package com.example.filestoring.dto;
+
+import com.example.filestoring.model.ProcessingStatus;
+
+import java.util.Date;
+
+/**
+ * A single file as shown on its own page, including the description and owner
+ */
+public record FileDetail(Long id, String title, String description, String filePath, String fileUrl,
+                         String contentType, Long fileSize, Date createdDate, ProcessingStatus processingStatus,
+                         OwnerSummary user) {
+
+    public FileDetail(Long id, String title, String description, String filePath, String fileUrl,
+                      String contentType, Long fileSize, Date createdDate, ProcessingStatus processingStatus,
+                      Long userId, String firstName, String lastName) {
+        this(id, title, description, filePath, fileUrl, contentType, fileSize, createdDate, processingStatus,
+                new OwnerSummary(userId, firstName, lastName));
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.filestoring.dto;
+
+/**
+ * One item of a bulk import. With an id it updates that file's title and description (null fields are left
+ * alone); without one it registers content the user staged in storage under imports/{userId}/, named by
+ * storageKey. The staged copy is moved into shared storage and removed.
+ */
+public record FileImportItem(Long id, String title, String description, String storageKey) {
+}
@@ -0,0 +1,7 @@
+package com.example.filestoring.dto;
+
+/**
+ * The searchable text of a file, read without the entity when its owner's name changes
+ */
+public record FileIndexText(Long id, String title, String description) {
+}
@@ -0,0 +1,27 @@
+package com.example.filestoring.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.Date;
+
+/**
+ * A file as shown in lists and search results: no description and, unless
+ * asked for, no owner. Built directly by constructor-expression queries.
+ */
+public record FileSummary(Long id, String title, String filePath, String fileUrl, String contentType,
+                          Long fileSize, Date createdDate,
+                          @JsonInclude(JsonInclude.Include.NON_NULL) OwnerSummary user) {
+
+    // Owner columns selected alongside the file
+    public FileSummary(Long id, String title, String filePath, String fileUrl, String contentType,
+                       Long fileSize, Date createdDate, Long userId, String firstName, String lastName) {
+        this(id, title, filePath, fileUrl, contentType, fileSize, createdDate,
+                new OwnerSummary(userId, firstName, lastName));
+    }
+
+    // File columns only, the owner is never joined
+    public FileSummary(Long id, String title, String filePath, String fileUrl, String contentType,
+                       Long fileSize, Date createdDate) {
+        this(id, title, filePath, fileUrl, contentType, fileSize, createdDate, null);
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.filestoring.dto;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk import: how many files were created and updated, and why the rest were rejected
+ */
+public record ImportReport(int created, int updated, List<ItemError> errors) {
+
+    // item is the 1-based position of the rejected item in the request body
+    public record ItemError(int item, Long id, String message) {
+    }
+}
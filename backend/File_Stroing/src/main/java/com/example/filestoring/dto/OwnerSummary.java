@@ -0,0 +1,7 @@
+package com.example.filestoring.dto;
+
+/**
+ * The public part of a file's owner, as shown next to the file
+ */
+public record OwnerSummary(Long id, String firstName, String lastName) {
+}
@@ -0,0 +1,8 @@
+package com.example.filestoring.dto;
+
+/**
+ * Outcome of rebuilding every user's usage totals from the stored content
+ */
+public record UsageReconcileReport(int users, long files, long bytes, long missingFiles, int correctedUsers,
+                                   long durationMillis) {
+}
@@ -0,0 +1,7 @@
+package com.example.filestoring.dto;
+
+/**
+ * What a user stores and may still store; quotaBytes and remainingBytes are null when no quota applies
+ */
+public record UserUsageSummary(Long userId, long bytesUsed, long fileCount, Long quotaBytes, Long remainingBytes) {
+}
@@ -0,0 +1,30 @@
+package com.example.filestoring.model;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing. nextCursor is passed back as the cursor
+ * parameter to fetch the following page and is null on the last page.
+ */
+public class CursorPage<T> {
+
+    private final List<T> items;
+    private final String nextCursor;
+
+    public CursorPage(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean isHasMore() {
+        return nextCursor != null;
+    }
+}
@@ -5,10 +5,20 @@ import java.util.Date;
 import java.util.Objects;
 
 import com.example.filestoring.util.IdGenerator;
+import com.fasterxml.jackson.annotation.JsonIdentityInfo;
+import com.fasterxml.jackson.annotation.JsonIdentityReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.ObjectIdGenerators;
+import org.springframework.data.domain.Persistable;
 
 @Entity
-@Table(name = "files")
-public class FileEntity {
+@Table(name = "files", indexes = {
+        @Index(name = "idx_files_file_path", columnList = "filePath"),
+        // Keyset pagination: newest first overall and per owner
+        @Index(name = "idx_files_created_date", columnList = "createdDate, id"),
+        @Index(name = "idx_files_user_created", columnList = "user_id, createdDate, id")
+})
+public class FileEntity implements Persistable<Long> {
 
     @Id
     private Long id;
@@ -22,14 +32,32 @@ public class FileEntity {
 
     private String filePath; // File path stored in DB
 
+    private String storageKey; // Shared blob holding the content; null for files stored directly under uploads/
+
+    @Column(length = 64)
+    private String contentHash; // SHA-256 of the content, hex encoded
+
+    private Long fileSize; // Size in bytes
+
+    private String contentType; // MIME type detected on upload
+
+    @Enumerated(EnumType.STRING)
+    private ProcessingStatus processingStatus; // Post-upload processing; PENDING until the background stages finish
+
     @Temporal(TemporalType.TIMESTAMP) // Ensures correct DB mapping
     @Column(nullable = false, updatable = false) // Prevents modification after creation
     private Date createdDate;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY) // Loaded only when a query joins it or a caller asks for it
     @JoinColumn(name = "user_id", nullable = false)
+    @JsonIdentityInfo(generator = ObjectIdGenerators.PropertyGenerator.class, property = "id")
+    @JsonIdentityReference(alwaysAsId = true) // Written as the owner's ID, so a reference proxy is never loaded
     private User user;
 
+    // IDs are assigned before saving, so Spring Data cannot tell new rows apart by a null ID
+    @Transient
+    private boolean isNew = true;
+
     public FileEntity() {
     }
 
@@ -45,14 +73,33 @@ public class FileEntity {
     protected void onCreate() {
         this.createdDate = new Date(); // Auto-set createdDate before persisting
 
-        // Generate 8-digit ID if not set
+        // Rows that are not queued for processing (e.g. imports) have nothing left to do
+        if (this.processingStatus == null) {
+            this.processingStatus = ProcessingStatus.READY;
+        }
+
+        // Generate a time-ordered ID if not set
         if (this.id == null) {
-            this.id = IdGenerator.generateEightDigitId();
+            this.id = IdGenerator.nextId();
         }
     }
 
+    @PostLoad
+    @PostPersist
+    protected void markNotNew() {
+        this.isNew = false;
+    }
+
+    // Lets save() call persist() directly instead of merge(), which would SELECT the row first
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return isNew;
+    }
+
     // Getters and Setters
 
+    @Override
     public Long getId() {
         return id;
     }
@@ -85,6 +132,46 @@ public class FileEntity {
         this.filePath = filePath;
     }
 
+    public String getStorageKey() {
+        return storageKey;
+    }
+
+    public void setStorageKey(String storageKey) {
+        this.storageKey = storageKey;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public Long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(Long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public ProcessingStatus getProcessingStatus() {
+        return processingStatus;
+    }
+
+    public void setProcessingStatus(ProcessingStatus processingStatus) {
+        this.processingStatus = processingStatus;
+    }
+
     public Date getCreatedDate() {
         return createdDate;
     }
@@ -119,8 +206,13 @@ public class FileEntity {
                 ", description='" + description + '\'' +
                 ", fileUrl='" + fileUrl + '\'' +
                 ", filePath='" + filePath + '\'' +
+                ", storageKey='" + storageKey + '\'' +
+                ", contentHash='" + contentHash + '\'' +
+                ", fileSize=" + fileSize +
+                ", contentType='" + contentType + '\'' +
+                ", processingStatus=" + processingStatus +
                 ", createdDate=" + createdDate +
-                ", user=" + user +
+                ", userId=" + (user != null ? user.getId() : null) + // avoids loading a lazy owner
                 '}';
     }
 
@@ -0,0 +1,7 @@
+package com.example.filestoring.model;
+
+public enum JobStatus {
+    QUEUED,
+    RUNNING,
+    FAILED
+}
@@ -0,0 +1,171 @@
+package com.example.filestoring.model;
+
+import com.example.filestoring.util.IdGenerator;
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * Post-upload processing owed to one file. The row is inserted with the file and deleted once every stage
+ * has run, so whatever is in the table after a crash is exactly the work still outstanding.
+ */
+@Entity
+@Table(name = "processing_jobs", indexes = {
+        // Claiming scans runnable jobs in due order
+        @Index(name = "idx_processing_jobs_due", columnList = "status, runAfter"),
+        @Index(name = "idx_processing_jobs_file", columnList = "fileId")
+})
+public class ProcessingJob implements Persistable<Long> {
+
+    @Id
+    private Long id;
+
+    @Column(nullable = false)
+    private Long fileId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private JobStatus status;
+
+    private int attempts; // Claims so far; also fences out a worker whose lease ran out
+
+    // QUEUED: earliest time to run (retries back off). RUNNING: when the lease ends and others may claim it
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(nullable = false)
+    private Date runAfter;
+
+    @Column(length = 64)
+    private String workerId; // Instance holding the lease, for diagnosis
+
+    @Column(length = 1000)
+    private String lastError;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(nullable = false, updatable = false)
+    private Date createdDate;
+
+    @Transient
+    private boolean isNew = true;
+
+    public ProcessingJob() {
+    }
+
+    public ProcessingJob(Long fileId) {
+        this.fileId = fileId;
+        this.status = JobStatus.QUEUED;
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        this.createdDate = new Date();
+        if (this.runAfter == null) {
+            this.runAfter = this.createdDate;
+        }
+        if (this.id == null) {
+            this.id = IdGenerator.nextId();
+        }
+    }
+
+    @PostLoad
+    @PostPersist
+    protected void markNotNew() {
+        this.isNew = false;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    // Getters and Setters
+
+    @Override
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getFileId() {
+        return fileId;
+    }
+
+    public void setFileId(Long fileId) {
+        this.fileId = fileId;
+    }
+
+    public JobStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(JobStatus status) {
+        this.status = status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public Date getRunAfter() {
+        return runAfter;
+    }
+
+    public void setRunAfter(Date runAfter) {
+        this.runAfter = runAfter;
+    }
+
+    public String getWorkerId() {
+        return workerId;
+    }
+
+    public void setWorkerId(String workerId) {
+        this.workerId = workerId;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public Date getCreatedDate() {
+        return createdDate;
+    }
+
+    @Override
+    public String toString() {
+        return "ProcessingJob{" +
+                "id=" + id +
+                ", fileId=" + fileId +
+                ", status=" + status +
+                ", attempts=" + attempts +
+                ", runAfter=" + runAfter +
+                ", workerId='" + workerId + '\'' +
+                '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+        ProcessingJob that = (ProcessingJob) o;
+        return Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.filestoring.model;
+
+import jakarta.persistence.*;
+import java.util.Date;
+
+@Entity
+@Table(name = "upload_chunks", indexes = @Index(name = "idx_upload_chunks_session", columnList = "sessionId"))
+public class UploadChunk {
+
+    @Id
+    private String id; // sessionId + ":" + chunkIndex, so a re-sent chunk overwrites its own row
+
+    @Column(nullable = false)
+    private String sessionId;
+
+    private Integer chunkIndex;
+
+    private Long size;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date receivedDate;
+
+    public UploadChunk() {
+    }
+
+    public UploadChunk(String sessionId, Integer chunkIndex, Long size) {
+        this.id = sessionId + ":" + chunkIndex;
+        this.sessionId = sessionId;
+        this.chunkIndex = chunkIndex;
+        this.size = size;
+        this.receivedDate = new Date();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public Integer getChunkIndex() {
+        return chunkIndex;
+    }
+
+    public void setChunkIndex(Integer chunkIndex) {
+        this.chunkIndex = chunkIndex;
+    }
+
+    public Long getSize() {
+        return size;
+    }
+
+    public void setSize(Long size) {
+        this.size = size;
+    }
+
+    public Date getReceivedDate() {
+        return receivedDate;
+    }
+
+    public void setReceivedDate(Date receivedDate) {
+        this.receivedDate = receivedDate;
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.filestoring.model;
+
+public enum UploadStatus {
+    ACTIVE,
+    COMPLETING,
+    COMPLETED
+}
@@ -2,14 +2,26 @@ package com.example.filestoring.model;
 
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import jakarta.persistence.UniqueConstraint;
 
 import com.example.filestoring.util.IdGenerator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.springframework.data.domain.Persistable;
 
 @Entity
-@Table(name = "users")
-public class User {
+@Table(name = "users", uniqueConstraints = {
+		// Login and registration look users up by email
+		@UniqueConstraint(name = "uk_users_email", columnNames = "email")
+})
+@JsonIgnoreProperties({ "hibernateLazyInitializer", "handler" }) // Lazy owner proxies serialize like the entity
+public class User implements Persistable<Long> {
 
 	@Id
 	private Long id;
@@ -20,10 +32,15 @@ public class User {
 
 	private String email;
 
+	@JsonProperty(access = JsonProperty.Access.WRITE_ONLY) // Accepted on register/update, never sent back
 	private String password;
 
 	private String gender;
 
+	// IDs are assigned before saving, so Spring Data cannot tell new rows apart by a null ID
+	@Transient
+	private boolean isNew = true;
+
 	public User() {
 		// Default constructor
 	}
@@ -31,10 +48,23 @@ public class User {
 	@PrePersist
 	protected void onCreate() {
 		if (this.id == null) {
-			this.id = IdGenerator.generateEightDigitId();
+			this.id = IdGenerator.nextId();
 		}
 	}
 
+	@PostLoad
+	@PostPersist
+	protected void markNotNew() {
+		this.isNew = false;
+	}
+
+	// Lets save() call persist() directly instead of merge(), which would SELECT the row first
+	@Override
+	@JsonIgnore
+	public boolean isNew() {
+		return isNew;
+	}
+
 	public User(Long id, String firstName, String lastName, String email, String password, String gender) {
 		super();
 		this.id = id;
@@ -45,6 +75,7 @@ public class User {
 		this.gender = gender;
 	}
 
+	@Override
 	public Long getId() {
 		return id;
 	}
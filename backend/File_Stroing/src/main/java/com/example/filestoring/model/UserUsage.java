@@ -0,0 +1,67 @@
+package com.example.filestoring.model;
+
+import jakarta.persistence.*;
+import java.util.Date;
+
+// Running totals of what a user stores; changed only through UserUsageRepository's conditional updates
+@Entity
+@Table(name = "user_usage")
+public class UserUsage {
+
+    @Id
+    private Long userId;
+
+    @Column(nullable = false)
+    private Long bytesUsed; // Sum of the sizes of the user's files; shared content counts for every file
+
+    @Column(nullable = false)
+    private Long fileCount;
+
+    private Long quotaBytes; // Null for the configured default
+
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date reconciledDate; // When the totals were last rebuilt from the stored content
+
+    public UserUsage() {
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getBytesUsed() {
+        return bytesUsed;
+    }
+
+    public void setBytesUsed(Long bytesUsed) {
+        this.bytesUsed = bytesUsed;
+    }
+
+    public Long getFileCount() {
+        return fileCount;
+    }
+
+    public void setFileCount(Long fileCount) {
+        this.fileCount = fileCount;
+    }
+
+    public Long getQuotaBytes() {
+        return quotaBytes;
+    }
+
+    public void setQuotaBytes(Long quotaBytes) {
+        this.quotaBytes = quotaBytes;
+    }
+
+    public Date getReconciledDate() {
+        return reconciledDate;
+    }
+
+    public void setReconciledDate(Date reconciledDate) {
+        this.reconciledDate = reconciledDate;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.filestoring.ratelimit;
+
+import io.micrometer.core.instrument.Timer;
+
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paces one request's body against its clients' byte buckets: each slice is reserved from every bucket before it
+ * moves and the thread sleeps off whatever the emptiest one is short, so each client's transfers together average
+ * the configured rate
+ */
+public class BandwidthShaper {
+
+    private final RateLimitStore store;
+    private final List<String> keys;
+    private final RateLimit limit;
+    private final Timer delays;
+
+    // Bytes a failed tryTake already took from each bucket; pacing uses them up before reserving more
+    private final long[] prepaid;
+
+    public BandwidthShaper(RateLimitStore store, List<String> keys, RateLimit limit, Timer delays) {
+        this.store = store;
+        this.keys = List.copyOf(keys);
+        this.limit = limit;
+        this.delays = delays;
+        this.prepaid = new long[this.keys.size()];
+    }
+
+    // The most that should move between two waits; larger writes are split so a burst stays a burst
+    public int sliceSize() {
+        return (int) Math.max(1, Math.min(limit.burst(), 64 * 1024));
+    }
+
+    public void pace(long bytes) throws InterruptedIOException {
+        long wait = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            long covered = Math.min(prepaid[i], bytes);
+            prepaid[i] -= covered;
+            if (covered < bytes) {
+                wait = Math.max(wait, store.reserve(keys.get(i), bytes - covered, limit));
+            }
+        }
+        if (wait <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while throttling");
+        }
+        delays.record(wait, TimeUnit.NANOSECONDS);
+    }
+
+    // Takes the bytes only if the bucket holds them now; for transfers that cannot be paced once started
+    public boolean tryTake(long bytes) {
+        if (bytes > limit.burst()) {
+            return false;
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            if (store.tryAcquire(keys.get(i), bytes, limit) != 0) {
+                return false;
+            }
+            prepaid[i] += bytes;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.filestoring.ratelimit;
+
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets in this JVM. Each bucket is a single AtomicLong holding the time at which it would be full again
+ * (the generic cell rate algorithm), so taking tokens is one compare-and-set with no lock, and buckets of different
+ * clients sit in different bins of the map instead of behind one monitor.
+ * A full bucket carries no information, so the periodic sweep drops those; a thread that raced the sweep may
+ * charge the dropped bucket, which only forgives that one charge
+ */
+public class InMemoryRateLimitStore implements RateLimitStore {
+
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final LongSupplier clock;
+
+    public InMemoryRateLimitStore() {
+        this(System::nanoTime);
+    }
+
+    // The clock reads nanoseconds, like System.nanoTime
+    public InMemoryRateLimitStore(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    @Override
+    public long tryAcquire(String key, long permits, RateLimit limit) {
+        long now = clock.getAsLong();
+        AtomicLong bucket = bucket(key, now);
+        long cost = limit.nanosFor(permits);
+        long tolerance = limit.nanosFor(limit.burst());
+        while (true) {
+            long fullAt = bucket.get();
+            long start = fullAt - now > 0 ? fullAt : now;
+            long wait = start + Math.min(cost, tolerance) - tolerance - now;
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(fullAt, start + cost)) {
+                return 0;
+            }
+        }
+    }
+
+    @Override
+    public long reserve(String key, long permits, RateLimit limit) {
+        long now = clock.getAsLong();
+        AtomicLong bucket = bucket(key, now);
+        long cost = limit.nanosFor(permits);
+        long tolerance = limit.nanosFor(limit.burst());
+        while (true) {
+            long fullAt = bucket.get();
+            long next = (fullAt - now > 0 ? fullAt : now) + cost;
+            if (bucket.compareAndSet(fullAt, next)) {
+                return Math.max(0, next - tolerance - now);
+            }
+        }
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    @Scheduled(fixedDelayString = "${app.ratelimit.sweep-interval:PT1M}")
+    public void evictFull() {
+        long now = clock.getAsLong();
+        buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+    }
+
+    private AtomicLong bucket(String key, long now) {
+        AtomicLong bucket = buckets.get(key);
+        return bucket != null ? bucket : buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+    }
+}
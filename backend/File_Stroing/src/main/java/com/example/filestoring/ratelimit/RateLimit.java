@@ -0,0 +1,17 @@
+package com.example.filestoring.ratelimit;
+
+/**
+ * A token bucket's shape: refilled at permitsPerSecond, holding at most burst permits
+ * @param permitsPerSecond 0 or less for no limit
+ */
+public record RateLimit(double permitsPerSecond, long burst) {
+
+    public boolean isUnlimited() {
+        return permitsPerSecond <= 0;
+    }
+
+    // How long the bucket takes to refill this many permits
+    public long nanosFor(long permits) {
+        return (long) Math.ceil(permits * 1e9 / permitsPerSecond);
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.filestoring.ratelimit;
+
+/**
+ * Where token buckets live, by key. The embedded store keeps them in this JVM; several instances behind one load
+ * balancer share limits by providing a RateLimitStore bean backed by something they all reach, which replaces it.
+ * Buckets start full and are kept by the store's own clock, so callers never pass time in
+ */
+public interface RateLimitStore {
+
+    /**
+     * Takes permits from the bucket when it holds them. Asking for more than the burst needs a full bucket and
+     * leaves it in debt, so transfers larger than the burst are still admitted, one at a time, at the average rate
+     * @return 0 when taken, else the nanoseconds until they would be
+     */
+    long tryAcquire(String key, long permits, RateLimit limit);
+
+    // Takes permits whether or not the bucket holds them; returns the nanoseconds to wait before using them
+    long reserve(String key, long permits, RateLimit limit);
+}
@@ -0,0 +1,98 @@
+package com.example.filestoring.ratelimit;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+
+import java.io.IOException;
+
+/**
+ * The request side of shaping: an upload body of unknown length is paced as it is read, and a paced download
+ * hides the connector's sendfile() support unless its response may skip pacing
+ */
+public class ShapedRequest extends HttpServletRequestWrapper {
+
+    // Set by Tomcat's NIO connector; FileDeliveryServiceImplementation only uses sendfile() when it is true
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+
+    private final BandwidthShaper uploadShaper;
+    private final ShapedResponse download;
+    private ServletInputStream inputStream;
+
+    /**
+     * @param uploadShaper Paces the body as it is read; null to leave reads alone
+     * @param download The paced response for this request; null when the response is not paced
+     */
+    public ShapedRequest(HttpServletRequest request, BandwidthShaper uploadShaper, ShapedResponse download) {
+        super(request);
+        this.uploadShaper = uploadShaper;
+        this.download = download;
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        if (download != null && SENDFILE_SUPPORTED.equals(name) && !download.allowsSendfile()) {
+            return null;
+        }
+        return super.getAttribute(name);
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+        if (uploadShaper == null) {
+            return super.getInputStream();
+        }
+        if (inputStream == null) {
+            inputStream = new PacedInputStream(super.getInputStream());
+        }
+        return inputStream;
+    }
+
+    private class PacedInputStream extends ServletInputStream {
+
+        private final ServletInputStream source;
+
+        PacedInputStream(ServletInputStream source) {
+            this.source = source;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = source.read();
+            if (b >= 0) {
+                uploadShaper.pace(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = source.read(b, off, Math.min(len, uploadShaper.sliceSize()));
+            if (n > 0) {
+                uploadShaper.pace(n);
+            }
+            return n;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return source.isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return source.isReady();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            source.setReadListener(readListener);
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.filestoring.ratelimit;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+import java.io.IOException;
+
+/**
+ * A response whose body is paced by a BandwidthShaper. Remembers the declared length so the request side can tell
+ * whether the whole body may go to sendfile(), which the connector runs outside any stream we could pace
+ */
+public class ShapedResponse extends HttpServletResponseWrapper {
+
+    private final BandwidthShaper shaper;
+    private long contentLength = -1;
+    private ServletOutputStream outputStream;
+
+    public ShapedResponse(HttpServletResponse response, BandwidthShaper shaper) {
+        super(response);
+        this.shaper = shaper;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        contentLength = len;
+        super.setContentLength(len);
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        contentLength = len;
+        super.setContentLengthLong(len);
+    }
+
+    // sendfile() only for bodies the client's bucket covers right now; the bytes are charged here
+    boolean allowsSendfile() {
+        return contentLength >= 0 && shaper.tryTake(contentLength);
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (outputStream == null) {
+            outputStream = new PacedOutputStream(super.getOutputStream());
+        }
+        return outputStream;
+    }
+
+    private class PacedOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream target;
+
+        PacedOutputStream(ServletOutputStream target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            shaper.pace(1);
+            target.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            int slice = shaper.sliceSize();
+            while (len > 0) {
+                int n = Math.min(len, slice);
+                shaper.pace(n);
+                target.write(b, off, n);
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            target.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return target.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            target.setWriteListener(writeListener);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.filestoring.repository;
+
+import com.example.filestoring.model.Blob;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.Optional;
+
+@Repository
+public interface BlobRepository extends JpaRepository<Blob, String> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM Blob b WHERE b.hash = :hash")
+    Optional<Blob> findForUpdate(@Param("hash") String hash);
+
+    // Adds a reference to existing content; returns 0 when the blob is not stored yet
+    @Transactional
+    @Modifying
+    @Query("UPDATE Blob b SET b.refCount = b.refCount + 1 WHERE b.hash = :hash")
+    int addReference(@Param("hash") String hash);
+
+    // A plain INSERT, so a concurrent first upload of the same content fails instead of merging
+    @Transactional
+    @Modifying
+    @Query("INSERT INTO Blob (hash, path, size, refCount, createdDate) VALUES (:hash, :path, :size, 1, :createdDate)")
+    int insertFirstReference(@Param("hash") String hash, @Param("path") String path, @Param("size") Long size,
+                             @Param("createdDate") Date createdDate);
+}
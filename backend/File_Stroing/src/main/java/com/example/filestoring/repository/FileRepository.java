@@ -1,15 +1,125 @@
 package com.example.filestoring.repository;
 
+import com.example.filestoring.dto.FileDetail;
+import com.example.filestoring.dto.FileIndexText;
+import com.example.filestoring.dto.FileSummary;
 import com.example.filestoring.model.FileEntity;
+import com.example.filestoring.model.ProcessingStatus;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 
 @Repository
 public interface FileRepository extends JpaRepository<FileEntity, Long> {
+    // Owners are joined in the same query instead of one select per file
+    @Override
+    @EntityGraph(attributePaths = "user")
+    List<FileEntity> findAll();
+
+    @EntityGraph(attributePaths = "user")
     List<FileEntity> findByUserId(Long userId);
+
+    FileEntity findByFilePath(String filePath);
+
     
-    List<FileEntity> findByTitleContainingIgnoreCaseOrUser_FirstNameContainingIgnoreCaseOrUser_LastNameContainingIgnoreCase(String title, String firstName, String lastName);
+    // Projections select only the columns a response needs; the description is left to the detail query
+    String SUMMARY = "SELECT new com.example.filestoring.dto.FileSummary(f.id, f.title, f.filePath, f.fileUrl, " +
+                     "f.contentType, f.fileSize, f.createdDate) FROM FileEntity f ";
+
+    String SUMMARY_WITH_OWNER = "SELECT new com.example.filestoring.dto.FileSummary(f.id, f.title, f.filePath, " +
+                                "f.fileUrl, f.contentType, f.fileSize, f.createdDate, u.id, u.firstName, u.lastName) " +
+                                "FROM FileEntity f JOIN f.user u ";
+
+    @Query("SELECT new com.example.filestoring.dto.FileDetail(f.id, f.title, f.description, f.filePath, f.fileUrl, " +
+           "f.contentType, f.fileSize, f.createdDate, f.processingStatus, u.id, u.firstName, u.lastName) " +
+           "FROM FileEntity f JOIN f.user u WHERE f.id = :id")
+    Optional<FileDetail> findDetailById(@Param("id") Long id);
+
+    // What the search index needs to re-index a renamed owner's files
+    @Query("SELECT new com.example.filestoring.dto.FileIndexText(f.id, f.title, f.description) " +
+           "FROM FileEntity f WHERE f.user.id = :userId")
+    List<FileIndexText> findIndexTextByUserId(@Param("userId") Long userId);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE FileEntity f SET f.processingStatus = :status WHERE f.id = :id")
+    int updateProcessingStatus(@Param("id") Long id, @Param("status") ProcessingStatus status);
+
+    @Query(SUMMARY + "ORDER BY f.createdDate DESC, f.id DESC")
+    List<FileSummary> findSummaries();
+
+    @Query(SUMMARY_WITH_OWNER + "ORDER BY f.createdDate DESC, f.id DESC")
+    List<FileSummary> findSummariesWithOwner();
+
+    @Query(SUMMARY + "WHERE f.user.id = :userId ORDER BY f.createdDate DESC, f.id DESC")
+    List<FileSummary> findSummariesByUserId(@Param("userId") Long userId);
+
+    @Query(SUMMARY_WITH_OWNER + "WHERE u.id = :userId ORDER BY f.createdDate DESC, f.id DESC")
+    List<FileSummary> findSummariesWithOwnerByUserId(@Param("userId") Long userId);
+
+    // Resolves search hits; the caller restores the ranking
+    @Query(SUMMARY_WITH_OWNER + "WHERE f.id IN :ids")
+    List<FileSummary> findSummariesWithOwnerByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Keyset pages, newest first; served by idx_files_created_date and idx_files_user_created
+    @Query(SUMMARY_WITH_OWNER + "ORDER BY f.createdDate DESC, f.id DESC")
+    List<FileSummary> findFirstPage(Pageable pageable);
+
+    @Query(SUMMARY_WITH_OWNER +
+           "WHERE f.createdDate < :createdDate OR (f.createdDate = :createdDate AND f.id < :id) " +
+           "ORDER BY f.createdDate DESC, f.id DESC")
+    List<FileSummary> findPageAfter(@Param("createdDate") Date createdDate, @Param("id") Long id, Pageable pageable);
+
+    @Query(SUMMARY_WITH_OWNER + "WHERE u.id = :userId ORDER BY f.createdDate DESC, f.id DESC")
+    List<FileSummary> findUserFirstPage(@Param("userId") Long userId, Pageable pageable);
+
+    @Query(SUMMARY_WITH_OWNER + "WHERE u.id = :userId " +
+           "AND (f.createdDate < :createdDate OR (f.createdDate = :createdDate AND f.id < :id)) " +
+           "ORDER BY f.createdDate DESC, f.id DESC")
+    List<FileSummary> findUserPageAfter(@Param("userId") Long userId, @Param("createdDate") Date createdDate,
+                                        @Param("id") Long id, Pageable pageable);
+
+    // Forward-only cursor over files with their owners, for the search rebuild; the driver fetches rows in batches
+    // instead of all at once
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT f FROM FileEntity f JOIN FETCH f.user ORDER BY f.id")
+    Stream<FileEntity> streamAll();
+
+    // The export writes the owner as its ID alone, which the foreign key already holds, so nothing is joined
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT f FROM FileEntity f ORDER BY f.id")
+    Stream<FileEntity> streamForExport();
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT f FROM FileEntity f WHERE f.user.id = :userId ORDER BY f.id")
+    Stream<FileEntity> streamForExportByUserId(@Param("userId") Long userId);
 
+    // Titles alone, for building the typeahead trie
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT f.title FROM FileEntity f")
+    Stream<String> streamTitles();
 }
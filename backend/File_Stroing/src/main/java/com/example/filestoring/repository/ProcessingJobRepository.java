@@ -0,0 +1,55 @@
+package com.example.filestoring.repository;
+
+import com.example.filestoring.model.JobStatus;
+import com.example.filestoring.model.ProcessingJob;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.SpecHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+@Repository
+public interface ProcessingJobRepository extends JpaRepository<ProcessingJob, Long> {
+
+    // FOR UPDATE SKIP LOCKED (lock timeout -2): concurrent claimers, on any instance, pass over each other's rows
+    // instead of queueing behind them. Dialects without SKIP LOCKED fall back to a plain FOR UPDATE
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = SpecHints.HINT_SPEC_LOCK_TIMEOUT, value = "-2"))
+    @Query("SELECT j FROM ProcessingJob j WHERE j.status IN :statuses AND j.runAfter <= :now " +
+           "ORDER BY j.runAfter, j.id")
+    List<ProcessingJob> findDueForUpdate(@Param("statuses") Collection<JobStatus> statuses, @Param("now") Date now,
+                                         Pageable page);
+
+    // The updates below only apply to the claim that is passed in: once a lease has run out and the job has
+    // been claimed again, attempts no longer matches and the late worker changes nothing
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ProcessingJob j WHERE j.id = :id AND j.status = :running AND j.attempts = :attempts")
+    int deleteClaimed(@Param("id") Long id, @Param("attempts") int attempts, @Param("running") JobStatus running);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE ProcessingJob j SET j.status = :to, j.runAfter = :runAfter, j.lastError = :error, " +
+           "j.workerId = null WHERE j.id = :id AND j.status = :running AND j.attempts = :attempts")
+    int releaseClaimed(@Param("id") Long id, @Param("attempts") int attempts, @Param("running") JobStatus running,
+                       @Param("to") JobStatus to, @Param("runAfter") Date runAfter, @Param("error") String error);
+
+    long countByStatus(JobStatus status);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ProcessingJob j WHERE j.fileId = :fileId")
+    int deleteByFileId(@Param("fileId") Long fileId);
+}
@@ -0,0 +1,34 @@
+package com.example.filestoring.repository;
+
+import com.example.filestoring.model.UploadSession;
+import com.example.filestoring.model.UploadStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.List;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    // Moves a session between states only if nobody else has done so first
+    @Transactional
+    @Modifying
+    @Query("UPDATE UploadSession s SET s.status = :to WHERE s.id = :id AND s.status = :from")
+    int transition(@Param("id") String id, @Param("from") UploadStatus from, @Param("to") UploadStatus to);
+
+    // Always read from the database, never from an entity the request already holds
+    @Query("SELECT s.status FROM UploadSession s WHERE s.id = :id")
+    UploadStatus findStatusById(@Param("id") String id);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE UploadSession s SET s.lastActivityDate = :now WHERE s.id = :id")
+    int touch(@Param("id") String id, @Param("now") Date now);
+
+    List<UploadSession> findByStatusAndLastActivityDateBefore(UploadStatus status, Date cutoff);
+}
@@ -1,18 +1,37 @@
 package com.example.filestoring.repository;
 
 import com.example.filestoring.model.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.query.Param;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
     User findByEmail(String email);
-    
-    @Query("SELECT u FROM User u WHERE u.firstName LIKE %:query% OR u.lastName LIKE %:query% OR u.email LIKE %:query%")
-    List<User> searchUser(@Param("query") String query);
+
 
 	boolean existsByEmail(String email);
+
+	// Keyset pages in id order, served by the primary key
+	List<User> findAllByOrderByIdAsc(Pageable pageable);
+
+	List<User> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+	// Work list for usage reconciliation
+	@Query("SELECT u.id FROM User u ORDER BY u.id")
+	List<Long> findAllIds();
+
+	// Forward-only cursor for the NDJSON export
+	@QueryHints({
+			@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+			@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+	})
+	@Query("SELECT u FROM User u ORDER BY u.id")
+	Stream<User> streamAll();
 }
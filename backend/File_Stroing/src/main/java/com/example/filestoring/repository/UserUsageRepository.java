@@ -0,0 +1,55 @@
+package com.example.filestoring.repository;
+
+import com.example.filestoring.model.UserUsage;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.Optional;
+
+@Repository
+public interface UserUsageRepository extends JpaRepository<UserUsage, Long> {
+
+    // Adds files unless they take the user past their quota; 0 when they would, or when the user has no row yet.
+    // A quota of 0 is unlimited, and callers pass Long.MAX_VALUE for an unlimited default
+    @Modifying
+    @Query("UPDATE UserUsage u SET u.bytesUsed = u.bytesUsed + :bytes, u.fileCount = u.fileCount + :files "
+            + "WHERE u.userId = :userId "
+            + "AND (u.quotaBytes = 0 OR u.bytesUsed + :bytes <= COALESCE(u.quotaBytes, :defaultQuota))")
+    int charge(@Param("userId") Long userId, @Param("bytes") long bytes, @Param("files") long files,
+               @Param("defaultQuota") long defaultQuota);
+
+    // Never goes below zero, so a file counted short before a reconciliation cannot leave negative totals
+    @Modifying
+    @Query("UPDATE UserUsage u SET "
+            + "u.bytesUsed = CASE WHEN u.bytesUsed > :bytes THEN u.bytesUsed - :bytes ELSE 0 END, "
+            + "u.fileCount = CASE WHEN u.fileCount > 0 THEN u.fileCount - 1 ELSE 0 END "
+            + "WHERE u.userId = :userId")
+    int discharge(@Param("userId") Long userId, @Param("bytes") long bytes);
+
+    // A plain INSERT, so a concurrent first upload by the same user fails instead of overwriting
+    @Transactional
+    @Modifying
+    @Query("INSERT INTO UserUsage (userId, bytesUsed, fileCount) VALUES (:userId, 0, 0)")
+    int insertEmpty(@Param("userId") Long userId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u FROM UserUsage u WHERE u.userId = :userId")
+    Optional<UserUsage> findForUpdate(@Param("userId") Long userId);
+
+    @Modifying
+    @Query("UPDATE UserUsage u SET u.quotaBytes = :quotaBytes WHERE u.userId = :userId")
+    int updateQuota(@Param("userId") Long userId, @Param("quotaBytes") Long quotaBytes);
+
+    @Modifying
+    @Query("UPDATE UserUsage u SET u.bytesUsed = :bytes, u.fileCount = :files, u.reconciledDate = :now "
+            + "WHERE u.userId = :userId")
+    int reset(@Param("userId") Long userId, @Param("bytes") long bytes, @Param("files") long files,
+              @Param("now") Date now);
+}
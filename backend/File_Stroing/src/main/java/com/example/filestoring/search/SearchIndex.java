@@ -0,0 +1,249 @@
+package com.example.filestoring.search;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Inverted index over file titles, descriptions and owner names, and over user
+ * names and emails. Every query term must match some field; title and name hits
+ * outrank description hits, and whole-word hits outrank prefix hits.
+ */
+public class SearchIndex implements Closeable {
+
+    // Ranked results are only kept this deep; nobody pages past it
+    public static final int MAX_RESULTS = 1000;
+
+    private static final float PREFIX_WEIGHT = 0.1f;
+    // Shorter prefixes expand to too many terms to be worth matching
+    private static final int MIN_PREFIX_LENGTH = 3;
+
+    private static final String KEY = "key";
+    private static final String TYPE = "type";
+    private static final String ID = "id";
+    // Which rebuild a document was written under; whatever a rebuild did not rewrite is stale
+    private static final String GENERATION = "generation";
+
+    private static final String TYPE_FILE = "file";
+    private static final String TYPE_USER = "user";
+
+    private static final Map<String, Float> FILE_FIELDS = new LinkedHashMap<>();
+    private static final Map<String, Float> USER_FIELDS = new LinkedHashMap<>();
+
+    static {
+        FILE_FIELDS.put("title", 3.0f);
+        FILE_FIELDS.put("owner", 2.0f);
+        FILE_FIELDS.put("description", 1.0f);
+        USER_FIELDS.put("name", 3.0f);
+        USER_FIELDS.put("email", 2.0f);
+    }
+
+    private final Analyzer analyzer = new Analyzer() {
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            Tokenizer tokenizer = new StandardTokenizer();
+            TokenStream stream = new ASCIIFoldingFilter(new LowerCaseFilter(tokenizer));
+            return new TokenStreamComponents(tokenizer, stream);
+        }
+    };
+
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+
+    private volatile String generation = UUID.randomUUID().toString();
+
+    public SearchIndex(Directory directory) throws IOException {
+        this.writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        this.searcherManager = new SearcherManager(writer, null);
+    }
+
+    public void indexFile(Long id, String title, String description, String ownerName) throws IOException {
+        Document doc = baseDocument(TYPE_FILE, id);
+        addText(doc, "title", title);
+        addText(doc, "owner", ownerName);
+        // Descriptions come from a rich-text editor
+        addText(doc, "description", description == null ? null : description.replaceAll("<[^>]*>", " "));
+        writer.updateDocument(new Term(KEY, key(TYPE_FILE, id)), doc);
+    }
+
+    public void indexUser(Long id, String firstName, String lastName, String email) throws IOException {
+        Document doc = baseDocument(TYPE_USER, id);
+        addText(doc, "name", join(firstName, lastName));
+        addText(doc, "email", email);
+        writer.updateDocument(new Term(KEY, key(TYPE_USER, id)), doc);
+    }
+
+    public void deleteFile(Long id) throws IOException {
+        writer.deleteDocuments(new Term(KEY, key(TYPE_FILE, id)));
+    }
+
+    public void deleteUser(Long id) throws IOException {
+        writer.deleteDocuments(new Term(KEY, key(TYPE_USER, id)));
+    }
+
+    // Documents written from now on belong to a new generation
+    public void startGeneration() {
+        generation = UUID.randomUUID().toString();
+    }
+
+    // Drops every document not written since the last startGeneration()
+    public void deleteOlderGenerations() throws IOException {
+        writer.deleteDocuments(new BooleanQuery.Builder()
+                .add(new MatchAllDocsQuery(), BooleanClause.Occur.MUST)
+                .add(new TermQuery(new Term(GENERATION, generation)), BooleanClause.Occur.MUST_NOT)
+                .build());
+    }
+
+    /**
+     * Ranked file ids for a free-text query
+     * @param query The user's search text
+     * @param page Zero-based page number
+     * @param size Results per page
+     * @return File ids, best match first; empty when the query has no searchable terms
+     */
+    public List<Long> searchFiles(String query, int page, int size) throws IOException {
+        return search(TYPE_FILE, FILE_FIELDS, query, page, size);
+    }
+
+    public List<Long> searchUsers(String query, int page, int size) throws IOException {
+        return search(TYPE_USER, USER_FIELDS, query, page, size);
+    }
+
+    // Makes earlier updates visible to searches; batch several updates before calling it
+    public void refresh() throws IOException {
+        searcherManager.maybeRefreshBlocking();
+    }
+
+    public int numDocs() {
+        return writer.getDocStats().numDocs;
+    }
+
+    // Makes changes durable; searches see them before this through the near-real-time reader
+    public void commit() throws IOException {
+        if (writer.hasUncommittedChanges()) {
+            writer.commit();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        searcherManager.close();
+        writer.close();
+    }
+
+    private List<Long> search(String type, Map<String, Float> fields, String text, int page, int size)
+            throws IOException {
+        List<String> terms = analyze(text);
+        int end = Math.min((page + 1) * size, MAX_RESULTS);
+        if (terms.isEmpty() || page < 0 || size <= 0 || page * size >= end) {
+            return new ArrayList<>();
+        }
+
+        BooleanQuery.Builder query = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term(TYPE, type)), BooleanClause.Occur.FILTER);
+        for (int i = 0; i < terms.size(); i++) {
+            // Only the last word may still be being typed
+            boolean prefix = i == terms.size() - 1 && terms.get(i).length() >= MIN_PREFIX_LENGTH;
+            query.add(termQuery(fields, terms.get(i), prefix), BooleanClause.Occur.MUST);
+        }
+
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            TopDocs topDocs = searcher.search(query.build(), end);
+            List<Long> ids = new ArrayList<>(size);
+            for (int i = page * size; i < topDocs.scoreDocs.length; i++) {
+                ScoreDoc hit = topDocs.scoreDocs[i];
+                ids.add(Long.valueOf(searcher.storedFields().document(hit.doc).get(ID)));
+            }
+            return ids;
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    // One term may match any field; prefix hits (for partly typed words) score a flat fraction of a whole word
+    private Query termQuery(Map<String, Float> fields, String term, boolean prefix) {
+        BooleanQuery.Builder anyField = new BooleanQuery.Builder();
+        for (Map.Entry<String, Float> field : fields.entrySet()) {
+            anyField.add(new BoostQuery(new TermQuery(new Term(field.getKey(), term)), field.getValue()),
+                    BooleanClause.Occur.SHOULD);
+            if (prefix) {
+                anyField.add(new BoostQuery(new PrefixQuery(new Term(field.getKey(), term)),
+                        field.getValue() * PREFIX_WEIGHT), BooleanClause.Occur.SHOULD);
+            }
+        }
+        return anyField.build();
+    }
+
+    private List<String> analyze(String text) throws IOException {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        try (TokenStream stream = analyzer.tokenStream("", text)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                terms.add(term.toString());
+            }
+            stream.end();
+        }
+        return terms;
+    }
+
+    private Document baseDocument(String type, Long id) {
+        Document doc = new Document();
+        doc.add(new StringField(KEY, key(type, id), Field.Store.NO));
+        doc.add(new StringField(TYPE, type, Field.Store.NO));
+        doc.add(new StringField(GENERATION, generation, Field.Store.NO));
+        doc.add(new StoredField(ID, String.valueOf(id)));
+        return doc;
+    }
+
+    private void addText(Document doc, String field, String value) {
+        if (value != null && !value.isBlank()) {
+            doc.add(new TextField(field, value, Field.Store.NO));
+        }
+    }
+
+    private static String key(String type, Long id) {
+        return type + ":" + id;
+    }
+
+    private static String join(String first, String last) {
+        return (first == null ? "" : first) + " " + (last == null ? "" : last);
+    }
+}
@@ -0,0 +1,454 @@
+package com.example.filestoring.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Compressed (radix) trie for typeahead suggestions. Every phrase is reachable from
+ * the start of each of its first few words, so "rep" suggests "Quarterly report".
+ * Phrases are reference counted; the most common ones are suggested first, found
+ * best-first through the highest count cached on every node.
+ */
+public class SuggestionTrie {
+
+    // Word starts indexed per phrase; later words are rarely typed first
+    private static final int MAX_WORD_STARTS = 8;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // Rough HotSpot sizes (compressed oops) used for the memory estimate
+    private static final int OBJECT_HEADER = 16;
+    private static final int NODE_BYTES = OBJECT_HEADER + 5 * 4;
+    private static final int REFERENCE = 4;
+
+    private static final char[] EMPTY = new char[0];
+
+    private static final class Node {
+        char[] label = EMPTY;  // edge from the parent, never empty below the root
+        Node[] children;       // sorted by first label char; null for leaves
+        String[] phrases;      // phrases ending here, null when none do
+        int[] counts;
+        int best;              // highest count anywhere in this subtree
+    }
+
+    private final Node root = new Node();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int phraseCount;
+
+    public void add(String phrase) {
+        if (phrase == null || phrase.isBlank()) {
+            return;
+        }
+        String display = phrase.strip();
+        lock.writeLock().lock();
+        try {
+            boolean first = true;
+            for (String key : keys(display)) {
+                int count = insert(root, key.toCharArray(), 0, display);
+                // Each phrase is stored under several keys; the whole-phrase key comes first
+                if (first && count == 1) {
+                    phraseCount++;
+                }
+                first = false;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String phrase) {
+        if (phrase == null || phrase.isBlank()) {
+            return;
+        }
+        String display = phrase.strip();
+        lock.writeLock().lock();
+        try {
+            boolean first = true;
+            for (String key : keys(display)) {
+                int count = delete(root, key.toCharArray(), 0, display);
+                if (first && count == 0) {
+                    phraseCount--;
+                }
+                first = false;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The most frequent phrases with a word starting with the given prefix
+     * @param prefix What the user has typed so far
+     * @param limit Maximum number of suggestions
+     * @return Phrases, most frequent first
+     */
+    public List<String> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        lock.readLock().lock();
+        try {
+            Node start = find(key.toCharArray());
+            return start == null ? new ArrayList<>() : topPhrases(start, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Distinct phrases currently stored
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return phraseCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Approximate heap held by the trie structure; the phrase strings themselves are shared with callers
+    public long estimatedBytes() {
+        lock.readLock().lock();
+        try {
+            return estimate(root);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            root.children = null;
+            root.phrases = null;
+            root.counts = null;
+            root.best = 0;
+            phraseCount = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String folded = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARATORS.matcher(folded.toLowerCase()).replaceAll(" ").strip();
+    }
+
+    // The normalized phrase from each of its first word starts
+    private static Set<String> keys(String phrase) {
+        String normalized = normalize(phrase);
+        Set<String> keys = new LinkedHashSet<>();
+        if (normalized.isEmpty()) {
+            return keys;
+        }
+        int start = 0;
+        for (int words = 0; words < MAX_WORD_STARTS && start >= 0; words++) {
+            keys.add(normalized.substring(start));
+            int space = normalized.indexOf(' ', start);
+            start = space < 0 ? -1 : space + 1;
+        }
+        return keys;
+    }
+
+    // Returns the phrase's count under this key after adding it
+    private int insert(Node node, char[] key, int pos, String phrase) {
+        int count;
+        if (pos == key.length) {
+            count = addPhrase(node, phrase);
+        } else {
+            int index = childIndex(node, key[pos]);
+            if (index < 0) {
+                Node leaf = new Node();
+                leaf.label = Arrays.copyOfRange(key, pos, key.length);
+                count = addPhrase(leaf, phrase);
+                leaf.best = count;
+                addChild(node, -index - 1, leaf);
+            } else {
+                Node child = node.children[index];
+                int common = commonLength(child.label, key, pos);
+                if (common < child.label.length) {
+                    child = split(node, index, common);
+                }
+                count = insert(child, key, pos + common, phrase);
+            }
+        }
+        node.best = best(node);
+        return count;
+    }
+
+    // Returns the phrase's count under this key after removing it, or -1 when it was not there
+    private int delete(Node node, char[] key, int pos, String phrase) {
+        int count;
+        if (pos == key.length) {
+            count = removePhrase(node, phrase);
+        } else {
+            int index = childIndex(node, key[pos]);
+            if (index < 0) {
+                return -1;
+            }
+            Node child = node.children[index];
+            int common = commonLength(child.label, key, pos);
+            if (common < child.label.length) {
+                return -1;
+            }
+            count = delete(child, key, pos + common, phrase);
+            if (count >= 0) {
+                compact(node, index);
+            }
+        }
+        node.best = best(node);
+        return count;
+    }
+
+    // Drops a child that no longer holds anything, and merges one that only forwards to a single grandchild
+    private void compact(Node parent, int index) {
+        Node child = parent.children[index];
+        if (child.phrases != null) {
+            return;
+        }
+        if (child.children == null) {
+            removeChild(parent, index);
+        } else if (child.children.length == 1) {
+            Node grandchild = child.children[0];
+            char[] label = new char[child.label.length + grandchild.label.length];
+            System.arraycopy(child.label, 0, label, 0, child.label.length);
+            System.arraycopy(grandchild.label, 0, label, child.label.length, grandchild.label.length);
+            grandchild.label = label;
+            parent.children[index] = grandchild;
+        }
+    }
+
+    private Node split(Node parent, int index, int at) {
+        Node child = parent.children[index];
+        Node middle = new Node();
+        middle.label = Arrays.copyOfRange(child.label, 0, at);
+        child.label = Arrays.copyOfRange(child.label, at, child.label.length);
+        middle.children = new Node[] { child };
+        middle.best = child.best;
+        parent.children[index] = middle;
+        return middle;
+    }
+
+    // The node whose subtree holds every key starting with the prefix
+    private Node find(char[] prefix) {
+        Node node = root;
+        int pos = 0;
+        while (pos < prefix.length) {
+            int index = childIndex(node, prefix[pos]);
+            if (index < 0) {
+                return null;
+            }
+            Node child = node.children[index];
+            int common = commonLength(child.label, prefix, pos);
+            if (pos + common == prefix.length) {
+                return child;
+            }
+            if (common < child.label.length) {
+                return null;
+            }
+            node = child;
+            pos += common;
+        }
+        return node;
+    }
+
+    // A subtree or a phrase waiting in the best-first walk
+    private static final class Candidate implements Comparable<Candidate> {
+        final Node node;
+        final String phrase;
+        final int count;
+
+        Candidate(Node node, String phrase, int count) {
+            this.node = node;
+            this.phrase = phrase;
+            this.count = count;
+        }
+
+        // Higher counts first; on a tie subtrees are opened first so equal phrases come out alphabetically
+        @Override
+        public int compareTo(Candidate other) {
+            if (count != other.count) {
+                return Integer.compare(other.count, count);
+            }
+            if ((phrase == null) != (other.phrase == null)) {
+                return phrase == null ? -1 : 1;
+            }
+            return phrase == null ? 0 : phrase.compareTo(other.phrase);
+        }
+    }
+
+    // Best-first walk: a phrase is only returned once no unopened subtree could hold a more frequent one
+    private List<String> topPhrases(Node start, int limit) {
+        PriorityQueue<Candidate> queue = new PriorityQueue<>();
+        queue.add(new Candidate(start, null, start.best));
+        Set<String> found = new LinkedHashSet<>();
+        while (!queue.isEmpty() && found.size() < limit) {
+            Candidate candidate = queue.poll();
+            if (candidate.phrase != null) {
+                found.add(candidate.phrase);
+                continue;
+            }
+            Node node = candidate.node;
+            if (node.phrases != null) {
+                for (int i = 0; i < node.phrases.length; i++) {
+                    queue.add(new Candidate(null, node.phrases[i], node.counts[i]));
+                }
+            }
+            if (node.children != null) {
+                for (Node child : node.children) {
+                    queue.add(new Candidate(child, null, child.best));
+                }
+            }
+        }
+        return new ArrayList<>(found);
+    }
+
+    private int addPhrase(Node node, String phrase) {
+        if (node.phrases != null) {
+            for (int i = 0; i < node.phrases.length; i++) {
+                if (node.phrases[i].equals(phrase)) {
+                    return ++node.counts[i];
+                }
+            }
+            node.phrases = Arrays.copyOf(node.phrases, node.phrases.length + 1);
+            node.counts = Arrays.copyOf(node.counts, node.counts.length + 1);
+        } else {
+            node.phrases = new String[1];
+            node.counts = new int[1];
+        }
+        node.phrases[node.phrases.length - 1] = phrase;
+        node.counts[node.counts.length - 1] = 1;
+        return 1;
+    }
+
+    private int removePhrase(Node node, String phrase) {
+        if (node.phrases == null) {
+            return -1;
+        }
+        for (int i = 0; i < node.phrases.length; i++) {
+            if (!node.phrases[i].equals(phrase)) {
+                continue;
+            }
+            if (--node.counts[i] > 0) {
+                return node.counts[i];
+            }
+            if (node.phrases.length == 1) {
+                node.phrases = null;
+                node.counts = null;
+            } else {
+                node.phrases = remove(node.phrases, i);
+                int[] counts = new int[node.counts.length - 1];
+                System.arraycopy(node.counts, 0, counts, 0, i);
+                System.arraycopy(node.counts, i + 1, counts, i, counts.length - i);
+                node.counts = counts;
+            }
+            return 0;
+        }
+        return -1;
+    }
+
+    private static String[] remove(String[] values, int index) {
+        String[] result = new String[values.length - 1];
+        System.arraycopy(values, 0, result, 0, index);
+        System.arraycopy(values, index + 1, result, index, result.length - index);
+        return result;
+    }
+
+    private static int best(Node node) {
+        int best = 0;
+        if (node.counts != null) {
+            for (int count : node.counts) {
+                best = Math.max(best, count);
+            }
+        }
+        if (node.children != null) {
+            for (Node child : node.children) {
+                best = Math.max(best, child.best);
+            }
+        }
+        return best;
+    }
+
+    private static int childIndex(Node node, char first) {
+        if (node.children == null) {
+            return -1;
+        }
+        int low = 0;
+        int high = node.children.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char c = node.children[mid].label[0];
+            if (c < first) {
+                low = mid + 1;
+            } else if (c > first) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static void addChild(Node node, int at, Node child) {
+        if (node.children == null) {
+            node.children = new Node[] { child };
+            return;
+        }
+        Node[] children = new Node[node.children.length + 1];
+        System.arraycopy(node.children, 0, children, 0, at);
+        children[at] = child;
+        System.arraycopy(node.children, at, children, at + 1, node.children.length - at);
+        node.children = children;
+    }
+
+    private static void removeChild(Node node, int index) {
+        if (node.children.length == 1) {
+            node.children = null;
+            return;
+        }
+        Node[] children = new Node[node.children.length - 1];
+        System.arraycopy(node.children, 0, children, 0, index);
+        System.arraycopy(node.children, index + 1, children, index, children.length - index);
+        node.children = children;
+    }
+
+    private static int commonLength(char[] label, char[] key, int pos) {
+        int max = Math.min(label.length, key.length - pos);
+        int i = 0;
+        while (i < max && label[i] == key[pos + i]) {
+            i++;
+        }
+        return i;
+    }
+
+    private static long estimate(Node node) {
+        long bytes = NODE_BYTES + align(OBJECT_HEADER + 2L * node.label.length);
+        if (node.phrases != null) {
+            bytes += align(OBJECT_HEADER + (long) REFERENCE * node.phrases.length)
+                    + align(OBJECT_HEADER + 4L * node.counts.length);
+        }
+        if (node.children != null) {
+            bytes += align(OBJECT_HEADER + (long) REFERENCE * node.children.length);
+            for (Node child : node.children) {
+                bytes += estimate(child);
+            }
+        }
+        return bytes;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
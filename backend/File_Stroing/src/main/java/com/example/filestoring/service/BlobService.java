@@ -0,0 +1,17 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.util.IngestResult;
+
+import java.nio.file.Path;
+
+public interface BlobService {
+
+    // A fresh scratch file that the storage backend can adopt cheaply
+    Path newTempFile() throws Exception;
+
+    // Moves (or discards, if the content is already stored) a staged file and returns the blob's storage key
+    String store(Path stagedFile, IngestResult content) throws Exception;
+
+    // Drops one reference and deletes the content once nothing refers to it
+    void release(String hash) throws Exception;
+}
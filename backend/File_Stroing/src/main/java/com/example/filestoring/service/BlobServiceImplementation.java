@@ -0,0 +1,84 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.model.Blob;
+import com.example.filestoring.repository.BlobRepository;
+import com.example.filestoring.storage.StorageBackend;
+import com.example.filestoring.util.IngestResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+
+@Service
+public class BlobServiceImplementation implements BlobService {
+
+    private static final String BLOB_DIR = "blobs";
+
+    @Autowired
+    private BlobRepository blobRepository;
+
+    @Autowired
+    private StorageBackend storageBackend;
+
+    @Autowired
+    private CompressionService compressionService;
+
+    @Override
+    public Path newTempFile() throws Exception {
+        return storageBackend.createStagingFile();
+    }
+
+    @Override
+    public String store(Path stagedFile, IngestResult content) throws Exception {
+        String hash = content.getSha256();
+        String path = pathFor(hash);
+
+        // Content we already have: just count the new reference and drop the copy
+        if (blobRepository.addReference(hash) == 1) {
+            Files.deleteIfExists(stagedFile);
+            return path;
+        }
+
+        // A racing upload of the same content may have stored identical bytes here already
+        storageBackend.putFile(path, stagedFile);
+
+        try {
+            blobRepository.insertFirstReference(hash, path, content.getSize(), new Date());
+        } catch (DataIntegrityViolationException ex) {
+            // Lost the race to create the row; the winner's row now counts us too
+            if (blobRepository.addReference(hash) != 1) {
+                throw new Exception("Could not store content " + hash, ex);
+            }
+        }
+        return path;
+    }
+
+    @Override
+    @Transactional
+    public void release(String hash) throws Exception {
+        Blob blob = blobRepository.findForUpdate(hash).orElse(null);
+        if (blob == null) {
+            return;
+        }
+
+        if (blob.getRefCount() > 1) {
+            blob.setRefCount(blob.getRefCount() - 1);
+            return;
+        }
+
+        // Deleted while the row lock is held, so a concurrent upload cannot re-add this content halfway through
+        blobRepository.delete(blob);
+        blobRepository.flush();
+        storageBackend.delete(blob.getPath());
+        compressionService.deleteVariants(blob.getPath());
+    }
+
+    // blobs/ab/cd/abcd... keeps any one directory small
+    private String pathFor(String hash) {
+        return BLOB_DIR + "/" + hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash;
+    }
+}
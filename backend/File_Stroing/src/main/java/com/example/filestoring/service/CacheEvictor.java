@@ -0,0 +1,82 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.config.CacheConfig;
+import com.example.filestoring.util.AfterCommit;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Drops cached lookups that a write makes stale. Evictions wait for the commit, so a reader cannot
+ * cache the old row again between the eviction and the write becoming visible.
+ */
+@Component
+public class CacheEvictor {
+
+    private final CacheManager cacheManager;
+
+    public CacheEvictor(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    public void fileChanged(Long fileId, Long ownerId) {
+        filesChanged(List.of(fileId), ownerId);
+    }
+
+    // New files (no IDs) only change their owner's lists
+    public void filesChanged(Collection<Long> fileIds, Long ownerId) {
+        List<Long> ids = List.copyOf(fileIds);
+        AfterCommit.run(() -> {
+            for (Long fileId : ids) {
+                evict(CacheConfig.FILE_DETAILS, fileId);
+            }
+            evictUserFiles(ownerId);
+        });
+    }
+
+    public void fileAdded(Long ownerId) {
+        filesChanged(List.of(), ownerId);
+    }
+
+    public void userRegistered(String email) {
+        AfterCommit.run(() -> evict(CacheConfig.EMAIL_TAKEN, email));
+    }
+
+    public void userChanged(Long userId, String oldEmail, String newEmail, boolean renamed) {
+        AfterCommit.run(() -> {
+            evict(CacheConfig.USERS, userId);
+            evict(CacheConfig.USERS_BY_EMAIL, oldEmail);
+            evict(CacheConfig.USERS_BY_EMAIL, newEmail);
+            evict(CacheConfig.EMAIL_TAKEN, oldEmail);
+            evict(CacheConfig.EMAIL_TAKEN, newEmail);
+            if (renamed) {
+                // File details carry the owner's name; renames are rare enough to start those over
+                clear(CacheConfig.FILE_DETAILS);
+                evictUserFiles(userId);
+            }
+        });
+    }
+
+    // Per-user file lists are cached with and without owner names, keyed as in FileServiceImplementation
+    private void evictUserFiles(Long userId) {
+        evict(CacheConfig.USER_FILES, userId + ":true");
+        evict(CacheConfig.USER_FILES, userId + ":false");
+    }
+
+    private void evict(String cacheName, Object key) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null && key != null) {
+            cache.evict(key);
+        }
+    }
+
+    private void clear(String cacheName) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+}
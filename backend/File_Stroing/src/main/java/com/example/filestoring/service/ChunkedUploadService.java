@@ -0,0 +1,20 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.model.FileEntity;
+import com.example.filestoring.model.UploadSession;
+
+import java.io.InputStream;
+
+public interface ChunkedUploadService {
+
+    UploadSession initiateUpload(Long userId, UploadSession request) throws Exception;
+
+    // Chunks may arrive in any order and in parallel; re-sending a chunk overwrites it
+    UploadSession writeChunk(String sessionId, int chunkIndex, InputStream data) throws Exception;
+
+    UploadSession getUpload(String sessionId) throws Exception;
+
+    FileEntity completeUpload(String sessionId) throws Exception;
+
+    void abortUpload(String sessionId) throws Exception;
+}
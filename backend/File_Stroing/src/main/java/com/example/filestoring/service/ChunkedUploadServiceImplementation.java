@@ -0,0 +1,340 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.model.FileEntity;
+import com.example.filestoring.model.UploadChunk;
+import com.example.filestoring.model.UploadSession;
+import com.example.filestoring.model.UploadStatus;
+import com.example.filestoring.repository.UploadChunkRepository;
+import com.example.filestoring.repository.UploadSessionRepository;
+import com.example.filestoring.repository.UserRepository;
+import com.example.filestoring.util.DirectBuffers;
+import com.example.filestoring.util.IngestResult;
+import com.example.filestoring.util.StreamChannels;
+import com.example.filestoring.util.StreamingIngest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Resumable uploads into a preallocated part file. Chunk writers share a per-session gate that completion, abort
+ * and expiry take exclusively before changing the session, and writers check the session's status only once
+ * inside it. A chunk still being written therefore finishes before the part file is hashed and moved into a blob,
+ * and a late or duplicate PUT is rejected instead of writing into content other files may already share.
+ * Part files are local to this instance, so an in-process gate covers every writer of a session
+ */
+@Service
+public class ChunkedUploadServiceImplementation implements ChunkedUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(ChunkedUploadServiceImplementation.class);
+
+    private static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+    private static final int MIN_CHUNK_SIZE = 256 * 1024;
+    private static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+    private static final int MAX_CHUNKS = 10_000;
+
+    // How long completion or abort waits for chunks still being received
+    private static final long WRITER_WAIT_SECONDS = 30;
+
+    @Autowired
+    private UploadSessionRepository uploadSessionRepository;
+
+    @Autowired
+    private UploadChunkRepository uploadChunkRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private UsageService usageService;
+
+    private final ConcurrentHashMap<String, ReadWriteLock> gates = new ConcurrentHashMap<>();
+
+    @Value("${app.upload.partial-dir:upload-parts}")
+    private Path partialDir;
+
+    @Value("${app.upload.max-file-size:500MB}")
+    private DataSize maxFileSize;
+
+    @Value("${app.upload.session-ttl:24h}")
+    private Duration sessionTtl;
+
+    @Override
+    public UploadSession initiateUpload(Long userId, UploadSession request) throws Exception {
+        if (!userRepository.existsById(userId)) {
+            throw new Exception("User not found");
+        }
+
+        String fileName = StringUtils.getFilename(StringUtils.cleanPath(String.valueOf(request.getFileName())));
+        if (!StringUtils.hasText(fileName) || "null".equals(fileName)) {
+            throw new Exception("A file name is required");
+        }
+
+        Long totalSize = request.getTotalSize();
+        if (totalSize == null || totalSize <= 0 || totalSize > maxFileSize.toBytes()) {
+            throw new Exception("File size must be between 1 byte and " + maxFileSize);
+        }
+        // Checked again when the assembled file is saved; this spares uploading chunks that could never be kept
+        if (totalSize > usageService.remainingBytes(userId)) {
+            throw new Exception("Storage quota exceeded");
+        }
+
+        int chunkSize = request.getChunkSize() != null ? request.getChunkSize() : DEFAULT_CHUNK_SIZE;
+        if (chunkSize < MIN_CHUNK_SIZE || chunkSize > MAX_CHUNK_SIZE) {
+            throw new Exception("Chunk size must be between " + MIN_CHUNK_SIZE + " and " + MAX_CHUNK_SIZE + " bytes");
+        }
+
+        long chunkCount = (totalSize + chunkSize - 1) / chunkSize;
+        if (chunkCount > MAX_CHUNKS) {
+            throw new Exception("Too many chunks; use a larger chunk size");
+        }
+
+        UploadSession session = new UploadSession();
+        session.setId(UUID.randomUUID().toString());
+        session.setUserId(userId);
+        session.setTitle(request.getTitle());
+        session.setDescription(request.getDescription());
+        session.setFileName(fileName);
+        session.setTotalSize(totalSize);
+        session.setChunkSize(chunkSize);
+        session.setChunkCount((int) chunkCount);
+        session.setStatus(UploadStatus.ACTIVE);
+
+        // Reserve the full length now so every chunk can be written in place
+        Files.createDirectories(partialDir);
+        try (RandomAccessFile partFile = new RandomAccessFile(partPath(session.getId()).toFile(), "rw")) {
+            partFile.setLength(totalSize);
+        }
+
+        UploadSession saved = uploadSessionRepository.save(session);
+        saved.setReceivedChunks(List.of());
+        return saved;
+    }
+
+    @Override
+    public UploadSession writeChunk(String sessionId, int chunkIndex, InputStream data) throws Exception {
+        UploadSession session = findSession(sessionId);
+        if (chunkIndex < 0 || chunkIndex >= session.getChunkCount()) {
+            throw new Exception("Chunk index out of range: " + chunkIndex);
+        }
+
+        Lock writing = gate(sessionId).readLock();
+        writing.lock();
+        try {
+            if (uploadSessionRepository.findStatusById(sessionId) != UploadStatus.ACTIVE) {
+                throw new Exception("Upload is no longer accepting chunks");
+            }
+            writeChunk(session, chunkIndex, data);
+        } finally {
+            writing.unlock();
+        }
+        return withProgress(session);
+    }
+
+    private void writeChunk(UploadSession session, int chunkIndex, InputStream data) throws Exception {
+        String sessionId = session.getId();
+
+        long offset = (long) chunkIndex * session.getChunkSize();
+        long expected = Math.min(session.getChunkSize(), session.getTotalSize() - offset);
+
+        ReadableByteChannel source = StreamChannels.readable(data);
+        ByteBuffer buffer = DirectBuffers.acquire();
+        long written = 0;
+
+        try (FileChannel channel = FileChannel.open(partPath(sessionId), StandardOpenOption.WRITE)) {
+            boolean endOfStream = false;
+            while (!endOfStream) {
+                // Fill the whole buffer before writing so each positional write is large
+                while (buffer.hasRemaining()) {
+                    if (source.read(buffer) < 0) {
+                        endOfStream = true;
+                        break;
+                    }
+                }
+                buffer.flip();
+                if (written + buffer.remaining() > expected) {
+                    throw new Exception("Chunk " + chunkIndex + " is larger than " + expected + " bytes");
+                }
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer, offset + written);
+                }
+                buffer.clear();
+            }
+
+            if (written != expected) {
+                throw new Exception("Chunk " + chunkIndex + " was " + written + " bytes, expected " + expected);
+            }
+            // The chunk is only recorded once its bytes are durable
+            channel.force(false);
+        } finally {
+            DirectBuffers.release(buffer);
+        }
+
+        uploadChunkRepository.save(new UploadChunk(sessionId, chunkIndex, written));
+        uploadSessionRepository.touch(sessionId, new Date());
+    }
+
+    @Override
+    public UploadSession getUpload(String sessionId) throws Exception {
+        return withProgress(findSession(sessionId));
+    }
+
+    @Override
+    public FileEntity completeUpload(String sessionId) throws Exception {
+        UploadSession session = findSession(sessionId);
+
+        // Completing twice is harmless for clients that retry after a lost response
+        if (session.getStatus() == UploadStatus.COMPLETED) {
+            return fileService.getFileById(session.getFileId());
+        }
+
+        // Once this is COMPLETING no writer gets in, and any that got in before has finished. The gate is held
+        // until the file is saved, so the expiry sweep (which only tries the gate) never discards it meanwhile
+        Lock exclusive = lockExclusively(sessionId);
+        try {
+            long received = uploadChunkRepository.countBySessionId(sessionId);
+            if (received < session.getChunkCount()) {
+                throw new Exception("Upload is missing " + (session.getChunkCount() - received) + " chunks");
+            }
+            if (uploadSessionRepository.transition(sessionId, UploadStatus.ACTIVE, UploadStatus.COMPLETING) == 0) {
+                throw new Exception("Upload is already being completed");
+            }
+
+            Path partPath = partPath(sessionId);
+            FileEntity saved;
+            try {
+                // Chunks arrive out of order, so the digest needs one sequential read of the finished file
+                IngestResult content = StreamingIngest.inspect(partPath, session.getFileName());
+                saved = fileService.saveUploadedFile(session.getUserId(), session.getFileName(), partPath, content,
+                        session.getTitle(), session.getDescription());
+            } catch (Exception ex) {
+                if (Files.exists(partPath)) {
+                    // The bytes are still staged, so the client can retry completion
+                    uploadSessionRepository.transition(sessionId, UploadStatus.COMPLETING, UploadStatus.ACTIVE);
+                } else {
+                    discard(session);
+                }
+                throw ex;
+            }
+
+            session.setStatus(UploadStatus.COMPLETED);
+            session.setFileId(saved.getId());
+            uploadSessionRepository.save(session);
+            uploadChunkRepository.deleteBySessionId(sessionId);
+            gates.remove(sessionId);
+            return saved;
+        } finally {
+            exclusive.unlock();
+        }
+    }
+
+    @Override
+    public void abortUpload(String sessionId) throws Exception {
+        UploadSession session = findSession(sessionId);
+        if (session.getStatus() == UploadStatus.COMPLETED) {
+            throw new Exception("Upload has already been completed");
+        }
+        if (session.getStatus() == UploadStatus.COMPLETING) {
+            throw new Exception("Upload is being completed");
+        }
+        Lock exclusive = lockExclusively(sessionId);
+        try {
+            discard(session);
+        } finally {
+            exclusive.unlock();
+        }
+    }
+
+    // Drops sessions that have received nothing for the session TTL so their reserved space is returned. A
+    // COMPLETING one is only left over when completion died with the process: a running one holds the gate
+    @Scheduled(fixedDelayString = "${app.upload.cleanup-interval:PT1H}")
+    public void removeExpiredUploads() {
+        Date cutoff = new Date(System.currentTimeMillis() - sessionTtl.toMillis());
+        for (UploadStatus status : new UploadStatus[] { UploadStatus.ACTIVE, UploadStatus.COMPLETING }) {
+            List<UploadSession> idle = uploadSessionRepository.findByStatusAndLastActivityDateBefore(status, cutoff);
+            for (UploadSession session : idle) {
+                Lock exclusive = gate(session.getId()).writeLock();
+                // A session still receiving chunks or being completed is not idle; look again next time
+                if (!exclusive.tryLock()) {
+                    continue;
+                }
+                try {
+                    // A chunk or a completion may have got in between the query and the gate
+                    UploadSession current = uploadSessionRepository.findById(session.getId()).orElse(null);
+                    if (current == null || current.getStatus() != status
+                            || !current.getLastActivityDate().before(cutoff)) {
+                        continue;
+                    }
+                    discard(current);
+                } catch (IOException ex) {
+                    log.warn("Could not remove expired upload {}", session.getId(), ex);
+                } finally {
+                    exclusive.unlock();
+                }
+            }
+        }
+    }
+
+    // Callers hold the session's gate exclusively, or are completing it
+    private void discard(UploadSession session) throws IOException {
+        Files.deleteIfExists(partPath(session.getId()));
+        uploadChunkRepository.deleteBySessionId(session.getId());
+        uploadSessionRepository.delete(session);
+        gates.remove(session.getId());
+    }
+
+    // A writer that finds a gate removed after the session ended makes a new one, and then sees the status
+    private ReadWriteLock gate(String sessionId) {
+        return gates.computeIfAbsent(sessionId, id -> new ReentrantReadWriteLock());
+    }
+
+    private Lock lockExclusively(String sessionId) throws Exception {
+        Lock exclusive = gate(sessionId).writeLock();
+        if (!exclusive.tryLock(WRITER_WAIT_SECONDS, TimeUnit.SECONDS)) {
+            throw new Exception("Upload is still receiving chunks");
+        }
+        return exclusive;
+    }
+
+    private UploadSession findSession(String sessionId) throws Exception {
+        return uploadSessionRepository.findById(sessionId)
+                .orElseThrow(() -> new Exception("Upload not found: " + sessionId));
+    }
+
+    private UploadSession withProgress(UploadSession session) {
+        session.setReceivedChunks(uploadChunkRepository.findChunkIndexesBySessionId(session.getId()));
+        return session;
+    }
+
+    private Path partPath(String sessionId) {
+        // Session IDs are server-generated UUIDs; re-parse to keep request input out of the path
+        return partialDir.resolve(UUID.fromString(sessionId) + ".part");
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.model.FileEntity;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.nio.ByteBuffer;
+
+public interface CompressionService {
+
+    // Stores compressed variants next to the file's blob when its type is worth compressing
+    void prepare(FileEntity file) throws Exception;
+
+    /**
+     * Sends stored content in a coding the client accepts: a stored variant when there is one, else compressed on
+     * the fly while there is CPU to spare
+     * @param blobKey The content's blob, whose variants are looked up; null for files stored before blobs
+     * @param storageKey Where the original bytes are read from
+     * @return false when the caller should send the original bytes itself
+     */
+    boolean sendFile(String blobKey, String storageKey, String etag, String contentType, String attachmentName,
+                     HttpServletRequest request, HttpServletResponse response) throws Exception;
+
+    // The same for content already in memory, which is compressed from the buffer when there is no variant
+    boolean sendBuffer(String blobKey, ByteBuffer content, long lastModified, String etag, String contentType,
+                       HttpServletRequest request, HttpServletResponse response) throws Exception;
+
+    // Removes the variants of a blob whose content is being deleted
+    void deleteVariants(String blobKey) throws Exception;
+}
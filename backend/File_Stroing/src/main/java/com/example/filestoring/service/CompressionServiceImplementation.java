@@ -0,0 +1,312 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.model.FileEntity;
+import com.example.filestoring.storage.StorageBackend;
+import com.example.filestoring.util.ContentCoding;
+import com.example.filestoring.util.StreamChannels;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.InvalidMimeTypeException;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.zip.Deflater;
+
+/**
+ * Content-Encoding negotiation for file responses. Text-like uploads get compressed variants stored next to their
+ * blob by a processing stage, at the best level since that happens once. Until a variant exists (or for files kept
+ * outside blobs) responses are compressed as they are sent, at a cheaper level and only while a permit is free;
+ * otherwise the original bytes go out. Types that are already compressed are never touched.
+ */
+@Service
+public class CompressionServiceImplementation implements CompressionService {
+
+    private static final String DEFAULT_MIME_TYPES = "text/*,application/json,application/*+json,application/xml,"
+            + "application/*+xml,application/javascript,application/x-ndjson,application/yaml,image/svg+xml";
+
+    @Autowired
+    private StorageBackend storageBackend;
+
+    @Autowired
+    private FileDeliveryService fileDeliveryService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.compression.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.compression.mime-types:" + DEFAULT_MIME_TYPES + "}")
+    private String[] mimeTypes;
+
+    @Value("${app.compression.min-size:1KB}")
+    private DataSize minSize;
+
+    @Value("${app.compression.stream-max-size:16MB}")
+    private DataSize streamMaxSize;
+
+    @Value("${app.compression.stream-level:5}")
+    private int streamLevel;
+
+    @Value("${app.compression.max-concurrent:0}")
+    private int maxConcurrent;
+
+    private final List<MimeType> compressibleTypes = new ArrayList<>();
+
+    // The CPU budget for compressing on the fly; a request that finds none free is sent uncompressed
+    private Semaphore streamPermits;
+
+    private Counter servedVariant;
+    private Counter servedStreamed;
+    private Counter servedBusy;
+    private Counter variantsStored;
+    private Counter variantsSkipped;
+
+    @PostConstruct
+    public void open() {
+        for (String type : mimeTypes) {
+            if (!type.isBlank()) {
+                compressibleTypes.add(MimeTypeUtils.parseMimeType(type.trim()));
+            }
+        }
+        streamPermits = new Semaphore(maxConcurrent > 0
+                ? maxConcurrent : Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+
+        servedVariant = responseCounter("variant");
+        servedStreamed = responseCounter("streamed");
+        servedBusy = responseCounter("busy");
+        variantsStored = variantCounter("stored");
+        variantsSkipped = variantCounter("not-smaller");
+    }
+
+    private Counter responseCounter(String result) {
+        return Counter.builder("files.compression.responses")
+                .description("Responses that could be compressed: from a variant, on the fly, or not for lack of CPU")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private Counter variantCounter(String result) {
+        return Counter.builder("files.compression.variants")
+                .description("Compressed variants generated, by whether they were kept")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void prepare(FileEntity file) throws Exception {
+        String blobKey = file.getStorageKey();
+        if (!enabled || blobKey == null || !isCompressible(contentTypeOf(file))) {
+            return;
+        }
+        long size = storageBackend.size(blobKey);
+        if (size < minSize.toBytes()) {
+            return;
+        }
+
+        // Variants are named after the content hash, so one racing the blob's deletion is still correct, just unused
+        for (ContentCoding coding : ContentCoding.values()) {
+            String variantKey = coding.variantKey(blobKey);
+            if (storageBackend.exists(variantKey)) {
+                continue;
+            }
+            Path staged = storageBackend.createStagingFile();
+            try {
+                try (InputStream in = storageBackend.openStream(blobKey);
+                     OutputStream out = coding.compress(Files.newOutputStream(staged), Deflater.BEST_COMPRESSION)) {
+                    in.transferTo(out);
+                }
+                if (Files.size(staged) < size) {
+                    storageBackend.putFile(variantKey, staged);
+                    variantsStored.increment();
+                } else {
+                    variantsSkipped.increment();
+                }
+            } finally {
+                Files.deleteIfExists(staged);
+            }
+        }
+    }
+
+    @Override
+    public boolean sendFile(String blobKey, String storageKey, String etag, String contentType, String attachmentName,
+                            HttpServletRequest request, HttpServletResponse response) throws Exception {
+        long size = storageBackend.size(storageKey);
+        ContentCoding coding = choose(contentType, size, request, response);
+        if (coding == null) {
+            return false;
+        }
+        if (sendVariant(coding, blobKey, etag, contentType, attachmentName, request, response)) {
+            return true;
+        }
+        return stream(coding, size, storageBackend.lastModified(storageKey), etag, contentType, attachmentName,
+                request, response, out -> {
+                    try (InputStream in = storageBackend.openStream(storageKey)) {
+                        in.transferTo(out);
+                    }
+                });
+    }
+
+    @Override
+    public boolean sendBuffer(String blobKey, ByteBuffer content, long lastModified, String etag, String contentType,
+                              HttpServletRequest request, HttpServletResponse response) throws Exception {
+        ContentCoding coding = choose(contentType, content.remaining(), request, response);
+        if (coding == null) {
+            return false;
+        }
+        if (sendVariant(coding, blobKey, etag, contentType, null, request, response)) {
+            return true;
+        }
+        return stream(coding, content.remaining(), lastModified, etag, contentType, null, request, response, out -> {
+            ByteBuffer bytes = content.duplicate();
+            WritableByteChannel channel = StreamChannels.writable(out);
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        });
+    }
+
+    @Override
+    public void deleteVariants(String blobKey) throws Exception {
+        for (ContentCoding coding : ContentCoding.values()) {
+            storageBackend.delete(coding.variantKey(blobKey));
+        }
+    }
+
+    // The coding to send, or null for the original bytes; marks the response as varying whenever that could differ
+    private ContentCoding choose(String contentType, long size, HttpServletRequest request,
+                                 HttpServletResponse response) {
+        if (!enabled || size < minSize.toBytes() || !isCompressible(contentType)) {
+            return null;
+        }
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        return ContentCoding.negotiate(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+    }
+
+    // A stored variant is a file like any other, so it keeps Range, conditional GET and sendfile
+    private boolean sendVariant(ContentCoding coding, String blobKey, String etag, String contentType,
+                                String attachmentName, HttpServletRequest request, HttpServletResponse response)
+            throws Exception {
+        if (blobKey == null) {
+            return false;
+        }
+        String variantKey = coding.variantKey(blobKey);
+        if (!storageBackend.exists(variantKey)) {
+            return false;
+        }
+        response.setHeader(HttpHeaders.CONTENT_ENCODING, coding.getToken());
+        fileDeliveryService.sendFile(variantKey, encodedEtag(etag, coding), contentType, attachmentName, request,
+                response);
+        servedVariant.increment();
+        return true;
+    }
+
+    private boolean stream(ContentCoding coding, long size, long lastModified, String etag, String contentType,
+                           String attachmentName, HttpServletRequest request, HttpServletResponse response,
+                           BodyWriter body) throws IOException {
+        // Ranges would refer to compressed bytes that are never the same twice; those requests get the original
+        if (request.getHeader(HttpHeaders.RANGE) != null || size > streamMaxSize.toBytes()) {
+            return false;
+        }
+        if (!streamPermits.tryAcquire()) {
+            servedBusy.increment();
+            return false;
+        }
+        try {
+            // HTTP dates only carry whole seconds
+            lastModified = lastModified / 1000 * 1000;
+            // Weak: the same content compresses to the same bytes only while level and library stay the same
+            String streamEtag = etag != null
+                    ? encodedEtag(etag, coding)
+                    : "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "-" + coding.getToken()
+                    + "\"";
+            if (!streamEtag.startsWith("W/")) {
+                streamEtag = "W/" + streamEtag;
+            }
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, coding.getToken());
+            if (new ServletWebRequest(request, response).checkNotModified(streamEtag, lastModified)) {
+                return true;
+            }
+
+            response.setContentType(contentType);
+            if (attachmentName != null) {
+                response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(attachmentName, StandardCharsets.UTF_8).build().toString());
+            }
+            if ("HEAD".equals(request.getMethod())) {
+                return true;
+            }
+            // No Content-Length: the compressed size is only known at the end, so the response is chunked
+            try (OutputStream out = coding.compress(response.getOutputStream(), streamLevel)) {
+                body.writeTo(out);
+            }
+            servedStreamed.increment();
+            return true;
+        } finally {
+            streamPermits.release();
+        }
+    }
+
+    // "abc" becomes "abc-gzip"; a null etag stays null so the variant's own is derived from its file
+    private String encodedEtag(String etag, ContentCoding coding) {
+        if (etag == null) {
+            return null;
+        }
+        return etag.substring(0, etag.length() - 1) + "-" + coding.getToken() + "\"";
+    }
+
+    private boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        MimeType type;
+        try {
+            type = MimeTypeUtils.parseMimeType(contentType);
+        } catch (InvalidMimeTypeException ex) {
+            return false;
+        }
+        for (MimeType compressible : compressibleTypes) {
+            if (compressible.includes(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String contentTypeOf(FileEntity file) {
+        if (file.getContentType() != null) {
+            return file.getContentType();
+        }
+        return MediaTypeFactory.getMediaType(file.getFilePath())
+                .map(MediaType::toString)
+                .orElse(null);
+    }
+
+    private interface BodyWriter {
+
+        void writeTo(OutputStream out) throws IOException;
+    }
+}
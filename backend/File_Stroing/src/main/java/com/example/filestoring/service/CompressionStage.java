@@ -0,0 +1,27 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.model.FileEntity;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+// Compresses text-like uploads once, so their views and downloads need no compression on the request path
+@Component
+@Order(300)
+public class CompressionStage implements FileProcessingStage {
+
+    private final CompressionService compressionService;
+
+    public CompressionStage(CompressionService compressionService) {
+        this.compressionService = compressionService;
+    }
+
+    @Override
+    public String name() {
+        return "compression";
+    }
+
+    @Override
+    public void process(FileEntity file) throws Exception {
+        compressionService.prepare(file);
+    }
+}
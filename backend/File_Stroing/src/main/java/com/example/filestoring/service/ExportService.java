@@ -0,0 +1,12 @@
+package com.example.filestoring.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+public interface ExportService {
+
+    // Every file (or one user's files) as newline-delimited JSON, streamed from a database cursor
+    StreamingResponseBody exportFiles(Long userId);
+
+    // Every user as newline-delimited JSON, streamed from a database cursor
+    StreamingResponseBody exportUsers();
+}
@@ -0,0 +1,94 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.repository.FileRepository;
+import com.example.filestoring.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+@Service
+public class ExportServiceImplementation implements ExportService {
+
+    // Rows written between persistence-context clears and response flushes
+    private static final int BATCH_SIZE = 500;
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public StreamingResponseBody exportFiles(Long userId) {
+        return outputStream -> export(() -> userId == null
+                ? fileRepository.streamForExport()
+                : fileRepository.streamForExportByUserId(userId), outputStream);
+    }
+
+    @Override
+    public StreamingResponseBody exportUsers() {
+        return outputStream -> export(userRepository::streamAll, outputStream);
+    }
+
+    // Writes each row as soon as the cursor yields it; memory use does not depend on the table size
+    private <T> void export(Supplier<Stream<T>> query, OutputStream outputStream) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        SequenceWriter rows = objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator("\n")
+                .writeValues(generator);
+
+        // The stream only stays open inside a transaction, and this runs on an async thread
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        try {
+            transaction.executeWithoutResult(status -> {
+                try (Stream<T> stream = query.get()) {
+                    Iterator<T> iterator = stream.iterator();
+                    int count = 0;
+                    while (iterator.hasNext()) {
+                        rows.write(iterator.next());
+                        if (++count % BATCH_SIZE == 0) {
+                            // Drop the rows already written so the persistence context stays small
+                            entityManager.clear();
+                            generator.flush();
+                        }
+                    }
+                    if (count > 0) {
+                        generator.writeRaw('\n');
+                    }
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        generator.flush();
+    }
+}
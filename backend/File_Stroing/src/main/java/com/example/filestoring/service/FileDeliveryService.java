@@ -0,0 +1,17 @@
+package com.example.filestoring.service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.nio.ByteBuffer;
+
+public interface FileDeliveryService {
+
+    // Sends stored content with Range, ETag and conditional GET support; a null etag is derived from the content
+    void sendFile(String storageKey, String etag, String contentType, String attachmentName,
+                  HttpServletRequest request, HttpServletResponse response) throws Exception;
+
+    // The same for content already in memory; the buffer's position and limit are left untouched
+    void sendBuffer(ByteBuffer content, long lastModified, String etag, String contentType, String attachmentName,
+                    HttpServletRequest request, HttpServletResponse response) throws Exception;
+}
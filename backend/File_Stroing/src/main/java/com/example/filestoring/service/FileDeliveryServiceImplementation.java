@@ -0,0 +1,334 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.storage.StorageBackend;
+import com.example.filestoring.util.DirectBuffers;
+import com.example.filestoring.util.MappedTransfer;
+import com.example.filestoring.util.StreamChannels;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+@Service
+public class FileDeliveryServiceImplementation implements FileDeliveryService {
+
+    // Request attributes Tomcat's NIO connector uses to hand a file to sendfile()
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final StorageBackend storageBackend;
+
+    // Set when app.delivery.read-engine=mapped; local files that can't go through sendfile are then sent from mappings
+    private MappedTransfer mappedTransfer;
+
+    public FileDeliveryServiceImplementation(StorageBackend storageBackend) {
+        this.storageBackend = storageBackend;
+    }
+
+    @Autowired(required = false)
+    public void setMappedTransfer(MappedTransfer mappedTransfer) {
+        this.mappedTransfer = mappedTransfer;
+    }
+
+    @Override
+    public void sendFile(String storageKey, String etag, String contentType, String attachmentName,
+                         HttpServletRequest request, HttpServletResponse response) throws Exception {
+        if (!storageBackend.exists(storageKey)) {
+            throw new Exception("File not found on server!");
+        }
+
+        deliver(new StoredContent(storageKey), storageBackend.size(storageKey), storageBackend.lastModified(storageKey),
+                etag, contentType, attachmentName, request, response);
+    }
+
+    @Override
+    public void sendBuffer(ByteBuffer content, long lastModified, String etag, String contentType,
+                           String attachmentName, HttpServletRequest request, HttpServletResponse response)
+            throws Exception {
+        deliver(new BufferedContent(content), content.remaining(), lastModified, etag, contentType, attachmentName,
+                request, response);
+    }
+
+    private void deliver(Content content, long length, long lastModified, String etag, String contentType,
+                         String attachmentName, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        // HTTP dates only carry whole seconds
+        lastModified = lastModified / 1000 * 1000;
+        if (etag == null) {
+            // Without a stored content hash, size plus modification time still changes with the bytes
+            etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+        }
+
+        // Answers 304 (or 412 for failed If-Match) and sets ETag/Last-Modified for us
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (attachmentName != null) {
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                    .filename(attachmentName, StandardCharsets.UTF_8).build().toString());
+        }
+
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !ifRangeMatches(request, etag, lastModified)) {
+            response.setContentType(contentType);
+            send(content, 0, length, request, response);
+            return;
+        }
+
+        List<long[]> ranges = resolveRanges(rangeHeader, length);
+        if (ranges == null) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        if (ranges.size() == 1) {
+            long[] range = ranges.get(0);
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(range, length));
+            send(content, range[0], range[1] - range[0] + 1, request, response);
+        } else {
+            sendMultipart(content, ranges, length, contentType, request, response);
+        }
+    }
+
+    // If-Range only honours the Range header when the client's copy is still current
+    private boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return etag != null && ifRange.equals(etag);
+        }
+        long since = request.getDateHeader(HttpHeaders.IF_RANGE);
+        return since != -1 && lastModified <= since;
+    }
+
+    // Returns inclusive [start, end] pairs, or null when the header cannot be satisfied
+    private List<long[]> resolveRanges(String rangeHeader, long length) {
+        List<HttpRange> httpRanges;
+        try {
+            httpRanges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+
+        List<long[]> ranges = new ArrayList<>(httpRanges.size());
+        long total = 0;
+        for (HttpRange httpRange : httpRanges) {
+            long start;
+            long end;
+            try {
+                start = httpRange.getRangeStart(length);
+                end = httpRange.getRangeEnd(length);
+            } catch (IllegalArgumentException ex) {
+                return null;
+            }
+            if (length == 0 || start >= length || start > end) {
+                return null;
+            }
+            ranges.add(new long[] { start, end });
+            total += end - start + 1;
+        }
+        // Overlapping ranges that add up to more than the file are a known amplification trick
+        return total > length && ranges.size() > 1 ? null : ranges;
+    }
+
+    private String contentRange(long[] range, long length) {
+        return "bytes " + range[0] + "-" + range[1] + "/" + length;
+    }
+
+    private void send(Content content, long position, long count,
+                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod()) || count == 0) {
+            return;
+        }
+        if (content.sendfile(position, count, request)) {
+            return;
+        }
+        try (RangeReader reader = content.open()) {
+            reader.transfer(position, count, StreamChannels.writable(response.getOutputStream()));
+        }
+    }
+
+    private void sendMultipart(Content content, List<long[]> ranges, long length, String contentType,
+                               HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String boundary = new String(MimeTypeUtils.generateMultipartBoundary(), StandardCharsets.US_ASCII);
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+
+        long contentLength = closing.length;
+        for (long[] range : ranges) {
+            byte[] header = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + contentRange(range, length) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(header);
+            contentLength += header.length + range[1] - range[0] + 1;
+        }
+
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        ServletOutputStream out = response.getOutputStream();
+        WritableByteChannel target = StreamChannels.writable(out);
+        try (RangeReader reader = content.open()) {
+            for (int i = 0; i < ranges.size(); i++) {
+                long[] range = ranges.get(i);
+                out.write(partHeaders.get(i));
+                reader.transfer(range[0], range[1] - range[0] + 1, target);
+            }
+        }
+        out.write(closing);
+    }
+
+    // Where the bytes of a response come from
+    private interface Content {
+
+        // Hands the range to the connector's sendfile() if possible; false when the bytes must be written
+        boolean sendfile(long position, long count, HttpServletRequest request) throws IOException;
+
+        RangeReader open() throws IOException;
+    }
+
+    private interface RangeReader extends Closeable {
+
+        void transfer(long position, long count, WritableByteChannel target) throws IOException;
+    }
+
+    private class StoredContent implements Content {
+
+        private final String storageKey;
+
+        StoredContent(String storageKey) {
+            this.storageKey = storageKey;
+        }
+
+        @Override
+        public boolean sendfile(long position, long count, HttpServletRequest request) throws IOException {
+            // Let the connector use sendfile() so the bytes never enter user space
+            Optional<Path> localPath = storageBackend.localPath(storageKey);
+            if (localPath.isPresent() && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+                request.setAttribute(SENDFILE_FILENAME, localPath.get().toAbsolutePath().toString());
+                request.setAttribute(SENDFILE_START, position);
+                request.setAttribute(SENDFILE_END, position + count);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public RangeReader open() throws IOException {
+            SeekableByteChannel channel = storageBackend.openChannel(storageKey);
+            return new RangeReader() {
+                @Override
+                public void transfer(long position, long count, WritableByteChannel target) throws IOException {
+                    if (mappedTransfer != null && channel instanceof FileChannel fileChannel) {
+                        mappedTransfer.transfer(fileChannel, position, count, target);
+                    } else {
+                        FileDeliveryServiceImplementation.transfer(channel, position, count, target);
+                    }
+                }
+
+                @Override
+                public void close() throws IOException {
+                    channel.close();
+                }
+            };
+        }
+    }
+
+    // Memory needs neither a file descriptor nor a read: each range is a view of the shared buffer
+    private record BufferedContent(ByteBuffer buffer) implements Content {
+
+        @Override
+        public boolean sendfile(long position, long count, HttpServletRequest request) {
+            return false;
+        }
+
+        @Override
+        public RangeReader open() {
+            return new RangeReader() {
+                @Override
+                public void transfer(long position, long count, WritableByteChannel target) throws IOException {
+                    ByteBuffer range = buffer.duplicate();
+                    range.position(buffer.position() + (int) position);
+                    range.limit(range.position() + (int) count);
+                    while (range.hasRemaining()) {
+                        target.write(range);
+                    }
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+    }
+
+    private static void transfer(SeekableByteChannel channel, long position, long count, WritableByteChannel target)
+            throws IOException {
+        if (channel instanceof FileChannel) {
+            FileChannel fileChannel = (FileChannel) channel;
+            while (count > 0) {
+                long sent = fileChannel.transferTo(position, count, target);
+                if (sent <= 0) {
+                    throw new EOFException("File was truncated while it was being sent");
+                }
+                position += sent;
+                count -= sent;
+            }
+            return;
+        }
+
+        // Backends without a file descriptor are read positionally through a pooled buffer
+        ByteBuffer buffer = DirectBuffers.acquire();
+        try {
+            channel.position(position);
+            while (count > 0) {
+                buffer.limit((int) Math.min(buffer.capacity(), count));
+                int read = channel.read(buffer);
+                if (read < 0) {
+                    throw new EOFException("Content was truncated while it was being sent");
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                buffer.clear();
+                count -= read;
+            }
+        } finally {
+            DirectBuffers.release(buffer);
+        }
+    }
+}
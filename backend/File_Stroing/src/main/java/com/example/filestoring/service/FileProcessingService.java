@@ -0,0 +1,8 @@
+package com.example.filestoring.service;
+
+public interface FileProcessingService {
+
+    // Queues the processing stages for a new file. Call it in the transaction that inserts the file,
+    // so the job is committed (or rolled back) together with the row
+    void enqueue(Long fileId);
+}
@@ -0,0 +1,350 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.model.FileEntity;
+import com.example.filestoring.model.JobStatus;
+import com.example.filestoring.model.ProcessingJob;
+import com.example.filestoring.model.ProcessingStatus;
+import com.example.filestoring.repository.FileRepository;
+import com.example.filestoring.repository.ProcessingJobRepository;
+import com.example.filestoring.util.AfterCommit;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs post-upload stages from the processing_jobs table. A poller claims due jobs with SKIP LOCKED, but never
+ * more than there are idle workers, so a backlog waits in the database rather than in memory. A claimed job
+ * is leased: if this instance dies, the lease runs out and the job is claimed again. Failed jobs are retried
+ * with exponential backoff, then marked FAILED together with their file.
+ */
+@Service
+public class FileProcessingServiceImplementation implements FileProcessingService {
+
+    private static final Logger log = LoggerFactory.getLogger(FileProcessingServiceImplementation.class);
+
+    private static final EnumSet<JobStatus> CLAIMABLE = EnumSet.of(JobStatus.QUEUED, JobStatus.RUNNING);
+
+    // Longest retry delay, as a multiple of the base backoff
+    private static final int MAX_BACKOFF_SHIFT = 10;
+
+    @Autowired
+    private ProcessingJobRepository jobRepository;
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CacheEvictor cacheEvictor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private List<FileProcessingStage> stages;
+
+    @Value("${app.processing.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.processing.workers:2}")
+    private int workerCount;
+
+    @Value("${app.processing.poll-interval:PT5S}")
+    private Duration pollInterval;
+
+    @Value("${app.processing.lease:PT5M}")
+    private Duration lease;
+
+    @Value("${app.processing.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${app.processing.retry-backoff:PT10S}")
+    private Duration retryBackoff;
+
+    private final String workerId = UUID.randomUUID().toString();
+
+    private final Object signal = new Object();
+    private boolean signalled;
+
+    private volatile boolean running;
+    private Thread poller;
+    private ExecutorService workers;
+    private Semaphore idleWorkers;
+
+    private Counter completed;
+    private Counter retried;
+    private Counter failed;
+    private Counter dropped;
+
+    @PostConstruct
+    public void registerMetrics() {
+        completed = jobCounter("completed");
+        retried = jobCounter("retried");
+        failed = jobCounter("failed");
+        dropped = jobCounter("dropped");
+        for (JobStatus status : JobStatus.values()) {
+            Gauge.builder("files.processing.queue", jobRepository, repository -> repository.countByStatus(status))
+                    .description("Processing jobs in the database by status")
+                    .tag("status", status.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+    }
+
+    private Counter jobCounter(String outcome) {
+        return Counter.builder("files.processing.jobs")
+                .description("Processing jobs finished by this instance, by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            log.info("Post-upload processing is disabled on this instance");
+            return;
+        }
+        AtomicInteger counter = new AtomicInteger();
+        workers = new ThreadPoolExecutor(workerCount, workerCount, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "file-processing-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        idleWorkers = new Semaphore(workerCount);
+        running = true;
+        poller = new Thread(this::poll, "file-processing-poller");
+        poller.setDaemon(true);
+        poller.start();
+        Gauge.builder("files.processing.active", idleWorkers, idle -> workerCount - idle.availablePermits())
+                .description("Workers running a job on this instance")
+                .register(meterRegistry);
+    }
+
+    // Jobs still running when the wait ends keep their lease and are picked up again once it runs out
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (poller == null) {
+            return;
+        }
+        poller.interrupt();
+        workers.shutdown();
+        if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Processing jobs still running at shutdown; they will be retried after their lease");
+        }
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(Long fileId) {
+        jobRepository.save(new ProcessingJob(fileId));
+        // Start on it now instead of at the next poll
+        AfterCommit.run(this::wakeUp);
+    }
+
+    private void wakeUp() {
+        synchronized (signal) {
+            signalled = true;
+            signal.notifyAll();
+        }
+    }
+
+    private void poll() {
+        while (running) {
+            try {
+                idleWorkers.acquire();
+                int idle = 1 + idleWorkers.drainPermits();
+                List<JobClaim> claims;
+                try {
+                    claims = claim(idle, new Date());
+                } catch (RuntimeException ex) {
+                    idleWorkers.release(idle);
+                    log.warn("Could not claim processing jobs", ex);
+                    awaitWork();
+                    continue;
+                }
+                idleWorkers.release(idle - claims.size());
+                for (JobClaim claim : claims) {
+                    workers.execute(() -> {
+                        try {
+                            process(claim);
+                        } finally {
+                            idleWorkers.release();
+                        }
+                    });
+                }
+                // A full batch suggests more is due, so only sleep once the queue comes up short
+                if (claims.size() < idle) {
+                    awaitWork();
+                }
+            } catch (InterruptedException ex) {
+                return;
+            }
+        }
+    }
+
+    private void awaitWork() throws InterruptedException {
+        synchronized (signal) {
+            if (!signalled) {
+                signal.wait(pollInterval.toMillis());
+            }
+            signalled = false;
+        }
+    }
+
+    // Leases up to max due jobs (new, backed off until now, or abandoned by a worker whose lease ran out)
+    List<JobClaim> claim(int max, Date now) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        return transaction.execute(status -> {
+            List<ProcessingJob> jobs = jobRepository.findDueForUpdate(CLAIMABLE, now, PageRequest.of(0, max));
+            List<JobClaim> claims = new ArrayList<>(jobs.size());
+            Date leaseEnd = new Date(now.getTime() + lease.toMillis());
+            for (ProcessingJob job : jobs) {
+                job.setStatus(JobStatus.RUNNING);
+                job.setAttempts(job.getAttempts() + 1);
+                job.setRunAfter(leaseEnd);
+                job.setWorkerId(workerId);
+                claims.add(new JobClaim(job.getId(), job.getFileId(), job.getAttempts()));
+            }
+            return claims;
+        });
+    }
+
+    void process(JobClaim claim) {
+        Optional<FileEntity> found;
+        try {
+            found = fileRepository.findById(claim.fileId());
+        } catch (RuntimeException ex) {
+            retryOrFail(claim, null, "load", ex);
+            return;
+        }
+        if (found.isEmpty()) {
+            // Deleted before it was processed: nothing left to do
+            if (jobRepository.deleteClaimed(claim.id(), claim.attempts(), JobStatus.RUNNING) > 0) {
+                dropped.increment();
+            }
+            return;
+        }
+
+        FileEntity file = found.get();
+        if (claim.attempts() > maxAttempts) {
+            // Claimed again after its last allowed attempt died with the worker
+            fail(claim, file, "Gave up after " + maxAttempts + " attempts");
+            return;
+        }
+
+        for (FileProcessingStage stage : stages) {
+            long start = System.nanoTime();
+            try {
+                stage.process(file);
+            } catch (Exception ex) {
+                stageTimer(stage, "failure").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                retryOrFail(claim, file, stage.name(), ex);
+                return;
+            }
+            stageTimer(stage, "success").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        complete(claim, file);
+    }
+
+    private Timer stageTimer(FileProcessingStage stage, String outcome) {
+        return Timer.builder("files.processing.stage")
+                .description("Time spent in each post-upload processing stage")
+                .tag("stage", stage.name())
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private void complete(JobClaim claim, FileEntity file) {
+        boolean done = transactionTemplate().execute(status -> {
+            if (jobRepository.deleteClaimed(claim.id(), claim.attempts(), JobStatus.RUNNING) == 0) {
+                return false;
+            }
+            fileRepository.updateProcessingStatus(claim.fileId(), ProcessingStatus.READY);
+            cacheEvictor.fileChanged(claim.fileId(), file.getUser().getId());
+            return true;
+        });
+        if (done) {
+            completed.increment();
+        } else {
+            log.info("Processing job {} was claimed again or removed before it finished", claim.id());
+        }
+    }
+
+    private void retryOrFail(JobClaim claim, FileEntity file, String stage, Exception ex) {
+        String error = stage + ": " + ex;
+        if (claim.attempts() >= maxAttempts) {
+            log.error("Processing of file {} failed for good in stage {}", claim.fileId(), stage, ex);
+            fail(claim, file, error);
+            return;
+        }
+        long delay = retryBackoff.toMillis() << Math.min(claim.attempts() - 1, MAX_BACKOFF_SHIFT);
+        log.warn("Processing of file {} failed in stage {} (attempt {}), retrying in {} ms",
+                claim.fileId(), stage, claim.attempts(), delay, ex);
+        int updated = jobRepository.releaseClaimed(claim.id(), claim.attempts(), JobStatus.RUNNING,
+                JobStatus.QUEUED, new Date(System.currentTimeMillis() + delay), truncate(error));
+        if (updated > 0) {
+            retried.increment();
+        }
+    }
+
+    private void fail(JobClaim claim, FileEntity file, String error) {
+        boolean marked = transactionTemplate().execute(status -> {
+            if (jobRepository.releaseClaimed(claim.id(), claim.attempts(), JobStatus.RUNNING,
+                    JobStatus.FAILED, new Date(), truncate(error)) == 0) {
+                return false;
+            }
+            fileRepository.updateProcessingStatus(claim.fileId(), ProcessingStatus.FAILED);
+            if (file != null) {
+                cacheEvictor.fileChanged(claim.fileId(), file.getUser().getId());
+            }
+            return true;
+        });
+        if (marked) {
+            failed.increment();
+        }
+    }
+
+    private TransactionTemplate transactionTemplate() {
+        return new TransactionTemplate(transactionManager);
+    }
+
+    private static String truncate(String error) {
+        return error.length() <= 1000 ? error : error.substring(0, 1000);
+    }
+
+    // What a worker needs to run a claimed job and to prove the claim is still its own
+    record JobClaim(Long id, Long fileId, int attempts) {
+    }
+}
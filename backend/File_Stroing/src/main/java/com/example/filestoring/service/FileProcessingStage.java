@@ -0,0 +1,16 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.model.FileEntity;
+
+/**
+ * One step of the background work that follows an upload. Stages run in @Order order, off the request thread.
+ * A stage can run more than once for the same file (after a failure, or when a worker loses its lease),
+ * so it must be idempotent.
+ */
+public interface FileProcessingStage {
+
+    // Tags the stage's metrics and errors
+    String name();
+
+    void process(FileEntity file) throws Exception;
+}
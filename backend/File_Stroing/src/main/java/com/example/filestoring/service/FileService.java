@@ -1,9 +1,18 @@
 package com.example.filestoring.service;
 
+import com.example.filestoring.dto.FileDetail;
+import com.example.filestoring.dto.FileSummary;
+import com.example.filestoring.model.CursorPage;
 import com.example.filestoring.model.FileEntity;
+import com.example.filestoring.util.IngestResult;
+import com.example.filestoring.util.RenditionSize;
+import com.example.filestoring.util.ZipCompression;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.core.io.Resource;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.nio.file.Path;
 import java.util.List;
@@ -11,29 +20,46 @@ import java.util.List;
 public interface FileService {
     FileEntity uploadFile(Long userId, MultipartFile file, String title, String description) throws Exception;
 
-    List<FileEntity> getAllFiles();
+    // Moves a fully written file into shared storage and registers it; the staged file is consumed on success
+    FileEntity saveUploadedFile(Long userId, String originalFileName, Path stagedFile, IngestResult content,
+                                String title, String description) throws Exception;
 
-    List<FileEntity> getUserFiles(Long userId);
+    // List views carry no description; the owner is joined only when includeOwner is set
+    List<FileSummary> getAllFiles(boolean includeOwner);
+
+    List<FileSummary> getUserFiles(Long userId, boolean includeOwner);
+
+    // Keyset-paginated listings, newest first; a null cursor starts at the first page
+    CursorPage<FileSummary> getFilesPage(String cursor, Integer limit) throws Exception;
+
+    CursorPage<FileSummary> getUserFilesPage(Long userId, String cursor, Integer limit) throws Exception;
 
     FileEntity getFileById(Long fileId);
 
+    // Everything the file page shows, description and owner included
+    FileDetail getFileDetail(Long fileId);
+
     FileEntity updateFile(Long fileId, String title, String description, Long userId) throws Exception;
 
     void deleteFile(Long fileId, Long userId) throws Exception;
 
-    ResponseEntity<Resource> downloadFileAsZip(Long fileId) throws Exception;
+    ResponseEntity<StreamingResponseBody> downloadFileAsZip(Long fileId, ZipCompression compression) throws Exception;
+
+    ResponseEntity<StreamingResponseBody> downloadFilesAsZip(List<Long> fileIds, ZipCompression compression) throws Exception;
 
-    Resource downloadFile(Long fileId) throws Exception;
+    ResponseEntity<StreamingResponseBody> downloadUserFilesAsZip(Long userId, ZipCompression compression) throws Exception;
 
-    Path getUploadDir();
+    void downloadFile(Long fileId, HttpServletRequest request, HttpServletResponse response) throws Exception;
 
-    // Add this method to the interface
-    ResponseEntity<Resource> viewFile(String fileName) throws Exception;
+    // Serves the original inline, or a downscaled image when a rendition size is given
+    void viewFile(String fileName, RenditionSize size, HttpServletRequest request, HttpServletResponse response)
+            throws Exception;
 
     // Define the loadFileAsResource method to load the file
     Resource loadFileAsResource(String fileName) throws Exception;
 
-    List<FileEntity> searchFiles(String query);
+    // Ranked full-text search over title, description and owner name; page is zero-based
+    List<FileSummary> searchFiles(String query, int page, Integer limit) throws Exception;
 
 
 
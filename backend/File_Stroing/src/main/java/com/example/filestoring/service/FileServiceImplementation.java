@@ -1,82 +1,256 @@
 package com.example.filestoring.service;
 
+import com.example.filestoring.config.CacheConfig;
+import com.example.filestoring.dto.FileDetail;
+import com.example.filestoring.dto.FileSummary;
+import com.example.filestoring.model.CursorPage;
 import com.example.filestoring.model.FileEntity;
+import com.example.filestoring.model.ProcessingStatus;
+import com.example.filestoring.model.User;
 import com.example.filestoring.repository.FileRepository;
+import com.example.filestoring.repository.ProcessingJobRepository;
 import com.example.filestoring.repository.UserRepository;
+import com.example.filestoring.storage.StorageBackend;
 import com.example.filestoring.util.IdGenerator;
+import com.example.filestoring.util.IngestResult;
+import com.example.filestoring.util.PageCursor;
+import com.example.filestoring.util.ParallelZipWriter;
+import com.example.filestoring.util.RenditionSize;
+import com.example.filestoring.util.StreamingIngest;
+import com.example.filestoring.util.ZipCompression;
+import com.example.filestoring.util.ZipStreams;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.ByteArrayResource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.io.*;
 import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
-import java.util.zip.ZipEntry;
+import java.util.concurrent.ExecutorService;
 import java.util.zip.ZipOutputStream;
 
 @Service
 public class FileServiceImplementation implements FileService {
 
-    private static final Path UPLOAD_DIR = Paths.get("uploads");
-
     @Autowired
     private FileRepository fileRepository;
 
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private FileDeliveryService fileDeliveryService;
+
+    @Autowired
+    private BlobService blobService;
+
+    @Autowired
+    private StorageBackend storageBackend;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
+    @Autowired
+    private SuggestionService suggestionService;
+
+    @Autowired
+    private CacheEvictor cacheEvictor;
+
+    @Autowired
+    private FileProcessingService fileProcessingService;
+
+    @Autowired
+    private RenditionService renditionService;
+
+    @Autowired
+    private HotFileCache hotFileCache;
+
+    @Autowired
+    private CompressionService compressionService;
+
+    @Autowired
+    private ProcessingJobRepository processingJobRepository;
+
+    @Autowired
+    private UsageService usageService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    @Qualifier("zipExportExecutor")
+    private ExecutorService zipExportExecutor;
+
+    @Value("${app.paging.default-size:50}")
+    private int defaultPageSize;
+
+    @Value("${app.paging.max-size:200}")
+    private int maxPageSize;
+
+    // How many entries may be compressed ahead of the one being streamed
+    @Value("${app.zip.export-window:8}")
+    private int zipExportWindow;
+
     public FileServiceImplementation(FileRepository fileRepository) {
         this.fileRepository = fileRepository;
     }
 
     @Override
-    public List<FileEntity> searchFiles(String query) {
-        // Search by title or firstName/lastName (case-insensitive)
-        return fileRepository
-                .findByTitleContainingIgnoreCaseOrUser_FirstNameContainingIgnoreCaseOrUser_LastNameContainingIgnoreCase(
-                        query, query, query);
+    public List<FileSummary> searchFiles(String query, int page, Integer limit) throws Exception {
+        return searchIndexService.searchFiles(query, page, pageSize(limit));
     }
 
     @Override
     public FileEntity uploadFile(Long userId, MultipartFile file, String title, String description) throws Exception {
-        Files.createDirectories(UPLOAD_DIR);
-
         String originalFileName = file.getOriginalFilename();
-        String uniqueFileName = UUID.randomUUID().toString() + "_" + originalFileName;
-        Path filePath = UPLOAD_DIR.resolve(uniqueFileName);
-        Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+        Path stagedFile = blobService.newTempFile();
+        try {
+            IngestResult content;
+            try (InputStream in = file.getInputStream()) {
+                content = StreamingIngest.ingest(in, stagedFile, originalFileName);
+            }
+            return saveUploadedFile(userId, originalFileName, stagedFile, content, title, description);
+        } finally {
+            Files.deleteIfExists(stagedFile);
+        }
+    }
 
+    @Override
+    public FileEntity saveUploadedFile(Long userId, String originalFileName, Path stagedFile, IngestResult content,
+                                       String title, String description) throws Exception {
+        // Only the foreign key is needed, so don't load the owner; a missing user fails the insert instead
+        User owner = userRepository.getReferenceById(userId);
+
+        // The public name keeps the original extension; the bytes live in a blob shared by identical uploads
+        String uniqueFileName = UUID.randomUUID().toString() + "_" + originalFileName;
         String fileUrl = ServletUriComponentsBuilder.fromCurrentContextPath()
-                .path("/uploads/")
+                .path("/files/view/")
                 .path(uniqueFileName)
                 .toUriString();
 
-        FileEntity fileEntity = new FileEntity(title, description, uniqueFileName, fileUrl,
-                userRepository.findById(userId)
-                        .orElseThrow(() -> new Exception("User not found")));
+        String storageKey = blobService.store(stagedFile, content);
+
+        FileEntity fileEntity = new FileEntity(title, description, uniqueFileName, fileUrl, owner);
+        fileEntity.setStorageKey(storageKey);
+        fileEntity.setContentHash(content.getSha256());
+        fileEntity.setFileSize(content.getSize());
+        fileEntity.setContentType(content.getContentType());
+        fileEntity.setProcessingStatus(ProcessingStatus.PENDING);
 
-        // Set a custom 8-digit ID for the file
-        fileEntity.setId(IdGenerator.generateEightDigitId());
+        // Time-ordered, so new rows append to the end of the primary key index
+        fileEntity.setId(IdGenerator.nextId());
 
-        return fileRepository.save(fileEntity);
+        // The row, its processing job and the owner's usage commit together, so no upload is left without its
+        // follow-up work and the quota check cannot race another upload by the same user
+        FileEntity saved;
+        try {
+            saved = new TransactionTemplate(transactionManager).execute(status -> {
+                if (!usageService.charge(userId, content.getSize(), 1)) {
+                    return null;
+                }
+                FileEntity row = fileRepository.save(fileEntity);
+                fileProcessingService.enqueue(row.getId());
+                return row;
+            });
+        } catch (DataIntegrityViolationException ex) {
+            blobService.release(content.getSha256());
+            throw new Exception("User not found", ex);
+        } catch (RuntimeException ex) {
+            blobService.release(content.getSha256());
+            throw ex;
+        }
+        if (saved == null) {
+            blobService.release(content.getSha256());
+            throw new Exception("Storage quota exceeded");
+        }
+        suggestionService.fileTitleAdded(saved.getTitle());
+        cacheEvictor.fileAdded(userId);
+        return saved;
     }
 
     @Override
-    public List<FileEntity> getAllFiles() {
-        return fileRepository.findAll();
+    public List<FileSummary> getAllFiles(boolean includeOwner) {
+        return includeOwner ? fileRepository.findSummariesWithOwner() : fileRepository.findSummaries();
     }
 
     @Override
-    public List<FileEntity> getUserFiles(Long userId) {
-        return fileRepository.findByUserId(userId);
+    @Cacheable(value = CacheConfig.USER_FILES, key = "#userId + ':' + #includeOwner")
+    public List<FileSummary> getUserFiles(Long userId, boolean includeOwner) {
+        return includeOwner
+                ? fileRepository.findSummariesWithOwnerByUserId(userId)
+                : fileRepository.findSummariesByUserId(userId);
+    }
+
+    @Override
+    public CursorPage<FileSummary> getFilesPage(String cursor, Integer limit) throws Exception {
+        PageCursor after = decodeCursor(cursor);
+        Pageable page = PageRequest.of(0, pageSize(limit) + 1);
+        List<FileSummary> files = after == null
+                ? fileRepository.findFirstPage(page)
+                : fileRepository.findPageAfter(new Date(after.getSortKey()), after.getId(), page);
+        return toPage(files, page.getPageSize() - 1);
+    }
+
+    @Override
+    public CursorPage<FileSummary> getUserFilesPage(Long userId, String cursor, Integer limit) throws Exception {
+        PageCursor after = decodeCursor(cursor);
+        Pageable page = PageRequest.of(0, pageSize(limit) + 1);
+        List<FileSummary> files = after == null
+                ? fileRepository.findUserFirstPage(userId, page)
+                : fileRepository.findUserPageAfter(userId, new Date(after.getSortKey()), after.getId(), page);
+        return toPage(files, page.getPageSize() - 1);
+    }
+
+    private int pageSize(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return defaultPageSize;
+        }
+        return Math.min(limit, maxPageSize);
+    }
+
+    private PageCursor decodeCursor(String cursor) throws Exception {
+        try {
+            return PageCursor.decode(cursor);
+        } catch (IllegalArgumentException ex) {
+            throw new Exception("Invalid page cursor!");
+        }
+    }
+
+    // One extra row is fetched to learn whether another page exists
+    private CursorPage<FileSummary> toPage(List<FileSummary> files, int size) {
+        if (files.size() <= size) {
+            return new CursorPage<>(files, null);
+        }
+        List<FileSummary> items = files.subList(0, size);
+        FileSummary last = items.get(size - 1);
+        return new CursorPage<>(items, new PageCursor(last.createdDate().getTime(), last.id()).encode());
     }
 
     @Override
@@ -85,6 +259,13 @@ public class FileServiceImplementation implements FileService {
     }
 
     @Override
+    @Cacheable(value = CacheConfig.FILE_DETAILS, unless = "#result == null")
+    public FileDetail getFileDetail(Long fileId) {
+        return fileRepository.findDetailById(fileId).orElse(null);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
     public void deleteFile(Long fileId, Long userId) throws Exception {
         FileEntity fileEntity = fileRepository.findById(fileId)
                 .orElseThrow(() -> new Exception("File not found"));
@@ -93,48 +274,117 @@ public class FileServiceImplementation implements FileService {
             throw new Exception("You are not authorized to delete this file.");
         }
 
-        Files.deleteIfExists(UPLOAD_DIR.resolve(fileEntity.getFilePath()));
         fileRepository.delete(fileEntity);
+        processingJobRepository.deleteByFileId(fileId);
+        usageService.discharge(userId, sizeOf(fileEntity));
+        hotFileCache.invalidate(fileEntity.getFilePath());
+        searchIndexService.removeFile(fileId);
+        suggestionService.fileTitleRemoved(fileEntity.getTitle());
+        cacheEvictor.fileChanged(fileId, userId);
+        if (fileEntity.getStorageKey() != null) {
+            // Shared content is only removed when its last reference goes
+            blobService.release(fileEntity.getContentHash());
+        } else {
+            storageBackend.delete(fileEntity.getFilePath());
+        }
+    }
+
+    // Rows from before sizes were recorded are measured on disk; content that is gone counted for nothing
+    private long sizeOf(FileEntity fileEntity) throws IOException {
+        if (fileEntity.getFileSize() != null) {
+            return fileEntity.getFileSize();
+        }
+        String key = storageKeyFor(fileEntity);
+        return storageBackend.exists(key) ? storageBackend.size(key) : 0;
+    }
+
+    // Where a file's bytes live: its blob, or the per-upload file for rows stored before blobs existed
+    private String storageKeyFor(FileEntity fileEntity) {
+        return fileEntity.getStorageKey() != null ? fileEntity.getStorageKey() : fileEntity.getFilePath();
     }
 
     @Override
-    public ResponseEntity<Resource> downloadFileAsZip(Long fileId) throws Exception {
+    public ResponseEntity<StreamingResponseBody> downloadFileAsZip(Long fileId, ZipCompression compression)
+            throws Exception {
         FileEntity fileEntity = getFileById(fileId);
         if (fileEntity == null) {
             throw new Exception("File not found!");
         }
 
-        Path filePath = UPLOAD_DIR.resolve(fileEntity.getFilePath());
-        File file = filePath.toFile();
+        String storageKey = storageKeyFor(fileEntity);
 
-        if (!file.exists()) {
+        if (!storageBackend.exists(storageKey)) {
             throw new Exception("File not found on server!");
         }
 
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        try (ZipOutputStream zos = new ZipOutputStream(baos)) {
-            zipFile(file, zos);
-        }
-
-        ByteArrayResource resource = new ByteArrayResource(baos.toByteArray());
+        // Entries are written straight to the response, so heap use does not grow with the file
+        StreamingResponseBody body = outputStream -> {
+            try (ZipOutputStream zos = new ZipOutputStream(outputStream)) {
+                ZipStreams.writeEntry(storageBackend, storageKey, fileEntity.getFilePath(), compression, zos,
+                        ZipStreams.newBuffer());
+            }
+        };
 
         return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileEntity.getTitle() + ".zip\"")
                 .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(resource);
+                .body(body);
     }
 
-    private void zipFile(File file, ZipOutputStream zos) throws IOException {
-        try (FileInputStream fis = new FileInputStream(file)) {
-            ZipEntry zipEntry = new ZipEntry(file.getName());
-            zos.putNextEntry(zipEntry);
-            byte[] buffer = new byte[1024];
-            int length;
-            while ((length = fis.read(buffer)) >= 0) {
-                zos.write(buffer, 0, length);
+    @Override
+    public ResponseEntity<StreamingResponseBody> downloadFilesAsZip(List<Long> fileIds, ZipCompression compression)
+            throws Exception {
+        if (fileIds == null || fileIds.isEmpty()) {
+            throw new Exception("No files selected!");
+        }
+
+        Map<Long, FileEntity> filesById = new HashMap<>();
+        for (FileEntity fileEntity : fileRepository.findAllById(fileIds)) {
+            filesById.put(fileEntity.getId(), fileEntity);
+        }
+
+        // Keep the order the client asked for, ignoring repeated IDs
+        List<FileEntity> files = new ArrayList<>();
+        for (Long fileId : new LinkedHashSet<>(fileIds)) {
+            FileEntity fileEntity = filesById.get(fileId);
+            if (fileEntity == null) {
+                throw new Exception("File not found: " + fileId);
             }
-            zos.closeEntry();
+            files.add(fileEntity);
         }
+
+        return bulkZipResponse(files, compression, "files.zip");
+    }
+
+    @Override
+    public ResponseEntity<StreamingResponseBody> downloadUserFilesAsZip(Long userId, ZipCompression compression)
+            throws Exception {
+        List<FileEntity> files = fileRepository.findByUserId(userId);
+        if (files.isEmpty()) {
+            throw new Exception("No files found for user " + userId);
+        }
+        return bulkZipResponse(files, compression, "user_" + userId + "_files.zip");
+    }
+
+    private ResponseEntity<StreamingResponseBody> bulkZipResponse(List<FileEntity> files, ZipCompression compression,
+                                                                  String archiveName) throws Exception {
+        List<ParallelZipWriter.Source> sources = new ArrayList<>(files.size());
+        for (FileEntity fileEntity : files) {
+            String storageKey = storageKeyFor(fileEntity);
+            if (!storageBackend.exists(storageKey)) {
+                throw new Exception("File not found on server: " + fileEntity.getId());
+            }
+            sources.add(new ParallelZipWriter.Source(storageKey, fileEntity.getFilePath()));
+        }
+
+        ParallelZipWriter writer = new ParallelZipWriter(storageBackend, zipExportExecutor, zipExportWindow,
+                compression);
+        StreamingResponseBody body = outputStream -> writer.write(sources, outputStream);
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + archiveName + "\"")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(body);
     }
 
     @Override
@@ -146,45 +396,122 @@ public class FileServiceImplementation implements FileService {
             throw new Exception("Unauthorized update attempt");
         }
 
+        String oldTitle = fileEntity.getTitle();
         fileEntity.setTitle(title);
         fileEntity.setDescription(description);
-        return fileRepository.save(fileEntity);
-    }
-
-    @Override
-    public Path getUploadDir() {
-        return UPLOAD_DIR;
+        FileEntity saved = fileRepository.save(fileEntity);
+        searchIndexService.indexFile(saved);
+        suggestionService.fileTitleRemoved(oldTitle);
+        suggestionService.fileTitleAdded(saved.getTitle());
+        cacheEvictor.fileChanged(fileId, userId);
+        return saved;
     }
 
     @Override
-    public Resource downloadFile(Long fileId) throws Exception {
+    public void downloadFile(Long fileId, HttpServletRequest request, HttpServletResponse response) throws Exception {
         FileEntity fileEntity = fileRepository.findById(fileId)
                 .orElseThrow(() -> new Exception("File not found!"));
 
-        Path filePath = UPLOAD_DIR.resolve(fileEntity.getFilePath());
+        String storageKey = storageKeyFor(fileEntity);
 
-        if (!Files.exists(filePath)) {
+        if (!storageBackend.exists(storageKey)) {
             throw new Exception("File not found on server!");
         }
 
-        return new UrlResource(filePath.toUri());
+        String fileName = fileEntity.getFilePath();
+        String etag = etagFor(fileEntity);
+        String contentType = contentTypeFor(fileEntity, fileName);
+        if (compressionService.sendFile(fileEntity.getStorageKey(), storageKey, etag, contentType, fileName, request,
+                response)) {
+            return;
+        }
+        fileDeliveryService.sendFile(storageKey, etag, contentType, fileName, request, response);
     }
 
     @Override
-    public ResponseEntity<Resource> viewFile(String fileName) throws Exception {
-        Resource resource = loadFileAsResource(fileName);
-        return ResponseEntity.ok()
-                .body(resource);
+    public void viewFile(String fileName, RenditionSize size, HttpServletRequest request, HttpServletResponse response)
+            throws Exception {
+        if (size == null) {
+            HotFileCache.Entry hot = hotFileCache.get(fileName);
+            if (hot != null) {
+                sendHot(hot, request, response);
+                return;
+            }
+        }
+
+        FileEntity fileEntity = fileRepository.findByFilePath(fileName);
+        if (size != null) {
+            if (fileEntity == null) {
+                throw new Exception("File not found: " + fileName);
+            }
+            renditionService.sendRendition(fileEntity, size, request, response);
+            return;
+        }
+        String storageKey = fileEntity != null ? storageKeyFor(fileEntity) : fileName;
+        if (!storageBackend.exists(storageKey)) {
+            throw new Exception("File not found: " + fileName);
+        }
+
+        String blobKey = fileEntity != null ? fileEntity.getStorageKey() : null;
+        String etag = etagFor(fileEntity);
+        String contentType = contentTypeFor(fileEntity, fileName);
+
+        // Only registered files are cached, so a delete is always there to invalidate them
+        if (fileEntity != null) {
+            HotFileCache.Entry hot = hotFileCache.admit(fileName, storageBackend, storageKey, blobKey,
+                    storageBackend.size(storageKey), storageBackend.lastModified(storageKey), etag, contentType);
+            if (hot != null) {
+                sendHot(hot, request, response);
+                return;
+            }
+        }
+        if (compressionService.sendFile(blobKey, storageKey, etag, contentType, null, request, response)) {
+            return;
+        }
+        fileDeliveryService.sendFile(storageKey, etag, contentType, null, request, response);
+    }
+
+    private void sendHot(HotFileCache.Entry hot, HttpServletRequest request, HttpServletResponse response)
+            throws Exception {
+        if (compressionService.sendBuffer(hot.blobKey(), hot.content(), hot.lastModified(), hot.etag(),
+                hot.contentType(), request, response)) {
+            return;
+        }
+        fileDeliveryService.sendBuffer(hot.content(), hot.lastModified(), hot.etag(), hot.contentType(), null,
+                request, response);
+    }
+
+    // Strong ETag from the stored digest; older rows without one fall back to a file-based ETag
+    private String etagFor(FileEntity fileEntity) {
+        if (fileEntity == null || fileEntity.getContentHash() == null) {
+            return null;
+        }
+        return "\"" + fileEntity.getContentHash() + "\"";
+    }
+
+    private String contentTypeFor(FileEntity fileEntity, String fileName) {
+        if (fileEntity != null && fileEntity.getContentType() != null) {
+            return fileEntity.getContentType();
+        }
+        return contentTypeFor(fileName);
+    }
+
+    private String contentTypeFor(String fileName) {
+        return MediaTypeFactory.getMediaType(fileName)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM)
+                .toString();
     }
 
     @Override
     public Resource loadFileAsResource(String fileName) throws Exception {
         try {
-            Path filePath = UPLOAD_DIR.resolve(fileName).normalize();
-            Resource resource = new UrlResource(filePath.toUri());
+            FileEntity fileEntity = fileRepository.findByFilePath(fileName);
+            String storageKey = fileEntity != null ? storageKeyFor(fileEntity) : fileName;
 
-            if (resource.exists()) {
-                return resource;
+            if (storageBackend.exists(storageKey)) {
+                Optional<Path> localPath = storageBackend.localPath(storageKey);
+                return localPath.isPresent() ? new FileSystemResource(localPath.get())
+                        : new InputStreamResource(storageBackend.openStream(storageKey));
             } else {
                 throw new Exception("File not found: " + fileName);
             }
@@ -0,0 +1,112 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.storage.StorageBackend;
+import com.example.filestoring.util.AfterCommit;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+
+/**
+ * Keeps small, frequently viewed files in off-heap memory, keyed by their public file name. A hit needs no database
+ * lookup and no file system call. Caffeine's TinyLFU policy only keeps a new file if it is requested more often than
+ * the file it would push out. In front of that, a doorkeeper admits a file only on its second view, so files seen
+ * once never get a buffer allocated.
+ */
+@Component
+public class HotFileCache {
+
+    // A cached file: its bytes (read-only, position 0), its blob (null before blobs) and what the headers need
+    public record Entry(ByteBuffer content, String blobKey, long lastModified, String etag, String contentType) {
+    }
+
+    // Rough per-entry cost beyond the bytes themselves (key, record, buffer object, cache node)
+    private static final int ENTRY_OVERHEAD = 256;
+
+    private final Cache<String, Entry> files;
+
+    // File names seen once since they last left this cache (or the cache itself)
+    private final Cache<String, Boolean> seenOnce;
+
+    private final long maxFileSize;
+
+    public HotFileCache(@Value("${app.hot-cache.max-size:64MB}") DataSize maxSize,
+                        @Value("${app.hot-cache.max-file-size:256KB}") DataSize maxFileSize,
+                        @Value("${app.hot-cache.ttl:10m}") Duration ttl,
+                        MeterRegistry meterRegistry) {
+        this.maxFileSize = maxFileSize.toBytes();
+        this.files = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((String name, Entry entry) -> entry.content().capacity() + ENTRY_OVERHEAD)
+                // Bounds how long another instance's delete can go unnoticed here
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.seenOnce = Caffeine.newBuilder()
+                .maximumSize(Math.max(1024, maxSize.toBytes() / 1024))
+                .expireAfterWrite(ttl)
+                .build();
+
+        // Hit rate, evictions and size as cache.* with cache=hotFiles
+        CaffeineCacheMetrics.monitor(meterRegistry, files, "hotFiles");
+        Gauge.builder("files.hotcache.memory", files, cache -> cache.policy().eviction()
+                        .map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L))
+                .description("Off-heap bytes held by the hot-file cache")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public Entry get(String fileName) {
+        return files.getIfPresent(fileName);
+    }
+
+    /**
+     * Called on a miss. The first view of a file only marks it as seen; the second loads it into memory
+     * @param blobKey The file's blob, kept so compressed variants can be found without a lookup; may be null
+     * @param size The file's size, as already known to the caller
+     * @return The cached entry, or null when the file stays on disk for now
+     */
+    public Entry admit(String fileName, StorageBackend storage, String storageKey, String blobKey, long size,
+                       long lastModified, String etag, String contentType) throws IOException {
+        if (size > maxFileSize) {
+            return null;
+        }
+        if (seenOnce.asMap().putIfAbsent(fileName, Boolean.TRUE) == null) {
+            return null;
+        }
+        ByteBuffer content = ByteBuffer.allocateDirect((int) size);
+        try (InputStream in = storage.openStream(storageKey)) {
+            byte[] chunk = new byte[(int) Math.min(size, 64 * 1024)];
+            int read;
+            while (content.hasRemaining() && (read = in.read(chunk, 0, Math.min(chunk.length, content.remaining()))) >= 0) {
+                content.put(chunk, 0, read);
+            }
+        }
+        if (content.hasRemaining()) {
+            // Shorter than the caller said: changed underneath us, so don't cache it
+            return null;
+        }
+        content.flip();
+        Entry entry = new Entry(content.asReadOnlyBuffer(), blobKey, lastModified, etag, contentType);
+        files.put(fileName, entry);
+        seenOnce.invalidate(fileName);
+        return entry;
+    }
+
+    // Dropped once the deleting transaction commits; a view racing the delete may still cache it until the TTL
+    public void invalidate(String fileName) {
+        AfterCommit.run(() -> {
+            files.invalidate(fileName);
+            seenOnce.invalidate(fileName);
+        });
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.dto.ImportReport;
+
+import java.io.InputStream;
+
+public interface ImportService {
+
+    // Applies newline-delimited JSON (or a JSON array) of FileImportItems for one owner in batched transactions;
+    // items that fail are reported and do not stop the rest
+    ImportReport importFiles(Long userId, InputStream items) throws Exception;
+}
@@ -0,0 +1,306 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.dto.FileImportItem;
+import com.example.filestoring.dto.ImportReport;
+import com.example.filestoring.model.FileEntity;
+import com.example.filestoring.model.User;
+import com.example.filestoring.repository.FileRepository;
+import com.example.filestoring.repository.UserRepository;
+import com.example.filestoring.storage.StorageBackend;
+import com.example.filestoring.util.AfterCommit;
+import com.example.filestoring.util.IngestResult;
+import com.example.filestoring.util.StreamingIngest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+public class ImportServiceImplementation implements ImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportServiceImplementation.class);
+
+    // Items per transaction; Hibernate sends each one's writes in JDBC batches of hibernate.jdbc.batch_size
+    private static final int CHUNK_SIZE = 1000;
+
+    // Content to import is staged under imports/<userId>/; nothing else in storage (blobs, staging files,
+    // renditions, other users' imports) may be claimed by an import
+    private static final String IMPORT_DIR = "imports";
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private StorageBackend storageBackend;
+
+    @Autowired
+    private BlobService blobService;
+
+    @Autowired
+    private SearchIndexService searchIndexService;
+
+    @Autowired
+    private SuggestionService suggestionService;
+
+    @Autowired
+    private CacheEvictor cacheEvictor;
+
+    @Autowired
+    private UsageService usageService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public ImportReport importFiles(Long userId, InputStream items) throws Exception {
+        if (!userRepository.existsById(userId)) {
+            throw new Exception("User not found");
+        }
+        String viewUrl = ServletUriComponentsBuilder.fromCurrentContextPath().path("/files/view/").toUriString();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        Totals totals = new Totals();
+
+        List<Item> chunk = new ArrayList<>(CHUNK_SIZE);
+        int position = 0;
+        try (MappingIterator<FileImportItem> values = objectMapper.readerFor(FileImportItem.class).readValues(items)) {
+            while (values.hasNextValue()) {
+                FileImportItem value = values.nextValue();
+                chunk.add(new Item(++position, value));
+                if (chunk.size() == CHUNK_SIZE) {
+                    importChunk(userId, chunk, viewUrl, transaction, totals);
+                    chunk = new ArrayList<>(CHUNK_SIZE);
+                }
+            }
+        } catch (JsonProcessingException ex) {
+            // The parser cannot resynchronise after malformed input, so keep what came before and stop there
+            totals.errors.add(new ImportReport.ItemError(position + 1, null, "Malformed JSON: " + ex.getOriginalMessage()));
+        }
+        if (!chunk.isEmpty()) {
+            importChunk(userId, chunk, viewUrl, transaction, totals);
+        }
+        return new ImportReport(totals.created, totals.updated, totals.errors);
+    }
+
+    private void importChunk(Long userId, List<Item> chunk, String viewUrl, TransactionTemplate transaction,
+                             Totals totals) {
+        try {
+            totals.add(transaction.execute(status -> apply(userId, chunk, viewUrl)));
+        } catch (RuntimeException ex) {
+            // A row the database rejects fails the whole batch at flush; redo it one item at a time to find it
+            for (Item item : chunk) {
+                try {
+                    totals.add(transaction.execute(status -> apply(userId, List.of(item), viewUrl)));
+                } catch (RuntimeException itemEx) {
+                    Long id = item.value == null ? null : item.value.id();
+                    totals.errors.add(new ImportReport.ItemError(item.position, id,
+                            NestedExceptionUtils.getMostSpecificCause(itemEx).getMessage()));
+                }
+            }
+        }
+    }
+
+    // Runs inside one transaction; counts only reach the report if it commits
+    private Totals apply(Long userId, List<Item> chunk, String viewUrl) {
+        Totals result = new Totals();
+
+        // One query per chunk loads every file it updates, and with it the owner to check
+        Set<Long> ids = new HashSet<>();
+        for (Item item : chunk) {
+            if (item.value != null && item.value.id() != null) {
+                ids.add(item.value.id());
+            }
+        }
+        Map<Long, FileEntity> existing = ids.isEmpty() ? Map.of()
+                : fileRepository.findAllById(ids).stream().collect(Collectors.toMap(FileEntity::getId, Function.identity()));
+        Set<String> registered = new HashSet<>();
+
+        User owner = userRepository.getReferenceById(userId);
+        List<FileEntity> touched = new ArrayList<>(chunk.size());
+        Map<Long, String> oldTitles = new HashMap<>();
+        for (Item item : chunk) {
+            FileImportItem value = item.value;
+            String error;
+            if (value == null) {
+                error = "Empty item";
+            } else if (value.id() != null) {
+                error = update(value, existing.get(value.id()), userId, touched, oldTitles);
+                if (error == null) {
+                    result.updated++;
+                }
+            } else {
+                error = register(value, owner, userId, viewUrl, registered, touched);
+                if (error == null) {
+                    result.created++;
+                }
+            }
+            if (error != null) {
+                result.errors.add(new ImportReport.ItemError(item.position, value == null ? null : value.id(), error));
+            }
+        }
+
+        // One usage update per chunk; over quota, the chunk is redone item by item and stops at the file that no
+        // longer fits
+        long createdBytes = 0;
+        int createdFiles = 0;
+        for (FileEntity file : touched) {
+            if (!oldTitles.containsKey(file.getId())) {
+                createdBytes += file.getFileSize();
+                createdFiles++;
+            }
+        }
+        if (createdFiles > 0 && !usageService.charge(userId, createdBytes, createdFiles)) {
+            throw new IllegalStateException("Storage quota exceeded");
+        }
+
+        // Surface constraint violations inside this transaction, then let the next chunk start from an empty context
+        entityManager.flush();
+        entityManager.clear();
+
+        searchIndexService.indexFiles(touched);
+        if (!touched.isEmpty()) {
+            cacheEvictor.filesChanged(oldTitles.keySet(), userId);
+        }
+        for (FileEntity file : touched) {
+            String oldTitle = oldTitles.get(file.getId());
+            if (oldTitle != null) {
+                suggestionService.fileTitleRemoved(oldTitle);
+            }
+            suggestionService.fileTitleAdded(file.getTitle());
+        }
+        return result;
+    }
+
+    private String update(FileImportItem value, FileEntity file, Long userId, List<FileEntity> touched,
+                          Map<Long, String> oldTitles) {
+        if (file == null) {
+            return "File not found";
+        }
+        if (!file.getUser().getId().equals(userId)) {
+            return "Unauthorized update attempt";
+        }
+        if (value.title() != null && value.title().isBlank()) {
+            return "Title must not be blank";
+        }
+
+        // Managed entity: the change is written by the batched UPDATE at flush
+        // The same file may appear more than once; remember its title from before the first change
+        if (!oldTitles.containsKey(file.getId())) {
+            oldTitles.put(file.getId(), file.getTitle());
+            touched.add(file);
+        }
+        if (value.title() != null) {
+            file.setTitle(value.title());
+        }
+        if (value.description() != null) {
+            file.setDescription(value.description());
+        }
+        return null;
+    }
+
+    private String register(FileImportItem value, User owner, Long userId, String viewUrl, Set<String> registered,
+                            List<FileEntity> touched) {
+        String key = value.storageKey();
+        if (key == null || key.isBlank()) {
+            return "Either id or storageKey is required";
+        }
+        if (value.title() == null || value.title().isBlank()) {
+            return "Title must not be blank";
+        }
+        String importDir = IMPORT_DIR + "/" + userId + "/";
+        if (!key.startsWith(importDir) || key.contains("..") || key.contains("\\")) {
+            return "storageKey must name content staged under " + importDir;
+        }
+        if (!registered.add(key)) {
+            return "Content is already registered: " + key;
+        }
+
+        FileEntity file;
+        try {
+            if (!storageBackend.exists(key)) {
+                return "No stored content for key: " + key;
+            }
+            // Copied into a blob like an upload, so identical content is shared and counted
+            String fileName = key.substring(key.lastIndexOf('/') + 1);
+            IngestResult content;
+            String blobKey;
+            Path stagedFile = blobService.newTempFile();
+            try {
+                try (InputStream in = storageBackend.openStream(key)) {
+                    content = StreamingIngest.ingest(in, stagedFile, fileName);
+                }
+                // Joins this chunk's transaction, so a rolled-back chunk takes its references back
+                blobKey = blobService.store(stagedFile, content);
+            } finally {
+                Files.deleteIfExists(stagedFile);
+            }
+
+            String uniqueFileName = UUID.randomUUID() + "_" + fileName;
+            file = new FileEntity(value.title(), value.description(), uniqueFileName, viewUrl + uniqueFileName, owner);
+            file.setStorageKey(blobKey);
+            file.setContentHash(content.getSha256());
+            file.setFileSize(content.getSize());
+            file.setContentType(content.getContentType());
+        } catch (Exception ex) {
+            return "Could not read stored content: " + ex.getMessage();
+        }
+        entityManager.persist(file);
+        touched.add(file);
+
+        // The staged copy is only dropped once the row that replaces it has committed
+        AfterCommit.run(() -> {
+            try {
+                storageBackend.delete(key);
+            } catch (IOException ex) {
+                log.warn("Could not delete imported content {}", key, ex);
+            }
+        });
+        return null;
+    }
+
+    private record Item(int position, FileImportItem value) {
+    }
+
+    private static class Totals {
+        int created;
+        int updated;
+        final List<ImportReport.ItemError> errors = new ArrayList<>();
+
+        void add(Totals other) {
+            created += other.created;
+            updated += other.updated;
+            errors.addAll(other.errors);
+        }
+    }
+}
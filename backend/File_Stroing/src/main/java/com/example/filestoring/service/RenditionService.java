@@ -0,0 +1,19 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.model.FileEntity;
+import com.example.filestoring.util.RenditionSize;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+public interface RenditionService {
+
+    // Whether the file is an image format we can scale
+    boolean supports(FileEntity file);
+
+    // Generates the rendition unless it is already cached; returns false when the file cannot be rendered
+    boolean prepare(FileEntity file, RenditionSize size) throws Exception;
+
+    // Sends the rendition (generating it on demand) with long-lived cache headers
+    void sendRendition(FileEntity file, RenditionSize size, HttpServletRequest request, HttpServletResponse response)
+            throws Exception;
+}
@@ -0,0 +1,223 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.model.FileEntity;
+import com.example.filestoring.storage.RenditionCache;
+import com.example.filestoring.storage.StorageBackend;
+import com.example.filestoring.util.ImageRenditions;
+import com.example.filestoring.util.RenditionSize;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+
+@Service
+public class RenditionServiceImplementation implements RenditionService {
+
+    // Renditions of a given content never change, so browsers and CDNs may keep them for good
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    private static final String JPEG_EXTENSION = ".jpg";
+    private static final String PNG_EXTENSION = ".png";
+
+    @Autowired
+    private StorageBackend storageBackend;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.renditions.dir:uploads/renditions}")
+    private Path renditionDir;
+
+    @Value("${app.renditions.max-size:1GB}")
+    private DataSize maxSize;
+
+    @Value("${app.renditions.max-concurrent:0}")
+    private int maxConcurrent;
+
+    private RenditionCache cache;
+
+    // Serves cached renditions with the same Range, ETag and sendfile handling as originals
+    private FileDeliveryService renditionDelivery;
+
+    // Decoding is CPU- and memory-heavy; a burst of cold gallery requests queues here
+    private Semaphore generationPermits;
+
+    // Requests for a rendition that is being generated wait for that result instead of decoding again
+    private final ConcurrentHashMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    private Counter hits;
+    private Counter generated;
+    private Counter unsupported;
+
+    @PostConstruct
+    public void open() throws IOException {
+        cache = new RenditionCache(renditionDir, maxSize.toBytes());
+        renditionDelivery = new FileDeliveryServiceImplementation(cache.storage());
+        generationPermits = new Semaphore(maxConcurrent > 0 ? maxConcurrent : Runtime.getRuntime().availableProcessors());
+
+        hits = renditionCounter("hit");
+        generated = renditionCounter("generated");
+        unsupported = renditionCounter("unsupported");
+        Gauge.builder("files.renditions.cache.size", cache, RenditionCache::totalBytes)
+                .description("Bytes of renditions cached on disk")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    private Counter renditionCounter(String result) {
+        return Counter.builder("files.renditions")
+                .description("Rendition lookups by result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean supports(FileEntity file) {
+        String contentType = file.getContentType();
+        if (contentType == null) {
+            contentType = MediaTypeFactory.getMediaType(file.getFilePath())
+                    .map(MediaType::toString)
+                    .orElse(null);
+        }
+        return contentType != null && contentType.startsWith("image/")
+                && ImageIO.getImageReadersByMIMEType(contentType).hasNext();
+    }
+
+    @Override
+    public boolean prepare(FileEntity file, RenditionSize size) throws Exception {
+        return resolve(file, size) != null;
+    }
+
+    @Override
+    public void sendRendition(FileEntity file, RenditionSize size, HttpServletRequest request,
+                              HttpServletResponse response) throws Exception {
+        String key = supports(file) ? resolve(file, size) : null;
+        if (key == null) {
+            throw new Exception("No preview available for " + file.getFilePath());
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        String base = baseKey(file, size);
+        String etag = "\"" + base.substring(base.lastIndexOf('/') + 1) + "\"";
+        try {
+            renditionDelivery.sendFile(key, etag, contentTypeOf(key), null, request, response);
+        } catch (Exception ex) {
+            // A concurrent put can evict the file between the lookup and the read. That is a cache miss, so
+            // generate it again, once
+            if (response.isCommitted() || cache.storage().exists(key)) {
+                throw ex;
+            }
+            cache.forgetIfMissing(key);
+            String regenerated = resolve(file, size);
+            if (regenerated == null) {
+                throw ex;
+            }
+            renditionDelivery.sendFile(regenerated, etag, contentTypeOf(regenerated), null, request, response);
+        }
+    }
+
+    private static String contentTypeOf(String key) {
+        return key.endsWith(PNG_EXTENSION) ? MediaType.IMAGE_PNG_VALUE : MediaType.IMAGE_JPEG_VALUE;
+    }
+
+    // Returns the cache key of the rendition, generating it first if needed; null when the file cannot be rendered
+    private String resolve(FileEntity file, RenditionSize size) throws Exception {
+        String base = baseKey(file, size);
+        String cached = cachedKey(base);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        CompletableFuture<String> result = new CompletableFuture<>();
+        CompletableFuture<String> running = inFlight.putIfAbsent(base, result);
+        if (running != null) {
+            try {
+                return running.get();
+            } catch (ExecutionException ex) {
+                throw ex.getCause() instanceof Exception cause ? cause : ex;
+            }
+        }
+
+        try {
+            // Another request may have finished it between the lookup and the registration
+            String key = cachedKey(base);
+            if (key == null) {
+                key = generate(file, size, base);
+            }
+            result.complete(key);
+            return key;
+        } catch (Exception ex) {
+            result.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(base, result);
+        }
+    }
+
+    private String cachedKey(String base) {
+        if (cache.contains(base + JPEG_EXTENSION)) {
+            return base + JPEG_EXTENSION;
+        }
+        if (cache.contains(base + PNG_EXTENSION)) {
+            return base + PNG_EXTENSION;
+        }
+        return null;
+    }
+
+    private String generate(FileEntity file, RenditionSize size, String base) throws Exception {
+        generationPermits.acquire();
+        try {
+            Path staged = cache.createStagingFile();
+            try {
+                String format;
+                try (InputStream in = storageBackend.openStream(storageKeyFor(file))) {
+                    format = ImageRenditions.render(in, size.getMaxDimension(), staged);
+                }
+                if (format == null) {
+                    unsupported.increment();
+                    return null;
+                }
+                String key = base + (ImageRenditions.PNG.equals(format) ? PNG_EXTENSION : JPEG_EXTENSION);
+                cache.put(key, staged);
+                generated.increment();
+                return key;
+            } finally {
+                Files.deleteIfExists(staged);
+            }
+        } finally {
+            generationPermits.release();
+        }
+    }
+
+    // Content-addressed where possible, so identical uploads share renditions; ab/cd/ fan-out like the blobs
+    private String baseKey(FileEntity file, RenditionSize size) {
+        String hash = file.getContentHash();
+        if (hash != null) {
+            return hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + "-" + size.key();
+        }
+        return "files/" + file.getId() + "-" + size.key();
+    }
+
+    private String storageKeyFor(FileEntity file) {
+        return file.getStorageKey() != null ? file.getStorageKey() : file.getFilePath();
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.dto.FileSummary;
+import com.example.filestoring.model.FileEntity;
+import com.example.filestoring.model.User;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+public interface SearchIndexService {
+
+    // Index updates are applied once the surrounding transaction commits; a failed index write is only logged
+    void indexFile(FileEntity file);
+
+    // Indexes the committed file right away and reports a failed index write, so background work can retry it
+    void indexFileNow(FileEntity file) throws IOException;
+
+    // Many files at once, with a single refresh; owner names not already loaded are fetched in one query
+    void indexFiles(Collection<FileEntity> files);
+
+    void removeFile(Long fileId);
+
+    // Pass renamed when the first or last name changed, to refresh the owner name on the user's files too
+    void indexUser(User user, boolean renamed);
+
+    // Ranked by relevance; page is zero-based
+    List<FileSummary> searchFiles(String query, int page, int size) throws Exception;
+
+    List<User> searchUsers(String query, int page, int size) throws Exception;
+
+    // Re-indexes everything from the database, then drops what no longer exists; searches keep working meanwhile.
+    // Returns the number of documents indexed
+    int rebuild() throws Exception;
+}
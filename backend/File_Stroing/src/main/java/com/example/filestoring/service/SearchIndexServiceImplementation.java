@@ -0,0 +1,341 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.dto.FileIndexText;
+import com.example.filestoring.dto.FileSummary;
+import com.example.filestoring.model.FileEntity;
+import com.example.filestoring.model.User;
+import com.example.filestoring.repository.FileRepository;
+import com.example.filestoring.repository.UserRepository;
+import com.example.filestoring.search.SearchIndex;
+import com.example.filestoring.util.AfterCommit;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.apache.lucene.store.FSDirectory;
+import org.hibernate.Hibernate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+@Service
+public class SearchIndexServiceImplementation implements SearchIndexService {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchIndexServiceImplementation.class);
+
+    // Rows indexed between persistence-context clears during a rebuild
+    private static final int REBUILD_BATCH_SIZE = 500;
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${app.search.index-dir:search-index}")
+    private String indexDir;
+
+    private SearchIndex index;
+
+    // Serializes live index updates with the documents a rebuild writes, so the rebuild never overwrites newer data
+    private final Object writeLock = new Object();
+
+    // Set while a rebuild runs; guarded by writeLock
+    private RebuildChanges changedDuringRebuild;
+
+    @PostConstruct
+    public void open() throws IOException {
+        index = new SearchIndex(FSDirectory.open(Paths.get(indexDir)));
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        index.close();
+    }
+
+    // A fresh deployment (or a deleted index directory) starts from the database
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildIfEmpty() throws Exception {
+        if (index.numDocs() == 0) {
+            log.info("Search index is empty, rebuilding it from the database");
+            rebuild();
+        }
+    }
+
+    // Searches see changes immediately; this only makes them survive a restart
+    @Scheduled(fixedDelayString = "${app.search.commit-interval:PT10S}")
+    public void commit() {
+        try {
+            index.commit();
+        } catch (IOException ex) {
+            log.warn("Could not commit the search index", ex);
+        }
+    }
+
+    @Override
+    public void indexFile(FileEntity file) {
+        afterCommit(fileUpdate(file));
+    }
+
+    @Override
+    public void indexFileNow(FileEntity file) throws IOException {
+        fileUpdate(file).apply();
+    }
+
+    // Takes what the document needs from the entity now, while it is still attached
+    private IndexUpdate fileUpdate(FileEntity file) {
+        Long id = file.getId();
+        String title = file.getTitle();
+        String description = file.getDescription();
+        User owner = file.getUser();
+        Long ownerId = owner.getId();
+        String loadedName = Hibernate.isInitialized(owner) ? owner.getFirstName() + " " + owner.getLastName() : null;
+        return () -> {
+            // Uploads only hold a reference to the owner; look the name up once the file row is committed
+            String ownerName = loadedName != null ? loadedName : userRepository.findById(ownerId)
+                    .map(user -> user.getFirstName() + " " + user.getLastName())
+                    .orElse("");
+            applyLive(List.of(id), null, () -> index.indexFile(id, title, description, ownerName));
+            index.refresh();
+        };
+    }
+
+    @Override
+    public void indexFiles(Collection<FileEntity> files) {
+        if (files.isEmpty()) {
+            return;
+        }
+        List<IndexedFile> pending = new ArrayList<>(files.size());
+        Map<Long, String> ownerNames = new HashMap<>();
+        for (FileEntity file : files) {
+            User owner = file.getUser();
+            if (Hibernate.isInitialized(owner)) {
+                ownerNames.put(owner.getId(), owner.getFirstName() + " " + owner.getLastName());
+            }
+            pending.add(new IndexedFile(file.getId(), file.getTitle(), file.getDescription(), owner.getId()));
+        }
+
+        afterCommit(() -> {
+            Set<Long> missing = new HashSet<>();
+            for (IndexedFile file : pending) {
+                if (!ownerNames.containsKey(file.ownerId())) {
+                    missing.add(file.ownerId());
+                }
+            }
+            if (!missing.isEmpty()) {
+                for (User user : userRepository.findAllById(missing)) {
+                    ownerNames.put(user.getId(), user.getFirstName() + " " + user.getLastName());
+                }
+            }
+            List<Long> ids = pending.stream().map(IndexedFile::id).toList();
+            applyLive(ids, null, () -> {
+                for (IndexedFile file : pending) {
+                    index.indexFile(file.id(), file.title(), file.description(),
+                            ownerNames.getOrDefault(file.ownerId(), ""));
+                }
+            });
+            index.refresh();
+        });
+    }
+
+    @Override
+    public void removeFile(Long fileId) {
+        afterCommit(() -> {
+            applyLive(List.of(fileId), null, () -> index.deleteFile(fileId));
+            index.refresh();
+        });
+    }
+
+    @Override
+    public void indexUser(User user, boolean renamed) {
+        Long id = user.getId();
+        String firstName = user.getFirstName();
+        String lastName = user.getLastName();
+        String email = user.getEmail();
+        // The owner name is the only user field file documents carry
+        List<FileIndexText> files = renamed ? fileRepository.findIndexTextByUserId(id) : List.of();
+        List<Long> fileIds = files.stream().map(FileIndexText::id).toList();
+        afterCommit(() -> {
+            applyLive(fileIds, id, () -> {
+                index.indexUser(id, firstName, lastName, email);
+                for (FileIndexText file : files) {
+                    index.indexFile(file.id(), file.title(), file.description(), firstName + " " + lastName);
+                }
+            });
+            index.refresh();
+        });
+    }
+
+    @Override
+    public List<FileSummary> searchFiles(String query, int page, int size) throws Exception {
+        List<Long> ids = index.searchFiles(query, page, size);
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, FileSummary> byId = new HashMap<>();
+        for (FileSummary file : fileRepository.findSummariesWithOwnerByIdIn(ids)) {
+            byId.put(file.id(), file);
+        }
+        return inRankOrder(ids, byId);
+    }
+
+    @Override
+    public List<User> searchUsers(String query, int page, int size) throws Exception {
+        List<Long> ids = index.searchUsers(query, page, size);
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, User> byId = new HashMap<>();
+        for (User user : userRepository.findAllById(ids)) {
+            byId.put(user.getId(), user);
+        }
+        return inRankOrder(ids, byId);
+    }
+
+    // Documents are replaced in place, so searches see the old index until each one is rewritten. Anything a
+    // live update touches during the rebuild is left to that update, which holds newer data than the cursor may
+    @Override
+    public synchronized int rebuild() throws Exception {
+        long start = System.nanoTime();
+        RebuildChanges changes = new RebuildChanges();
+        synchronized (writeLock) {
+            changedDuringRebuild = changes;
+            index.startGeneration();
+        }
+
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        int count;
+        try {
+            count = transaction.execute(status -> {
+                int indexed = 0;
+                try (Stream<User> users = userRepository.streamAll()) {
+                    Iterator<User> iterator = users.iterator();
+                    while (iterator.hasNext()) {
+                        User user = iterator.next();
+                        synchronized (writeLock) {
+                            if (!changes.users.contains(user.getId())) {
+                                index.indexUser(user.getId(), user.getFirstName(), user.getLastName(),
+                                        user.getEmail());
+                            }
+                        }
+                        if (++indexed % REBUILD_BATCH_SIZE == 0) {
+                            entityManager.clear();
+                        }
+                    }
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                try (Stream<FileEntity> files = fileRepository.streamAll()) {
+                    Iterator<FileEntity> iterator = files.iterator();
+                    while (iterator.hasNext()) {
+                        FileEntity file = iterator.next();
+                        synchronized (writeLock) {
+                            if (!changes.files.contains(file.getId())) {
+                                index.indexFile(file.getId(), file.getTitle(), file.getDescription(),
+                                        file.getUser().getFirstName() + " " + file.getUser().getLastName());
+                            }
+                        }
+                        if (++indexed % REBUILD_BATCH_SIZE == 0) {
+                            entityManager.clear();
+                        }
+                    }
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                return indexed;
+            });
+            // Live updates since the start carry the new generation too, so only rows gone from the database remain
+            index.deleteOlderGenerations();
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        } finally {
+            synchronized (writeLock) {
+                changedDuringRebuild = null;
+            }
+        }
+
+        index.refresh();
+        index.commit();
+        log.info("Rebuilt search index with {} documents in {} ms", count, (System.nanoTime() - start) / 1_000_000);
+        return count;
+    }
+
+    private interface IndexUpdate {
+        void apply() throws IOException;
+    }
+
+    // What indexFiles needs once the entities are detached
+    private record IndexedFile(Long id, String title, String description, Long ownerId) {
+    }
+
+    // Documents a live update wrote or deleted while a rebuild was running
+    private static class RebuildChanges {
+        private final Set<Long> files = new HashSet<>();
+        private final Set<Long> users = new HashSet<>();
+    }
+
+    private void applyLive(Collection<Long> fileIds, Long userId, IndexUpdate update) throws IOException {
+        synchronized (writeLock) {
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.files.addAll(fileIds);
+                if (userId != null) {
+                    changedDuringRebuild.users.add(userId);
+                }
+            }
+            update.apply();
+        }
+    }
+
+    // Index changes follow the database: nothing is indexed for a rolled-back transaction
+    private void afterCommit(IndexUpdate update) {
+        AfterCommit.run(() -> applyQuietly(update));
+    }
+
+    // Request paths only: a stale index entry is repaired by the next update or a rebuild, so it must not fail the
+    // request. The processing queue uses indexFileNow instead, so a failed write is retried
+    private void applyQuietly(IndexUpdate update) {
+        try {
+            update.apply();
+        } catch (IOException ex) {
+            log.warn("Could not update the search index", ex);
+        }
+    }
+
+    private <T> List<T> inRankOrder(List<Long> ids, Map<Long, T> byId) {
+        List<T> ranked = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            T item = byId.get(id);
+            if (item != null) {
+                ranked.add(item);
+            }
+        }
+        return ranked;
+    }
+}
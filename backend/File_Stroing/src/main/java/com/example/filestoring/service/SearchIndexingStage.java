@@ -0,0 +1,28 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.model.FileEntity;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+// Makes a new upload searchable; re-indexing replaces the document, so repeats are harmless
+@Component
+@Order(100)
+public class SearchIndexingStage implements FileProcessingStage {
+
+    private final SearchIndexService searchIndexService;
+
+    public SearchIndexingStage(SearchIndexService searchIndexService) {
+        this.searchIndexService = searchIndexService;
+    }
+
+    @Override
+    public String name() {
+        return "index";
+    }
+
+    @Override
+    public void process(FileEntity file) throws Exception {
+        // Not indexFile: that logs a failed write and carries on, and the job would be marked READY regardless
+        searchIndexService.indexFileNow(file);
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.filestoring.service;
+
+import java.util.List;
+
+public interface SuggestionService {
+
+    // Typeahead completions, most common first
+    List<String> suggestFileTitles(String prefix, int limit);
+
+    List<String> suggestUserNames(String prefix, int limit);
+
+    // Write paths report titles and names as they appear and disappear; applied after commit
+    void fileTitleAdded(String title);
+
+    void fileTitleRemoved(String title);
+
+    void userNameAdded(String firstName, String lastName);
+
+    void userNameRemoved(String firstName, String lastName);
+}
@@ -0,0 +1,137 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.model.User;
+import com.example.filestoring.repository.FileRepository;
+import com.example.filestoring.repository.UserRepository;
+import com.example.filestoring.search.SuggestionTrie;
+import com.example.filestoring.util.AfterCommit;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Service
+public class SuggestionServiceImplementation implements SuggestionService {
+
+    private static final Logger log = LoggerFactory.getLogger(SuggestionServiceImplementation.class);
+
+    // Rows loaded between persistence-context clears while building
+    private static final int BUILD_BATCH_SIZE = 500;
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final SuggestionTrie fileTitles = new SuggestionTrie();
+    private final SuggestionTrie userNames = new SuggestionTrie();
+
+    @PostConstruct
+    public void registerMetrics() {
+        registerGauges("files", fileTitles);
+        registerGauges("users", userNames);
+    }
+
+    private void registerGauges(String trieName, SuggestionTrie trie) {
+        Gauge.builder("search.suggest.memory", trie, SuggestionTrie::estimatedBytes)
+                .description("Approximate heap held by the typeahead trie")
+                .baseUnit("bytes")
+                .tag("trie", trieName)
+                .register(meterRegistry);
+        Gauge.builder("search.suggest.phrases", trie, SuggestionTrie::size)
+                .description("Distinct phrases in the typeahead trie")
+                .tag("trie", trieName)
+                .register(meterRegistry);
+    }
+
+    // Built once from the database; afterwards the write paths keep it current
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        long start = System.nanoTime();
+        fileTitles.clear();
+        userNames.clear();
+
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        transaction.executeWithoutResult(status -> {
+            try (Stream<String> titles = fileRepository.streamTitles()) {
+                titles.forEach(fileTitles::add);
+            }
+            try (Stream<User> users = userRepository.streamAll()) {
+                Iterator<User> iterator = users.iterator();
+                int count = 0;
+                while (iterator.hasNext()) {
+                    User user = iterator.next();
+                    userNames.add(name(user.getFirstName(), user.getLastName()));
+                    if (++count % BUILD_BATCH_SIZE == 0) {
+                        entityManager.clear();
+                    }
+                }
+            }
+        });
+
+        log.info("Built typeahead tries ({} titles, {} names, ~{} KB) in {} ms",
+                fileTitles.size(), userNames.size(),
+                (fileTitles.estimatedBytes() + userNames.estimatedBytes()) / 1024,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Override
+    public List<String> suggestFileTitles(String prefix, int limit) {
+        return fileTitles.suggest(prefix, limit);
+    }
+
+    @Override
+    public List<String> suggestUserNames(String prefix, int limit) {
+        return userNames.suggest(prefix, limit);
+    }
+
+    @Override
+    public void fileTitleAdded(String title) {
+        AfterCommit.run(() -> fileTitles.add(title));
+    }
+
+    @Override
+    public void fileTitleRemoved(String title) {
+        AfterCommit.run(() -> fileTitles.remove(title));
+    }
+
+    @Override
+    public void userNameAdded(String firstName, String lastName) {
+        String name = name(firstName, lastName);
+        AfterCommit.run(() -> userNames.add(name));
+    }
+
+    @Override
+    public void userNameRemoved(String firstName, String lastName) {
+        String name = name(firstName, lastName);
+        AfterCommit.run(() -> userNames.remove(name));
+    }
+
+    private static String name(String firstName, String lastName) {
+        return ((firstName == null ? "" : firstName) + " " + (lastName == null ? "" : lastName)).strip();
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.model.FileEntity;
+import com.example.filestoring.util.RenditionSize;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+// Builds the thumbnail on upload so the first gallery view does not have to; previews are made on demand
+@Component
+@Order(200)
+public class ThumbnailStage implements FileProcessingStage {
+
+    private final RenditionService renditionService;
+
+    public ThumbnailStage(RenditionService renditionService) {
+        this.renditionService = renditionService;
+    }
+
+    @Override
+    public String name() {
+        return "thumbnail";
+    }
+
+    @Override
+    public void process(FileEntity file) throws Exception {
+        if (renditionService.supports(file)) {
+            renditionService.prepare(file, RenditionSize.THUMB);
+        }
+    }
+}
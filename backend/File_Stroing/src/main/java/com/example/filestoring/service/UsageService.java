@@ -0,0 +1,27 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.dto.UsageReconcileReport;
+import com.example.filestoring.dto.UserUsageSummary;
+
+public interface UsageService {
+
+    // Starts a new user's totals at zero
+    void openAccount(Long userId);
+
+    // Adds new files to their owner's totals in the caller's transaction; false (and nothing added) over quota
+    boolean charge(Long userId, long bytes, int files);
+
+    // Takes a deleted file off its owner's totals in the caller's transaction
+    void discharge(Long userId, long bytes);
+
+    // Bytes the user may still add; Long.MAX_VALUE when no quota applies
+    long remainingBytes(Long userId);
+
+    UserUsageSummary getUsage(Long userId) throws Exception;
+
+    // Operator override of one user's quota, deliberately not reachable over HTTP; null puts them back on the default
+    UserUsageSummary setQuota(Long userId, Long quotaBytes) throws Exception;
+
+    // Recomputes every user's totals from their files' stored content, several users at a time
+    UsageReconcileReport reconcile() throws Exception;
+}
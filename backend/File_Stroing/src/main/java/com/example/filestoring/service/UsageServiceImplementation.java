@@ -0,0 +1,255 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.dto.UsageReconcileReport;
+import com.example.filestoring.dto.UserUsageSummary;
+import com.example.filestoring.model.FileEntity;
+import com.example.filestoring.model.UserUsage;
+import com.example.filestoring.repository.FileRepository;
+import com.example.filestoring.repository.UserRepository;
+import com.example.filestoring.repository.UserUsageRepository;
+import com.example.filestoring.storage.StorageBackend;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-user bytes and file counts in the user_usage table. Uploads and deletes change a user's row with a single
+ * conditional UPDATE by primary key in their own transaction, so the totals never need a scan of the files and a
+ * quota check cannot race another upload. Reconciliation rebuilds the totals from the stored content.
+ */
+@Service
+public class UsageServiceImplementation implements UsageService {
+
+    private static final Logger log = LoggerFactory.getLogger(UsageServiceImplementation.class);
+
+    @Autowired
+    private UserUsageRepository usageRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private StorageBackend storageBackend;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // 0 for no limit
+    @Value("${app.quota.default:10GB}")
+    private DataSize defaultQuota;
+
+    @Value("${app.quota.reconcile-threads:4}")
+    private int reconcileThreads;
+
+    @Value("${app.quota.reconcile-on-startup:false}")
+    private boolean reconcileOnStartup;
+
+    @Override
+    public void openAccount(Long userId) {
+        // A save with a known id may have updated an existing user
+        if (!usageRepository.existsById(userId)) {
+            usageRepository.insertEmpty(userId);
+        }
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean charge(Long userId, long bytes, int files) {
+        if (usageRepository.charge(userId, bytes, files, quotaLimit(null)) == 1) {
+            return true;
+        }
+        if (usageRepository.existsById(userId)) {
+            return false;
+        }
+        // Users from before accounting existed get their row on first upload
+        usageRepository.insertEmpty(userId);
+        return usageRepository.charge(userId, bytes, files, quotaLimit(null)) == 1;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void discharge(Long userId, long bytes) {
+        usageRepository.discharge(userId, bytes);
+    }
+
+    @Override
+    public long remainingBytes(Long userId) {
+        UserUsage usage = usageRepository.findById(userId).orElse(null);
+        long limit = quotaLimit(usage);
+        if (limit == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, limit - (usage != null ? usage.getBytesUsed() : 0));
+    }
+
+    @Override
+    public UserUsageSummary getUsage(Long userId) throws Exception {
+        UserUsage usage = usageRepository.findById(userId).orElse(null);
+        if (usage == null) {
+            if (!userRepository.existsById(userId)) {
+                throw new Exception("User not found");
+            }
+            usage = new UserUsage();
+            usage.setUserId(userId);
+            usage.setBytesUsed(0L);
+            usage.setFileCount(0L);
+        }
+        return summarize(usage);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public UserUsageSummary setQuota(Long userId, Long quotaBytes) throws Exception {
+        if (quotaBytes != null && quotaBytes < 0) {
+            throw new Exception("Quota must not be negative");
+        }
+        if (!usageRepository.existsById(userId)) {
+            if (!userRepository.existsById(userId)) {
+                throw new Exception("User not found");
+            }
+            usageRepository.insertEmpty(userId);
+        }
+        usageRepository.updateQuota(userId, quotaBytes);
+        return summarize(usageRepository.findForUpdate(userId).orElseThrow());
+    }
+
+    // A maintenance job: it stats every stored file and locks each user's row in turn, so it is never a request
+    @Scheduled(cron = "${app.quota.reconcile-cron:0 0 4 * * *}")
+    public void reconcileOnSchedule() {
+        try {
+            reconcile();
+        } catch (Exception ex) {
+            log.warn("Storage usage reconciliation failed", ex);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileAtStartup() {
+        if (reconcileOnStartup) {
+            reconcileOnSchedule();
+        }
+    }
+
+    @Override
+    public UsageReconcileReport reconcile() throws Exception {
+        long start = System.currentTimeMillis();
+        List<Long> userIds = userRepository.findAllIds();
+
+        AtomicInteger counter = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, reconcileThreads), runnable -> {
+            Thread thread = new Thread(runnable, "usage-reconcile-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<UserTotals>> results = new ArrayList<>(userIds.size());
+            for (Long userId : userIds) {
+                results.add(workers.submit(() -> reconcileUser(userId)));
+            }
+
+            long files = 0;
+            long bytes = 0;
+            long missing = 0;
+            int corrected = 0;
+            for (Future<UserTotals> result : results) {
+                UserTotals totals;
+                try {
+                    totals = result.get();
+                } catch (ExecutionException ex) {
+                    throw new Exception("Usage reconciliation failed", ex.getCause());
+                }
+                files += totals.files;
+                bytes += totals.bytes;
+                missing += totals.missing;
+                corrected += totals.corrected ? 1 : 0;
+            }
+            long duration = System.currentTimeMillis() - start;
+            log.info("Reconciled storage usage of {} users in {} ms; {} corrected, {} files without content",
+                    userIds.size(), duration, corrected, missing);
+            return new UsageReconcileReport(userIds.size(), files, bytes, missing, corrected, duration);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    // One user per transaction; the row lock holds their uploads and deletes back while the files are counted
+    private UserTotals reconcileUser(Long userId) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            UserUsage usage = usageRepository.findForUpdate(userId).orElse(null);
+            if (usage == null) {
+                usageRepository.insertEmpty(userId);
+                usage = usageRepository.findForUpdate(userId).orElseThrow();
+            }
+
+            UserTotals totals = new UserTotals();
+            for (FileEntity file : fileRepository.findByUserId(userId)) {
+                totals.files++;
+                Long size = storedSize(file);
+                if (size == null) {
+                    // Keep what the row says rather than dropping it from the quota
+                    totals.missing++;
+                    size = file.getFileSize() != null ? file.getFileSize() : 0L;
+                } else if (!size.equals(file.getFileSize())) {
+                    // Managed entity: rows from before sizes were recorded get theirs at commit
+                    file.setFileSize(size);
+                }
+                totals.bytes += size;
+            }
+            totals.corrected = usage.getBytesUsed() != totals.bytes || usage.getFileCount() != totals.files;
+            usageRepository.reset(userId, totals.bytes, totals.files, new Date());
+            return totals;
+        });
+    }
+
+    private Long storedSize(FileEntity file) {
+        String key = file.getStorageKey() != null ? file.getStorageKey() : file.getFilePath();
+        try {
+            return storageBackend.exists(key) ? storageBackend.size(key) : null;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    private UserUsageSummary summarize(UserUsage usage) {
+        long limit = quotaLimit(usage);
+        Long quota = limit == Long.MAX_VALUE ? null : limit;
+        Long remaining = quota == null ? null : Math.max(0, quota - usage.getBytesUsed());
+        return new UserUsageSummary(usage.getUserId(), usage.getBytesUsed(), usage.getFileCount(), quota, remaining);
+    }
+
+    // The user's own quota, else the default; Long.MAX_VALUE when the one that applies is 0 (unlimited)
+    private long quotaLimit(UserUsage usage) {
+        long quota = usage != null && usage.getQuotaBytes() != null ? usage.getQuotaBytes() : defaultQuota.toBytes();
+        return quota > 0 ? quota : Long.MAX_VALUE;
+    }
+
+    private static class UserTotals {
+        long files;
+        long bytes;
+        long missing;
+        boolean corrected;
+    }
+}
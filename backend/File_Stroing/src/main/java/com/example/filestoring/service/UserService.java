@@ -1,6 +1,7 @@
 package com.example.filestoring.service;
 
 import java.util.List;
+import com.example.filestoring.model.CursorPage;
 import com.example.filestoring.model.User;
 
 public interface UserService {
@@ -13,9 +14,13 @@ public interface UserService {
 	
 	public User updateUser(User user, Long userId) throws Exception;
 	
-	public List<User> serachUser(String query);
+	// Ranked full-text search over name and email; page is zero-based
+	public List<User> serachUser(String query, int page, Integer limit) throws Exception;
 
 	public List<User> getAllUsers();
+
+	// Keyset-paginated listing in id order; a null cursor starts at the first page
+	public CursorPage<User> getUsersPage(String cursor, Integer limit) throws Exception;
 	
 	User loginUser(String email, String password) throws Exception;
 
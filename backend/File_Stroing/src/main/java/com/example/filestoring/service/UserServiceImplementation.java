@@ -1,13 +1,21 @@
 package com.example.filestoring.service;
 
+import com.example.filestoring.config.CacheConfig;
+import com.example.filestoring.model.CursorPage;
 import com.example.filestoring.model.User;
 import com.example.filestoring.repository.UserRepository;
 import com.example.filestoring.util.IdGenerator;
+import com.example.filestoring.util.PageCursor;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Objects;
 
 @Service
 public class UserServiceImplementation implements UserService {
@@ -15,6 +23,24 @@ public class UserServiceImplementation implements UserService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private SearchIndexService searchIndexService;
+
+    @Autowired
+    private SuggestionService suggestionService;
+
+    @Autowired
+    private CacheEvictor cacheEvictor;
+
+    @Autowired
+    private UsageService usageService;
+
+    @Value("${app.paging.default-size:50}")
+    private int defaultPageSize;
+
+    @Value("${app.paging.max-size:200}")
+    private int maxPageSize;
+
     @Override
     public User registerUser(User user) {
         User newUser = new User();
@@ -25,31 +51,42 @@ public class UserServiceImplementation implements UserService {
         newUser.setPassword(user.getPassword());
         newUser.setGender(user.getGender());
 
-        // If user provided an ID, validate it's an 8-digit ID
+        // If user provided an ID, validate it's one we could have generated
         if (user.getId() != null) {
             if (IdGenerator.isValidId(user.getId())) {
                 newUser.setId(user.getId());
             } else {
-                // Generate a new 8-digit ID if the provided ID is invalid
-                newUser.setId(IdGenerator.generateEightDigitId());
+                // Generate a new ID if the provided ID is invalid
+                newUser.setId(IdGenerator.nextId());
             }
         }
         // If no ID provided, the @PrePersist in User entity will generate one
 
-        return userRepository.save(newUser);
+        User savedUser = userRepository.save(newUser);
+        usageService.openAccount(savedUser.getId());
+        searchIndexService.indexUser(savedUser, false);
+        suggestionService.userNameAdded(savedUser.getFirstName(), savedUser.getLastName());
+        cacheEvictor.userRegistered(savedUser.getEmail());
+        return savedUser;
     }
 
+    // Every registration asks this first; a cached false is evicted once the email is registered
+    @Override
+    @Cacheable(CacheConfig.EMAIL_TAKEN)
     public boolean existsByEmail(String email) {
         return userRepository.existsByEmail(email);
     }
 
     @Override
+    @Cacheable(CacheConfig.USERS)
     public User findUserById(Long userId) throws Exception {
         return userRepository.findById(userId)
                 .orElseThrow(() -> new Exception("User not found with this Id " + userId));
     }
 
+    // Runs on every login
     @Override
+    @Cacheable(value = CacheConfig.USERS_BY_EMAIL, unless = "#result == null")
     public User findUserByEmail(String email) {
         return userRepository.findByEmail(email);
     }
@@ -58,6 +95,9 @@ public class UserServiceImplementation implements UserService {
     public User updateUser(User user, Long userId) throws Exception {
         User oldUser = userRepository.findById(userId)
                 .orElseThrow(() -> new Exception("User does not exist with this ID " + userId));
+        String oldFirstName = oldUser.getFirstName();
+        String oldLastName = oldUser.getLastName();
+        String oldEmail = oldUser.getEmail();
 
         if (user.getFirstName() != null)
             oldUser.setFirstName(user.getFirstName());
@@ -70,12 +110,20 @@ public class UserServiceImplementation implements UserService {
         if (user.getPassword() != null)
             oldUser.setPassword(user.getPassword());
 
-        return userRepository.save(oldUser);
+        User savedUser = userRepository.save(oldUser);
+        boolean renamed = !Objects.equals(oldFirstName, savedUser.getFirstName())
+                || !Objects.equals(oldLastName, savedUser.getLastName());
+        searchIndexService.indexUser(savedUser, renamed);
+        suggestionService.userNameRemoved(oldFirstName, oldLastName);
+        suggestionService.userNameAdded(savedUser.getFirstName(), savedUser.getLastName());
+        cacheEvictor.userChanged(userId, oldEmail, savedUser.getEmail(), renamed);
+        return savedUser;
     }
 
     @Override
-    public List<User> serachUser(String query) {
-        return userRepository.searchUser(query);
+    public List<User> serachUser(String query, int page, Integer limit) throws Exception {
+        int size = limit == null || limit <= 0 ? defaultPageSize : Math.min(limit, maxPageSize);
+        return searchIndexService.searchUsers(query, page, size);
     }
 
     @Override
@@ -83,6 +131,28 @@ public class UserServiceImplementation implements UserService {
         return userRepository.findAll();
     }
 
+    @Override
+    public CursorPage<User> getUsersPage(String cursor, Integer limit) throws Exception {
+        PageCursor after;
+        try {
+            after = PageCursor.decode(cursor);
+        } catch (IllegalArgumentException ex) {
+            throw new Exception("Invalid page cursor!");
+        }
+
+        int size = limit == null || limit <= 0 ? defaultPageSize : Math.min(limit, maxPageSize);
+        // One extra row is fetched to learn whether another page exists
+        Pageable page = PageRequest.of(0, size + 1);
+        List<User> users = after == null
+                ? userRepository.findAllByOrderByIdAsc(page)
+                : userRepository.findByIdGreaterThanOrderByIdAsc(after.getId(), page);
+        if (users.size() <= size) {
+            return new CursorPage<>(users, null);
+        }
+        List<User> items = users.subList(0, size);
+        return new CursorPage<>(items, new PageCursor(0, items.get(size - 1).getId()).encode());
+    }
+
     @Override
     public User loginUser(String email, String password) throws Exception {
         User user = userRepository.findByEmail(email);
@@ -0,0 +1,172 @@
+package com.example.filestoring.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps content in memory, on the heap or in direct (off-heap) buffers.
+ * Meant for tests and benchmarks; everything is lost on restart.
+ */
+public class InMemoryStorageBackend implements StorageBackend {
+
+    private static class Entry {
+        final ByteBuffer data; // read-only, shared by all readers through duplicates
+        final long lastModified;
+
+        Entry(ByteBuffer data) {
+            this.data = data.asReadOnlyBuffer();
+            this.lastModified = System.currentTimeMillis();
+        }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final boolean offHeap;
+
+    public InMemoryStorageBackend(boolean offHeap) {
+        this.offHeap = offHeap;
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return entries.containsKey(key);
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        return entry(key).data.capacity();
+    }
+
+    @Override
+    public long lastModified(String key) throws IOException {
+        return entry(key).lastModified;
+    }
+
+    @Override
+    public InputStream openStream(String key) throws IOException {
+        return Channels.newInputStream(openChannel(key));
+    }
+
+    @Override
+    public SeekableByteChannel openChannel(String key) throws IOException {
+        return new BufferChannel(entry(key).data.duplicate());
+    }
+
+    @Override
+    public void write(String key, InputStream data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        data.transferTo(bytes);
+        byte[] content = bytes.toByteArray();
+        ByteBuffer buffer = allocate(content.length);
+        buffer.put(content).flip();
+        entries.put(key, new Entry(buffer));
+    }
+
+    @Override
+    public void putFile(String key, Path stagedFile) throws IOException {
+        try (FileChannel in = FileChannel.open(stagedFile, StandardOpenOption.READ)) {
+            long size = in.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Too large for the in-memory backend: " + size + " bytes");
+            }
+            ByteBuffer buffer = allocate((int) size);
+            while (buffer.hasRemaining() && in.read(buffer) >= 0) {
+                // keep reading until the buffer is full
+            }
+            buffer.flip();
+            entries.put(key, new Entry(buffer));
+        }
+        Files.deleteIfExists(stagedFile);
+    }
+
+    @Override
+    public void delete(String key) {
+        entries.remove(key);
+    }
+
+    @Override
+    public Path createStagingFile() throws IOException {
+        return Files.createTempFile("storage-", ".staging");
+    }
+
+    private ByteBuffer allocate(int size) {
+        return offHeap ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+
+    private Entry entry(String key) throws IOException {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            throw new NoSuchFileException(key);
+        }
+        return entry;
+    }
+
+    // Read-only positional channel over a buffer duplicate
+    private static class BufferChannel implements SeekableByteChannel {
+        private final ByteBuffer data;
+        private boolean open = true;
+
+        BufferChannel(ByteBuffer data) {
+            this.data = data;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (!data.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(dst.remaining(), data.remaining());
+            dst.put(dst.position(), data, data.position(), count);
+            dst.position(dst.position() + count);
+            data.position(data.position() + count);
+            return count;
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public long position() {
+            return data.position();
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) {
+            data.position((int) Math.min(newPosition, data.limit()));
+            return this;
+        }
+
+        @Override
+        public long size() {
+            return data.limit();
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+    }
+}
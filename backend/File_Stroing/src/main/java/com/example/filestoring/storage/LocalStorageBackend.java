@@ -0,0 +1,133 @@
+package com.example.filestoring.storage;
+
+import com.example.filestoring.util.DirectBuffers;
+import com.example.filestoring.util.StreamChannels;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Keeps content as plain files under a root directory. Writes go to a scratch
+ * file that is fsynced and renamed into place, so a key is never half written.
+ */
+public class LocalStorageBackend implements StorageBackend {
+
+    static final String STAGING_DIR = ".staging";
+
+    private final Path root;
+
+    public LocalStorageBackend(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        return Files.isRegularFile(resolve(key));
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        return Files.size(resolve(key));
+    }
+
+    @Override
+    public long lastModified(String key) throws IOException {
+        return Files.getLastModifiedTime(resolve(key)).toMillis();
+    }
+
+    @Override
+    public InputStream openStream(String key) throws IOException {
+        return Files.newInputStream(resolve(key));
+    }
+
+    @Override
+    public SeekableByteChannel openChannel(String key) throws IOException {
+        return FileChannel.open(resolve(key), StandardOpenOption.READ);
+    }
+
+    @Override
+    public void write(String key, InputStream data) throws IOException {
+        Path staged = createStagingFile();
+        try {
+            ByteBuffer buffer = DirectBuffers.acquire();
+            ReadableByteChannel source = StreamChannels.readable(data);
+            try (FileChannel out = FileChannel.open(staged, StandardOpenOption.WRITE)) {
+                while (source.read(buffer) >= 0) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                    buffer.clear();
+                }
+                out.force(false);
+            } finally {
+                DirectBuffers.release(buffer);
+            }
+            putFile(key, staged);
+        } finally {
+            Files.deleteIfExists(staged);
+        }
+    }
+
+    @Override
+    public void putFile(String key, Path stagedFile) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(stagedFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            // Staged on another volume: copy next to the target first so readers never see a partial file
+            Path sibling = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+            try {
+                Files.copy(stagedFile, sibling);
+                Files.move(sibling, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                Files.delete(stagedFile);
+            } finally {
+                Files.deleteIfExists(sibling);
+            }
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(resolve(key));
+    }
+
+    @Override
+    public Path createStagingFile() throws IOException {
+        // Under the root, so putFile is a rename on the same volume
+        Path stagingDir = root.resolve(STAGING_DIR);
+        Files.createDirectories(stagingDir);
+        return Files.createFile(stagingDir.resolve(UUID.randomUUID().toString()));
+    }
+
+    @Override
+    public Optional<Path> localPath(String key) throws IOException {
+        Path path = resolve(key);
+        return Files.isRegularFile(path) ? Optional.of(path) : Optional.empty();
+    }
+
+    private Path resolve(String key) throws IOException {
+        Path path = root.resolve(key).normalize();
+        if (!path.startsWith(root) || path.equals(root)) {
+            throw new NoSuchFileException(key);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.filestoring.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * A size-bounded cache of generated files on local disk. Entries are kept in access order and the least recently
+ * used ones are deleted once the total passes the limit. The order lives in memory; after a restart it starts
+ * from the files' modification times.
+ */
+public class RenditionCache {
+
+    private final LocalStorageBackend storage;
+    private final long maxBytes;
+
+    // Key -> size in bytes, least recently used first
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+
+    public RenditionCache(Path root, long maxBytes) throws IOException {
+        this.storage = new LocalStorageBackend(root);
+        this.maxBytes = maxBytes;
+        Files.createDirectories(storage.getRoot());
+        load();
+    }
+
+    // Serves the cached files; keys are relative to the cache root
+    public LocalStorageBackend storage() {
+        return storage;
+    }
+
+    public Path createStagingFile() throws IOException {
+        return storage.createStagingFile();
+    }
+
+    // Also marks the entry as recently used
+    public synchronized boolean contains(String key) {
+        return entries.get(key) != null;
+    }
+
+    /**
+     * Moves a finished file into the cache, evicting older entries if it no longer fits
+     * @param key Where the file is cached
+     * @param stagedFile A file from createStagingFile(); it is consumed
+     */
+    public void put(String key, Path stagedFile) throws IOException {
+        long size = Files.size(stagedFile);
+        storage.putFile(key, stagedFile);
+        List<String> evicted = new ArrayList<>();
+        synchronized (this) {
+            Long previous = entries.put(key, size);
+            totalBytes += size - (previous != null ? previous : 0);
+            Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+            while (totalBytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<String, Long> entry = eldest.next();
+                if (entry.getKey().equals(key)) {
+                    continue;
+                }
+                totalBytes -= entry.getValue();
+                evicted.add(entry.getKey());
+                eldest.remove();
+            }
+        }
+        for (String evictedKey : evicted) {
+            storage.delete(evictedKey);
+        }
+    }
+
+    // Drops the entry if its file has gone from disk, so the next lookup is a miss; true when it was dropped
+    public synchronized boolean forgetIfMissing(String key) throws IOException {
+        Long size = entries.get(key);
+        if (size == null || storage.exists(key)) {
+            return false;
+        }
+        entries.remove(key);
+        totalBytes -= size;
+        return true;
+    }
+
+    public synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void load() throws IOException {
+        Path root = storage.getRoot();
+        List<CachedFile> files = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.filter(Files::isRegularFile)
+                    .filter(path -> !root.relativize(path).startsWith(LocalStorageBackend.STAGING_DIR))
+                    .forEach(path -> {
+                        try {
+                            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                            String key = root.relativize(path).toString().replace('\\', '/');
+                            files.add(new CachedFile(key, attributes.size(), attributes.lastModifiedTime().toMillis()));
+                        } catch (IOException ex) {
+                            throw new UncheckedIOException(ex);
+                        }
+                    });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+
+        files.sort(Comparator.comparingLong(CachedFile::lastModified));
+        List<String> evicted = new ArrayList<>();
+        synchronized (this) {
+            for (CachedFile file : files) {
+                entries.put(file.key(), file.size());
+                totalBytes += file.size();
+            }
+            Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+            while (totalBytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<String, Long> entry = eldest.next();
+                totalBytes -= entry.getValue();
+                evicted.add(entry.getKey());
+                eldest.remove();
+            }
+        }
+        for (String key : evicted) {
+            storage.delete(key);
+        }
+    }
+
+    private record CachedFile(String key, long size, long lastModified) {
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.filestoring.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Where file content is kept. Keys are relative, slash-separated names such as
+ * "blobs/ab/cd/abcd..." and are never interpreted by callers.
+ */
+public interface StorageBackend {
+
+    boolean exists(String key) throws IOException;
+
+    long size(String key) throws IOException;
+
+    // Last modification time in epoch milliseconds
+    long lastModified(String key) throws IOException;
+
+    // Sequential read from the start
+    InputStream openStream(String key) throws IOException;
+
+    // Positional read, for ranges and parallel readers
+    SeekableByteChannel openChannel(String key) throws IOException;
+
+    // Stores the stream under the key; readers see either the old content or the complete new content
+    void write(String key, InputStream data) throws IOException;
+
+    // Takes ownership of a fully written staging file and stores it under the key
+    void putFile(String key, Path stagedFile) throws IOException;
+
+    void delete(String key) throws IOException;
+
+    // A local scratch file that putFile can adopt cheaply
+    Path createStagingFile() throws IOException;
+
+    // The backing file when the content is on a local filesystem, for sendfile and memory mapping
+    default Optional<Path> localPath(String key) throws IOException {
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.filestoring.storage;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Caps how many blocking disk operations run at once, however many request threads there are.
+ * Permits cover single calls (one read, one write, one stat) rather than whole downloads, so a slow client
+ * holding a stream open does not hold a permit while its bytes sit in the network buffer.
+ */
+public class ThrottledStorageBackend implements StorageBackend {
+
+    private interface Operation<T> {
+        T run() throws IOException;
+    }
+
+    private final StorageBackend delegate;
+    private final Semaphore permits;
+
+    public ThrottledStorageBackend(StorageBackend delegate, int maxConcurrentOperations) {
+        this.delegate = delegate;
+        this.permits = new Semaphore(maxConcurrentOperations, true);
+    }
+
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        return throttled(() -> delegate.exists(key));
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        return throttled(() -> delegate.size(key));
+    }
+
+    @Override
+    public long lastModified(String key) throws IOException {
+        return throttled(() -> delegate.lastModified(key));
+    }
+
+    @Override
+    public InputStream openStream(String key) throws IOException {
+        return new ThrottledInputStream(throttled(() -> delegate.openStream(key)));
+    }
+
+    @Override
+    public SeekableByteChannel openChannel(String key) throws IOException {
+        return new ThrottledChannel(throttled(() -> delegate.openChannel(key)));
+    }
+
+    @Override
+    public void write(String key, InputStream data) throws IOException {
+        // Uploads stage to a file and use putFile; write() only sees sources that are already local
+        throttled(() -> {
+            delegate.write(key, data);
+            return null;
+        });
+    }
+
+    @Override
+    public void putFile(String key, Path stagedFile) throws IOException {
+        throttled(() -> {
+            delegate.putFile(key, stagedFile);
+            return null;
+        });
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        throttled(() -> {
+            delegate.delete(key);
+            return null;
+        });
+    }
+
+    @Override
+    public Path createStagingFile() throws IOException {
+        return throttled(delegate::createStagingFile);
+    }
+
+    // sendfile runs in the connector, outside any request thread, so it needs no permit
+    @Override
+    public Optional<Path> localPath(String key) throws IOException {
+        return delegate.localPath(key);
+    }
+
+    private <T> T throttled(Operation<T> operation) throws IOException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for disk access");
+        }
+        try {
+            return operation.run();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private class ThrottledInputStream extends FilterInputStream {
+
+        ThrottledInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            return throttled(in::read);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return throttled(() -> in.read(b, off, len));
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return throttled(() -> in.skip(n));
+        }
+    }
+
+    private class ThrottledChannel implements SeekableByteChannel {
+
+        private final SeekableByteChannel channel;
+
+        ThrottledChannel(SeekableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return throttled(() -> channel.read(dst));
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return throttled(() -> channel.write(src));
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) throws IOException {
+            channel.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) throws IOException {
+            channel.truncate(size);
+            return this;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
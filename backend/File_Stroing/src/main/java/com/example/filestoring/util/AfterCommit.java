@@ -0,0 +1,28 @@
+package com.example.filestoring.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Defers side effects that mirror database changes (index updates, caches) until
+ * the surrounding transaction commits, so a rollback leaves them untouched
+ */
+public class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    // Runs the task after commit, or right away when no transaction is active
+    public static void run(Runnable task) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            task.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                task.run();
+            }
+        });
+    }
+}
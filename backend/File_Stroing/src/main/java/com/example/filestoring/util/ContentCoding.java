@@ -0,0 +1,97 @@
+package com.example.filestoring.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * HTTP content codings we can produce, in order of preference when a client rates several equally. Each has a
+ * stored variant next to the original content under the original key plus its extension
+ */
+public enum ContentCoding {
+
+    GZIP("gzip", ".gz");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String token;
+    private final String extension;
+
+    ContentCoding(String token, String extension) {
+        this.token = token;
+        this.extension = extension;
+    }
+
+    // The Content-Encoding / Accept-Encoding name
+    public String getToken() {
+        return token;
+    }
+
+    public String variantKey(String storageKey) {
+        return storageKey + extension;
+    }
+
+    /**
+     * Wraps a stream so that what is written to it comes out in this coding; closing it finishes the coding and
+     * closes the target
+     * @param level A java.util.zip.Deflater level
+     */
+    public OutputStream compress(OutputStream target, int level) throws IOException {
+        return new GZIPOutputStream(target, BUFFER_SIZE) {
+            {
+                def.setLevel(level);
+            }
+        };
+    }
+
+    /**
+     * Picks the coding to answer an Accept-Encoding header with: the highest q-value wins, ties go to the earlier
+     * coding, "*" covers codings not named, and q=0 rules a coding out
+     * @param acceptEncoding The raw header value, possibly null
+     * @return The chosen coding, or null when the identity is all the client gets
+     */
+    public static ContentCoding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return null;
+        }
+        ContentCoding best = null;
+        double bestQuality = 0;
+        for (ContentCoding coding : values()) {
+            double quality = quality(acceptEncoding, coding.token);
+            if (quality > bestQuality) {
+                best = coding;
+                bestQuality = quality;
+            }
+        }
+        return best;
+    }
+
+    // The q-value the header gives this coding, or 0 when it does not accept it
+    private static double quality(String acceptEncoding, String token) {
+        double wildcard = 0;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String name = params[0].trim().toLowerCase(Locale.ROOT);
+            if (!name.equals(token) && !name.equals("*")) {
+                continue;
+            }
+            double quality = 1;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=") || param.startsWith("Q=")) {
+                    try {
+                        quality = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException ex) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (name.equals(token)) {
+                return quality;
+            }
+            wildcard = quality;
+        }
+        return wildcard;
+    }
+}
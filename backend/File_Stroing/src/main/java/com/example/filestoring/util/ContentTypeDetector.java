@@ -0,0 +1,114 @@
+package com.example.filestoring.util;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+
+/**
+ * Detects a MIME type from a file's leading bytes, using the file name to refine or fall back
+ */
+public class ContentTypeDetector {
+
+    // How many leading bytes are kept for sniffing
+    public static final int SNIFF_LENGTH = 512;
+
+    private static final String OCTET_STREAM = MediaType.APPLICATION_OCTET_STREAM_VALUE;
+
+    private ContentTypeDetector() {
+    }
+
+    /**
+     * Picks a content type from magic numbers, then from the file name
+     * @param head The first bytes of the file
+     * @param length How many bytes of head are valid
+     * @param fileName The original file name, may be null
+     * @return A MIME type, never null
+     */
+    public static String detect(byte[] head, int length, String fileName) {
+        String byName = fileName == null ? null
+                : MediaTypeFactory.getMediaType(fileName).map(MediaType::toString).orElse(null);
+
+        String byMagic = sniff(head, length);
+        if (byMagic != null) {
+            // ZIP containers (docx, jar, epub...) are better described by their extension
+            if ("application/zip".equals(byMagic) && byName != null) {
+                return byName;
+            }
+            return byMagic;
+        }
+        if (byName != null) {
+            return byName;
+        }
+        return looksLikeText(head, length) ? MediaType.TEXT_PLAIN_VALUE : OCTET_STREAM;
+    }
+
+    private static String sniff(byte[] b, int n) {
+        if (startsWith(b, n, 0x89, 'P', 'N', 'G')) return MediaType.IMAGE_PNG_VALUE;
+        if (startsWith(b, n, 0xFF, 0xD8, 0xFF)) return MediaType.IMAGE_JPEG_VALUE;
+        if (startsWith(b, n, 'G', 'I', 'F', '8')) return MediaType.IMAGE_GIF_VALUE;
+        if (startsWith(b, n, '%', 'P', 'D', 'F', '-')) return MediaType.APPLICATION_PDF_VALUE;
+        if (startsWith(b, n, 'P', 'K', 3, 4)) return "application/zip";
+        if (startsWith(b, n, 0x1F, 0x8B)) return "application/gzip";
+        if (startsWith(b, n, 'B', 'M')) return "image/bmp";
+        if (startsWith(b, n, 'I', 'I', '*', 0) || startsWith(b, n, 'M', 'M', 0, '*')) return "image/tiff";
+        if (startsWith(b, n, '7', 'z', 0xBC, 0xAF, 0x27, 0x1C)) return "application/x-7z-compressed";
+        if (startsWith(b, n, 'R', 'a', 'r', '!')) return "application/vnd.rar";
+        if (startsWith(b, n, 'O', 'g', 'g', 'S')) return "application/ogg";
+        if (startsWith(b, n, 'I', 'D', '3')) return "audio/mpeg";
+        if (startsWith(b, n, 0x1A, 0x45, 0xDF, 0xA3)) return "video/webm";
+        if (startsWith(b, n, 'R', 'I', 'F', 'F') && n >= 12) {
+            String kind = new String(b, 8, 4, StandardCharsets.US_ASCII);
+            if ("WEBP".equals(kind)) return "image/webp";
+            if ("WAVE".equals(kind)) return "audio/wav";
+            if ("AVI ".equals(kind)) return "video/x-msvideo";
+        }
+        if (n >= 12 && b[4] == 'f' && b[5] == 't' && b[6] == 'y' && b[7] == 'p') {
+            String brand = new String(b, 8, 4, StandardCharsets.US_ASCII);
+            if (brand.startsWith("qt")) return "video/quicktime";
+            if (brand.startsWith("M4A")) return "audio/mp4";
+            if (brand.startsWith("heic") || brand.startsWith("heix") || brand.startsWith("mif1")) return "image/heic";
+            return "video/mp4";
+        }
+        // MPEG transport streams repeat a 0x47 sync byte every 188 bytes
+        if (n > 188 && (b[0] & 0xFF) == 0x47 && (b[188] & 0xFF) == 0x47) return "video/mp2t";
+        return null;
+    }
+
+    private static boolean startsWith(byte[] b, int n, int... magic) {
+        if (n < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((b[i] & 0xFF) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean looksLikeText(byte[] b, int n) {
+        if (n == 0) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            if (b[i] == 0) {
+                return false;
+            }
+        }
+        // A multi-byte character may be cut off at the end of the sample, so ignore the last few bytes
+        int checked = n == b.length ? Math.max(0, n - 3) : n;
+        try {
+            StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(b, 0, checked));
+            return true;
+        } catch (CharacterCodingException ex) {
+            return false;
+        }
+    }
+}
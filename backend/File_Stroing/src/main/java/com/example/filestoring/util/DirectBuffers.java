@@ -0,0 +1,50 @@
+package com.example.filestoring.util;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of direct buffers for moving file bytes without an extra heap-to-native copy.
+ * Buffers are lent per transfer rather than kept per thread, so direct memory stays at MAX_DIRECT
+ * buffers however many threads (virtual ones included) move bytes at once; past that, callers
+ * get a heap buffer.
+ */
+public class DirectBuffers {
+
+    public static final int BUFFER_SIZE = 256 * 1024;
+
+    // 16 MiB of direct memory at most
+    static final int MAX_DIRECT = 64;
+
+    private static final Queue<ByteBuffer> IDLE = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger ALLOCATED = new AtomicInteger();
+
+    private DirectBuffers() {
+    }
+
+    /**
+     * Lends a buffer, cleared and ready for reading into; pass it to release() when the transfer is done
+     * @return A buffer of BUFFER_SIZE bytes, direct unless all MAX_DIRECT direct buffers are lent out
+     */
+    public static ByteBuffer acquire() {
+        ByteBuffer buffer = IDLE.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        if (ALLOCATED.incrementAndGet() <= MAX_DIRECT) {
+            return ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+        ALLOCATED.decrementAndGet();
+        return ByteBuffer.allocate(BUFFER_SIZE);
+    }
+
+    // Heap buffers are left to the GC
+    public static void release(ByteBuffer buffer) {
+        if (buffer.isDirect()) {
+            buffer.clear();
+            IDLE.offer(buffer);
+        }
+    }
+}
@@ -1,25 +1,69 @@
 package com.example.filestoring.util;
 
-import java.util.Random;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Utility class for generating 8-digit numeric IDs
+ * Utility class for generating numeric IDs.
+ * New IDs are time-ordered: 41 bits of milliseconds since {@link #EPOCH}, 5 bits of node ID and a
+ * 7-bit per-millisecond sequence. That is 53 bits in total, so they survive a round trip through
+ * JavaScript numbers.
  */
 public class IdGenerator {
-    
-    private static final Random random = new Random();
-    
+
+    public static final long EPOCH = Instant.parse("2020-01-01T00:00:00Z").toEpochMilli();
+
+    static final int NODE_BITS = 5;
+    static final int SEQUENCE_BITS = 7;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final long MAX_ID = (1L << 53) - 1;
+
+    // Time-ordered IDs were first handed out from here on, so anything older is not one of ours
+    private static final long FIRST_TIMESTAMP = Instant.parse("2026-10-01T00:00:00Z").toEpochMilli() - EPOCH;
+    // Slack for clock skew between nodes and for sequence overflow borrowing from the next millisecond
+    private static final long MAX_FUTURE_MILLIS = 60_000;
+
+    // Last handed-out (timestamp << SEQUENCE_BITS | sequence); only ever moves forward
+    private static final AtomicLong state = new AtomicLong();
+
+    private static volatile long nodeBits;
+
+    private IdGenerator() {
+    }
+
+    /**
+     * Sets the node ID mixed into every new ID; each running instance needs its own
+     * @param nodeId A value between 0 and {@link #MAX_NODE_ID}
+     */
+    public static void setNodeId(int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node ID must be between 0 and " + MAX_NODE_ID + ": " + nodeId);
+        }
+        nodeBits = (long) nodeId << SEQUENCE_BITS;
+    }
+
     /**
-     * Generates a random 8-digit ID
-     * @return 8-digit numeric ID as a Long
+     * Generates a unique, time-ordered ID without locking
+     * @return A positive ID that is larger than every ID this instance generated before
      */
-    public static Long generateEightDigitId() {
-        // Generate a random number between 10000000 and 99999999 (8 digits)
-        return 10000000L + random.nextInt(90000000);
+    public static Long nextId() {
+        long now = System.currentTimeMillis() - EPOCH;
+        long previous;
+        long next;
+        do {
+            previous = state.get();
+            // A new millisecond restarts the sequence; otherwise count up, spilling into the next millisecond
+            // when 128 IDs were already taken (or the clock stepped backwards) so IDs never repeat
+            next = Math.max(now << SEQUENCE_BITS, previous + 1);
+        } while (!state.compareAndSet(previous, next));
+
+        long timestamp = next >>> SEQUENCE_BITS;
+        return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | (next & SEQUENCE_MASK);
     }
-    
+
     /**
-     * Checks if the generated ID is valid (8 digits)
+     * Checks if the ID is one this class could have generated: a legacy 8-digit ID or a time-ordered one
      * @param id The ID to validate
      * @return true if the ID is valid, false otherwise
      */
@@ -27,8 +71,22 @@ public class IdGenerator {
         if (id == null) {
             return false;
         }
-        
-        String idStr = id.toString();
-        return idStr.length() == 8;
+        if (id >= 10000000L && id <= 99999999L) {
+            return true;
+        }
+        if (id <= 0 || id > MAX_ID) {
+            return false;
+        }
+        long timestamp = timestampOf(id);
+        return timestamp >= FIRST_TIMESTAMP && timestamp <= System.currentTimeMillis() - EPOCH + MAX_FUTURE_MILLIS;
+    }
+
+    // Milliseconds since EPOCH encoded in a time-ordered ID
+    static long timestampOf(long id) {
+        return id >>> (NODE_BITS + SEQUENCE_BITS);
+    }
+
+    static int nodeOf(long id) {
+        return (int) ((id >>> SEQUENCE_BITS) & MAX_NODE_ID);
     }
 }
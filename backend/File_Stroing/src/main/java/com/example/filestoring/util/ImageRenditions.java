@@ -0,0 +1,124 @@
+package com.example.filestoring.util;
+
+import javax.imageio.IIOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * Downscales images with the JDK's ImageIO. Large sources are decoded with subsampling, so a thumbnail
+ * of a 40-megapixel photo never holds the full-resolution bitmap in memory.
+ */
+public class ImageRenditions {
+
+    public static final String JPEG = "jpeg";
+    public static final String PNG = "png";
+
+    // Refuse sources whose header claims more pixels than this (decompression bombs)
+    private static final long MAX_SOURCE_PIXELS = 250_000_000L;
+
+    private static final float JPEG_QUALITY = 0.82f;
+
+    private ImageRenditions() {
+    }
+
+    /**
+     * Writes a copy of the image that fits within maxDimension on its longest edge
+     * @param source The encoded image
+     * @param maxDimension The longest edge of the result, in pixels
+     * @param target Where the rendition is written
+     * @return The format written (JPEG, or PNG when the source has transparency), or null when the source is not
+     *         an image ImageIO can decode
+     */
+    public static String render(InputStream source, int maxDimension, Path target) throws IOException {
+        BufferedImage image;
+        try (ImageInputStream in = ImageIO.createImageInputStream(source)) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > MAX_SOURCE_PIXELS) {
+                    return null;
+                }
+
+                // Decode at no less than twice the target size; the smooth downscale below does the rest
+                double scale = Math.min(1.0, maxDimension / (double) Math.max(width, height));
+                int step = Math.max(1, (int) (1 / scale / 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                image = reader.read(0, param);
+
+                int targetWidth = Math.max(1, (int) Math.round(width * scale));
+                int targetHeight = Math.max(1, (int) Math.round(height * scale));
+                image = downscale(image, targetWidth, targetHeight);
+            } catch (IIOException ex) {
+                // Truncated files, unsupported colour models (e.g. CMYK JPEG) and the like
+                return null;
+            } finally {
+                reader.dispose();
+            }
+        }
+
+        boolean alpha = image.getColorModel().hasAlpha();
+        if (alpha) {
+            ImageIO.write(image, PNG, target.toFile());
+            return PNG;
+        }
+        writeJpeg(image, target);
+        return JPEG;
+    }
+
+    // Halves the image in bilinear steps, which keeps detail that a single large bilinear step would alias away
+    static BufferedImage downscale(BufferedImage image, int targetWidth, int targetHeight) {
+        boolean alpha = image.getColorModel().hasAlpha();
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = image;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage next = new BufferedImage(width, height, type);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private static void writeJpeg(BufferedImage image, Path target) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(JPEG).next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+}
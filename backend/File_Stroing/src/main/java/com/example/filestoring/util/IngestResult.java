@@ -0,0 +1,29 @@
+package com.example.filestoring.util;
+
+/**
+ * What was learned about a file's content while it was being written
+ */
+public class IngestResult {
+
+    private final String sha256;
+    private final long size;
+    private final String contentType;
+
+    public IngestResult(String sha256, long size, String contentType) {
+        this.sha256 = sha256;
+        this.size = size;
+        this.contentType = contentType;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.filestoring.util;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends a file range by mapping it in fixed-size windows and writing each window straight from the mapping, instead
+ * of FileChannel.transferTo's 8 KB read-and-copy loop when the target is not a socket or file. While one window is
+ * written, the next read-ahead windows are mapped and paged in on a background thread by MappedByteBuffer.load(),
+ * which advises MADV_WILLNEED and then touches every page. Windows are unmapped as soon as they are sent. A
+ * process-wide cap on mapped windows keeps well clear of vm.max_map_count; a transfer that finds the cap reached
+ * reads that window the ordinary way.
+ */
+public class MappedTransfer implements Closeable {
+
+    // Unmaps a buffer now rather than whenever the GC gets to it; null if this JVM does not allow it
+    private static final MethodHandle UNMAPPER = findUnmapper();
+
+    private final long windowSize;
+    private final int readAhead;
+    private final int maxWindows;
+    private final Semaphore windows;
+    private final ExecutorService prefetcher;
+
+    /**
+     * @param windowSize Bytes mapped at a time
+     * @param readAhead Windows mapped and paged in ahead of the one being written (0 = rely on the kernel alone)
+     * @param maxWindows Windows that may be mapped at once across all transfers
+     */
+    public MappedTransfer(long windowSize, int readAhead, int maxWindows) {
+        if (windowSize <= 0 || readAhead < 0 || maxWindows <= 0) {
+            throw new IllegalArgumentException("Window size and window cap must be positive, read-ahead not negative");
+        }
+        this.windowSize = windowSize;
+        this.readAhead = readAhead;
+        this.maxWindows = maxWindows;
+        this.windows = new Semaphore(maxWindows);
+        AtomicInteger counter = new AtomicInteger();
+        this.prefetcher = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "mapped-read-ahead-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    public void transfer(FileChannel channel, long position, long count, WritableByteChannel target)
+            throws IOException {
+        long end = position + count;
+        // Next offset to map; windows between position and next are queued in ahead
+        long next = position;
+        ArrayDeque<Window> ahead = new ArrayDeque<>();
+        try {
+            while (position < end) {
+                while (ahead.size() <= readAhead && next < end) {
+                    Window window = map(channel, next, Math.min(windowSize, end - next), !ahead.isEmpty());
+                    if (window == null) {
+                        break;
+                    }
+                    ahead.add(window);
+                    next += window.length;
+                }
+
+                Window current = ahead.poll();
+                if (current == null) {
+                    // Out of mappings for now: this window goes through a plain positional read
+                    long length = Math.min(windowSize, end - position);
+                    copy(channel, position, length, target);
+                    position += length;
+                    next = position;
+                    continue;
+                }
+                try {
+                    while (current.buffer.hasRemaining()) {
+                        target.write(current.buffer);
+                    }
+                } finally {
+                    release(current);
+                }
+                position += current.length;
+            }
+        } finally {
+            for (Window window : ahead) {
+                release(window);
+            }
+        }
+    }
+
+    // Windows currently mapped, for the files.delivery.mapped.windows gauge
+    public int mappedWindows() {
+        return maxWindows - windows.availablePermits();
+    }
+
+    @Override
+    public void close() {
+        prefetcher.shutdownNow();
+    }
+
+    private Window map(FileChannel channel, long position, long length, boolean prefetch) throws IOException {
+        if (!windows.tryAcquire()) {
+            return null;
+        }
+        Window window;
+        try {
+            if (position + length > channel.size()) {
+                throw new EOFException("File was truncated while it was being sent");
+            }
+            window = new Window(channel.map(FileChannel.MapMode.READ_ONLY, position, length), length);
+        } catch (IOException | RuntimeException ex) {
+            windows.release();
+            throw ex;
+        }
+        if (prefetch) {
+            try {
+                prefetcher.execute(window);
+            } catch (RejectedExecutionException ex) {
+                // Shutting down; the window is still sent, just without read-ahead
+            }
+        }
+        return window;
+    }
+
+    private void release(Window window) {
+        // Touching an unmapped page crashes the JVM, so a running prefetch must finish first
+        window.awaitPrefetch();
+        unmap(window.buffer);
+        windows.release();
+    }
+
+    private static void copy(FileChannel channel, long position, long count, WritableByteChannel target)
+            throws IOException {
+        ByteBuffer buffer = DirectBuffers.acquire();
+        try {
+            while (count > 0) {
+                buffer.limit((int) Math.min(buffer.capacity(), count));
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new EOFException("File was truncated while it was being sent");
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                buffer.clear();
+                position += read;
+                count -= read;
+            }
+        } finally {
+            DirectBuffers.release(buffer);
+        }
+    }
+
+    private static void unmap(MappedByteBuffer buffer) {
+        if (UNMAPPER == null) {
+            return;
+        }
+        try {
+            UNMAPPER.invokeExact((ByteBuffer) buffer);
+        } catch (Throwable ex) {
+            // Left to the GC, as without an unmapper
+        }
+    }
+
+    // sun.misc.Unsafe.invokeCleaner (jdk.unsupported), the same route Lucene's MMapDirectory takes before Java 21
+    private static MethodHandle findUnmapper() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(unsafe);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    // A mapped window; as a Runnable it pages itself in on the read-ahead thread, unless it was released first
+    private static final class Window implements Runnable {
+
+        private static final int IDLE = 0;
+        private static final int LOADING = 1;
+        private static final int SKIPPED = 2;
+
+        final MappedByteBuffer buffer;
+        final long length;
+        private final AtomicInteger state = new AtomicInteger(IDLE);
+        private final CountDownLatch loaded = new CountDownLatch(1);
+
+        Window(MappedByteBuffer buffer, long length) {
+            this.buffer = buffer;
+            this.length = length;
+        }
+
+        @Override
+        public void run() {
+            if (state.compareAndSet(IDLE, LOADING)) {
+                try {
+                    buffer.load();
+                } finally {
+                    loaded.countDown();
+                }
+            }
+        }
+
+        void awaitPrefetch() {
+            if (state.compareAndSet(IDLE, SKIPPED)) {
+                return;
+            }
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    loaded.await();
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
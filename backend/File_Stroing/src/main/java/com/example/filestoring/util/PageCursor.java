@@ -0,0 +1,51 @@
+package com.example.filestoring.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque cursor for keyset pagination: the sort key (epoch millis, or 0 when
+ * the listing is ordered by id alone) and id of the last row on the page
+ */
+public class PageCursor {
+
+    private final long sortKey;
+    private final long id;
+
+    public PageCursor(long sortKey, long id) {
+        this.sortKey = sortKey;
+        this.id = id;
+    }
+
+    public long getSortKey() {
+        return sortKey;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String encode() {
+        String raw = sortKey + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Parses a cursor produced by encode()
+     * @param token The cursor from a previous page, or null for the first page
+     * @return The decoded cursor, or null when token is null or blank
+     * @throws IllegalArgumentException if the token was not produced by encode()
+     */
+    public static PageCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII);
+            int separator = raw.indexOf(':');
+            return new PageCursor(Long.parseLong(raw.substring(0, separator)), Long.parseLong(raw.substring(separator + 1)));
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("Invalid page cursor", ex);
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package com.example.filestoring.util;
+
+import com.example.filestoring.storage.StorageBackend;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a multi-entry ZIP archive to a stream, deflating entries in parallel.
+ * Each entry is compressed on the executor into a temp file, then the entries are
+ * appended to the output in their original order as soon as each one is ready.
+ * Only a bounded window of entries is compressed ahead of the writer. ZIP64
+ * records are written when sizes, offsets or the entry count need them.
+ */
+public class ParallelZipWriter {
+
+    private static final int LOCAL_HEADER_SIG = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIG = 0x02014b50;
+    private static final int ZIP64_END_SIG = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+    private static final int END_SIG = 0x06054b50;
+
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final int VERSION_ZIP64 = 45;
+    private static final int VERSION_DEFAULT = 20;
+    private static final int FLAG_UTF8 = 0x0800;
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+
+    /**
+     * Stored content to add to the archive under the given entry name
+     */
+    public static class Source {
+        private final String storageKey;
+        private final String entryName;
+
+        public Source(String storageKey, String entryName) {
+            this.storageKey = storageKey;
+            this.entryName = entryName;
+        }
+
+        public String getStorageKey() {
+            return storageKey;
+        }
+
+        public String getEntryName() {
+            return entryName;
+        }
+    }
+
+    // Result of compressing one entry, ready to be appended to the archive
+    private static class PreparedEntry {
+        String storageKey;
+        Path compressedFile; // null for STORED entries, which are copied from storage
+        byte[] name;
+        int method;
+        long crc;
+        long size;
+        long compressedSize;
+        int dosTime;
+        int dosDate;
+        long offset;
+    }
+
+    // Temp files of one write() not yet appended; discard() removes those of tasks it raced with
+    private static class Scratch {
+        final Set<Path> files = ConcurrentHashMap.newKeySet();
+        volatile boolean discarded;
+    }
+
+    private final StorageBackend storage;
+    private final ExecutorService executor;
+    private final int window;
+    private final ZipCompression compression;
+    private final boolean forceZip64;
+
+    public ParallelZipWriter(StorageBackend storage, ExecutorService executor, int window, ZipCompression compression) {
+        this(storage, executor, window, compression, false);
+    }
+
+    ParallelZipWriter(StorageBackend storage, ExecutorService executor, int window, ZipCompression compression,
+                      boolean forceZip64) {
+        this.storage = storage;
+        this.executor = executor;
+        this.window = Math.max(1, window);
+        this.compression = compression;
+        this.forceZip64 = forceZip64;
+    }
+
+    /**
+     * Writes every source into a single archive on the given stream
+     * @param sources The files to add, in archive order
+     * @param outputStream The destination, typically the HTTP response body
+     */
+    public void write(List<Source> sources, OutputStream outputStream) throws IOException {
+        CountingOutputStream out = new CountingOutputStream(
+                new BufferedOutputStream(outputStream, ZipStreams.BUFFER_SIZE));
+        byte[] buffer = ZipStreams.newBuffer();
+        List<PreparedEntry> written = new ArrayList<>(sources.size());
+        Deque<Future<PreparedEntry>> pending = new ArrayDeque<>();
+        Iterator<Source> remaining = sources.iterator();
+        Scratch scratch = new Scratch();
+
+        try {
+            while (pending.size() < window && remaining.hasNext()) {
+                pending.add(submit(remaining.next(), scratch));
+            }
+            while (!pending.isEmpty()) {
+                PreparedEntry entry = await(pending.poll());
+                if (remaining.hasNext()) {
+                    pending.add(submit(remaining.next(), scratch));
+                }
+                try {
+                    entry.offset = out.getCount();
+                    writeLocalHeader(out, entry);
+                    if (entry.compressedFile != null) {
+                        copy(Files.newInputStream(entry.compressedFile), out, buffer);
+                    } else {
+                        copy(storage.openStream(entry.storageKey), out, buffer);
+                    }
+                } finally {
+                    if (entry.compressedFile != null) {
+                        deleteQuietly(entry.compressedFile);
+                        scratch.files.remove(entry.compressedFile);
+                    }
+                }
+                written.add(entry);
+                // Let the client see each entry as soon as it is complete
+                out.flush();
+            }
+            writeCentralDirectory(out, written);
+            out.flush();
+        } finally {
+            discard(pending, scratch);
+        }
+    }
+
+    private Future<PreparedEntry> submit(Source source, Scratch scratch) {
+        return executor.submit(() -> prepare(source, scratch));
+    }
+
+    private PreparedEntry prepare(Source source, Scratch scratch) throws IOException {
+        PreparedEntry entry = new PreparedEntry();
+        entry.storageKey = source.getStorageKey();
+        entry.name = source.getEntryName().getBytes(StandardCharsets.UTF_8);
+        LocalDateTime modified = LocalDateTime.ofInstant(
+                Instant.ofEpochMilli(storage.lastModified(source.getStorageKey())), ZoneId.systemDefault());
+        entry.dosTime = (modified.getHour() << 11) | (modified.getMinute() << 5) | (modified.getSecond() >> 1);
+        entry.dosDate = modified.getYear() < 1980 ? (1 << 5) | 1
+                : ((modified.getYear() - 1980) << 9) | (modified.getMonthValue() << 5) | modified.getDayOfMonth();
+
+        byte[] buffer = ZipStreams.newBuffer();
+        CRC32 crc = new CRC32();
+        ZipCompression mode = compression.resolveFor(source.getEntryName());
+
+        if (mode == ZipCompression.STORED) {
+            try (InputStream in = storage.openStream(source.getStorageKey())) {
+                int length;
+                while ((length = in.read(buffer)) >= 0) {
+                    crc.update(buffer, 0, length);
+                    entry.size += length;
+                }
+            }
+            entry.method = METHOD_STORED;
+            entry.compressedSize = entry.size;
+            entry.crc = crc.getValue();
+            return entry;
+        }
+
+        Path compressedFile = Files.createTempFile("zip-export-", ".deflate");
+        // Registered before the check, so either discard() sees the file or this task sees the discard
+        scratch.files.add(compressedFile);
+        if (scratch.discarded) {
+            deleteQuietly(compressedFile);
+            throw new IOException("Archive discarded");
+        }
+        Deflater deflater = new Deflater(mode.getLevel(), true);
+        try (InputStream in = storage.openStream(source.getStorageKey());
+             // Without CREATE, so a file discard() already removed is not brought back
+             DeflaterOutputStream dos = new DeflaterOutputStream(
+                     Files.newOutputStream(compressedFile, StandardOpenOption.WRITE), deflater,
+                     ZipStreams.BUFFER_SIZE)) {
+            int length;
+            while ((length = in.read(buffer)) >= 0) {
+                crc.update(buffer, 0, length);
+                dos.write(buffer, 0, length);
+                entry.size += length;
+            }
+            dos.finish();
+            entry.compressedSize = deflater.getBytesWritten();
+        } catch (IOException | RuntimeException ex) {
+            deleteQuietly(compressedFile);
+            throw ex;
+        } finally {
+            deflater.end();
+        }
+        entry.method = METHOD_DEFLATED;
+        entry.crc = crc.getValue();
+        entry.compressedFile = compressedFile;
+        return entry;
+    }
+
+    private PreparedEntry await(Future<PreparedEntry> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing archive entries", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to compress archive entry", cause);
+        }
+    }
+
+    // Cancels entries that were never written and removes any temp files they produced, including those of tasks
+    // that completed while being cancelled and so never handed their result over
+    private void discard(Deque<Future<PreparedEntry>> pending, Scratch scratch) {
+        scratch.discarded = true;
+        for (Future<PreparedEntry> future : pending) {
+            future.cancel(true);
+        }
+        for (Path file : scratch.files) {
+            deleteQuietly(file);
+        }
+        scratch.files.clear();
+    }
+
+    private boolean needsZip64(PreparedEntry entry) {
+        return forceZip64 || entry.size >= ZIP64_MAGIC || entry.compressedSize >= ZIP64_MAGIC;
+    }
+
+    private void writeLocalHeader(OutputStream out, PreparedEntry entry) throws IOException {
+        boolean zip64 = needsZip64(entry);
+        writeInt(out, LOCAL_HEADER_SIG);
+        writeShort(out, zip64 ? VERSION_ZIP64 : VERSION_DEFAULT);
+        writeShort(out, FLAG_UTF8);
+        writeShort(out, entry.method);
+        writeShort(out, entry.dosTime);
+        writeShort(out, entry.dosDate);
+        writeInt(out, entry.crc);
+        writeInt(out, zip64 ? ZIP64_MAGIC : entry.compressedSize);
+        writeInt(out, zip64 ? ZIP64_MAGIC : entry.size);
+        writeShort(out, entry.name.length);
+        writeShort(out, zip64 ? 20 : 0);
+        out.write(entry.name);
+        if (zip64) {
+            writeShort(out, ZIP64_EXTRA_ID);
+            writeShort(out, 16);
+            writeLong(out, entry.size);
+            writeLong(out, entry.compressedSize);
+        }
+    }
+
+    private void writeCentralDirectory(CountingOutputStream out, List<PreparedEntry> entries) throws IOException {
+        long directoryOffset = out.getCount();
+
+        for (PreparedEntry entry : entries) {
+            boolean sizes64 = needsZip64(entry);
+            boolean offset64 = forceZip64 || entry.offset >= ZIP64_MAGIC;
+            int extraLength = (sizes64 ? 16 : 0) + (offset64 ? 8 : 0);
+            boolean zip64 = extraLength > 0;
+
+            writeInt(out, CENTRAL_HEADER_SIG);
+            writeShort(out, zip64 ? VERSION_ZIP64 : VERSION_DEFAULT);
+            writeShort(out, zip64 ? VERSION_ZIP64 : VERSION_DEFAULT);
+            writeShort(out, FLAG_UTF8);
+            writeShort(out, entry.method);
+            writeShort(out, entry.dosTime);
+            writeShort(out, entry.dosDate);
+            writeInt(out, entry.crc);
+            writeInt(out, sizes64 ? ZIP64_MAGIC : entry.compressedSize);
+            writeInt(out, sizes64 ? ZIP64_MAGIC : entry.size);
+            writeShort(out, entry.name.length);
+            writeShort(out, zip64 ? extraLength + 4 : 0);
+            writeShort(out, 0); // comment length
+            writeShort(out, 0); // disk number start
+            writeShort(out, 0); // internal attributes
+            writeInt(out, 0); // external attributes
+            writeInt(out, offset64 ? ZIP64_MAGIC : entry.offset);
+            out.write(entry.name);
+            if (zip64) {
+                writeShort(out, ZIP64_EXTRA_ID);
+                writeShort(out, extraLength);
+                if (sizes64) {
+                    writeLong(out, entry.size);
+                    writeLong(out, entry.compressedSize);
+                }
+                if (offset64) {
+                    writeLong(out, entry.offset);
+                }
+            }
+        }
+
+        long directorySize = out.getCount() - directoryOffset;
+        int count = entries.size();
+        boolean zip64End = forceZip64 || count >= ZIP64_MAGIC_COUNT
+                || directoryOffset >= ZIP64_MAGIC || directorySize >= ZIP64_MAGIC;
+
+        if (zip64End) {
+            long zip64EndOffset = out.getCount();
+            writeInt(out, ZIP64_END_SIG);
+            writeLong(out, 44); // size of the remaining record
+            writeShort(out, VERSION_ZIP64);
+            writeShort(out, VERSION_ZIP64);
+            writeInt(out, 0); // this disk
+            writeInt(out, 0); // disk holding the central directory
+            writeLong(out, count);
+            writeLong(out, count);
+            writeLong(out, directorySize);
+            writeLong(out, directoryOffset);
+
+            writeInt(out, ZIP64_LOCATOR_SIG);
+            writeInt(out, 0);
+            writeLong(out, zip64EndOffset);
+            writeInt(out, 1); // total disks
+        }
+
+        writeInt(out, END_SIG);
+        writeShort(out, 0);
+        writeShort(out, 0);
+        writeShort(out, zip64End ? ZIP64_MAGIC_COUNT : count);
+        writeShort(out, zip64End ? ZIP64_MAGIC_COUNT : count);
+        writeInt(out, zip64End ? ZIP64_MAGIC : directorySize);
+        writeInt(out, zip64End ? ZIP64_MAGIC : directoryOffset);
+        writeShort(out, 0); // comment length
+    }
+
+    private static void copy(InputStream source, OutputStream out, byte[] buffer) throws IOException {
+        try (InputStream in = source) {
+            int length;
+            while ((length = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, length);
+            }
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // Temp files are best-effort
+        }
+    }
+
+    private static void writeShort(OutputStream out, int value) throws IOException {
+        out.write(value & 0xFF);
+        out.write((value >>> 8) & 0xFF);
+    }
+
+    private static void writeInt(OutputStream out, long value) throws IOException {
+        writeShort(out, (int) (value & 0xFFFF));
+        writeShort(out, (int) ((value >>> 16) & 0xFFFF));
+    }
+
+    private static void writeLong(OutputStream out, long value) throws IOException {
+        writeInt(out, value & 0xFFFFFFFFL);
+        writeInt(out, value >>> 32);
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.filestoring.util;
+
+import java.util.Locale;
+
+/**
+ * Downscaled copies of an image that can be requested instead of the original
+ */
+public enum RenditionSize {
+
+    THUMB(256),
+    PREVIEW(1280);
+
+    // Longest edge in pixels; smaller images keep their size
+    private final int maxDimension;
+
+    RenditionSize(int maxDimension) {
+        this.maxDimension = maxDimension;
+    }
+
+    public int getMaxDimension() {
+        return maxDimension;
+    }
+
+    public String key() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Parses a request parameter
+     * @param value The raw parameter value
+     * @return The matching size, or null (the original) when it is missing or unknown
+     */
+    public static RenditionSize fromString(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+}
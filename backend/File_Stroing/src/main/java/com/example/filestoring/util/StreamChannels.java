@@ -0,0 +1,124 @@
+package com.example.filestoring.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Channels over request and response streams. Unlike {@link java.nio.channels.Channels#newChannel}, these hold
+ * no monitor while they block, so a slow client does not pin a virtual thread to its carrier. Each channel is
+ * meant for one thread at a time.
+ */
+public class StreamChannels {
+
+    // Direct buffers are copied through a heap array of this size, as the JDK's adapters do
+    private static final int CHUNK_SIZE = 8192;
+
+    private StreamChannels() {
+    }
+
+    public static ReadableByteChannel readable(InputStream in) {
+        return new Readable(in);
+    }
+
+    public static WritableByteChannel writable(OutputStream out) {
+        return new Writable(out);
+    }
+
+    private abstract static class StreamChannel {
+        private boolean open = true;
+        private byte[] chunk;
+
+        byte[] chunk() {
+            if (chunk == null) {
+                chunk = new byte[CHUNK_SIZE];
+            }
+            return chunk;
+        }
+
+        void ensureOpen() throws ClosedChannelException {
+            if (!open) {
+                throw new ClosedChannelException();
+            }
+        }
+
+        public boolean isOpen() {
+            return open;
+        }
+
+        void markClosed() {
+            open = false;
+        }
+    }
+
+    private static class Readable extends StreamChannel implements ReadableByteChannel {
+        private final InputStream in;
+
+        Readable(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            ensureOpen();
+            if (!dst.hasRemaining()) {
+                return 0;
+            }
+            if (dst.hasArray()) {
+                int read = in.read(dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+                if (read > 0) {
+                    dst.position(dst.position() + read);
+                }
+                return read;
+            }
+            byte[] chunk = chunk();
+            int read = in.read(chunk, 0, Math.min(chunk.length, dst.remaining()));
+            if (read > 0) {
+                dst.put(chunk, 0, read);
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            markClosed();
+            in.close();
+        }
+    }
+
+    private static class Writable extends StreamChannel implements WritableByteChannel {
+        private final OutputStream out;
+
+        Writable(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            ensureOpen();
+            int length = src.remaining();
+            if (src.hasArray()) {
+                out.write(src.array(), src.arrayOffset() + src.position(), length);
+                src.position(src.limit());
+                return length;
+            }
+            byte[] chunk = chunk();
+            while (src.hasRemaining()) {
+                int count = Math.min(chunk.length, src.remaining());
+                src.get(chunk, 0, count);
+                out.write(chunk, 0, count);
+            }
+            return length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            markClosed();
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.filestoring.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Writes an upload to disk while hashing, counting and sniffing it in the same pass
+ */
+public class StreamingIngest {
+
+    private StreamingIngest() {
+    }
+
+    /**
+     * Copies the stream to the target file and describes its content
+     * @param in The upload's bytes
+     * @param target Where the bytes are written (replaced if it exists)
+     * @param fileName The original file name, used to refine the content type
+     * @return SHA-256, byte count and content type of what was written
+     */
+    public static IngestResult ingest(InputStream in, Path target, String fileName) throws IOException {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = DirectBuffers.acquire();
+        byte[] head = new byte[ContentTypeDetector.SNIFF_LENGTH];
+        int headLength = 0;
+        long size = 0;
+
+        ReadableByteChannel source = StreamChannels.readable(in);
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            boolean endOfStream = false;
+            while (!endOfStream) {
+                while (buffer.hasRemaining()) {
+                    if (source.read(buffer) < 0) {
+                        endOfStream = true;
+                        break;
+                    }
+                }
+                buffer.flip();
+                if (headLength < head.length) {
+                    int take = Math.min(head.length - headLength, buffer.remaining());
+                    buffer.get(buffer.position(), head, headLength, take);
+                    headLength += take;
+                }
+                size += buffer.remaining();
+                digest.update(buffer.duplicate());
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                buffer.clear();
+            }
+        } finally {
+            DirectBuffers.release(buffer);
+        }
+
+        return new IngestResult(HexFormat.of().formatHex(digest.digest()), size,
+                ContentTypeDetector.detect(head, headLength, fileName));
+    }
+
+    /**
+     * Describes a file that is already on disk, reading it once
+     * @param file The file to inspect
+     * @param fileName The original file name, used to refine the content type
+     * @return SHA-256, byte count and content type of the file
+     */
+    public static IngestResult inspect(Path file, String fileName) throws IOException {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = DirectBuffers.acquire();
+        byte[] head = new byte[ContentTypeDetector.SNIFF_LENGTH];
+        int headLength = 0;
+        long size = 0;
+
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (in.read(buffer) >= 0) {
+                buffer.flip();
+                if (headLength < head.length) {
+                    int take = Math.min(head.length - headLength, buffer.remaining());
+                    buffer.get(buffer.position(), head, headLength, take);
+                    headLength += take;
+                }
+                size += buffer.remaining();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        } finally {
+            DirectBuffers.release(buffer);
+        }
+
+        return new IngestResult(HexFormat.of().formatHex(digest.digest()), size,
+                ContentTypeDetector.detect(head, headLength, fileName));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+}
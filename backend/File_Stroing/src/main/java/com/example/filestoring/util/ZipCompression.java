@@ -0,0 +1,73 @@
+package com.example.filestoring.util;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+/**
+ * Compression modes offered for ZIP downloads
+ */
+public enum ZipCompression {
+
+    STORED(Deflater.NO_COMPRESSION),
+    FAST(Deflater.BEST_SPEED),
+    DEFAULT(Deflater.DEFAULT_COMPRESSION),
+    BEST(Deflater.BEST_COMPRESSION),
+    AUTO(Deflater.DEFAULT_COMPRESSION);
+
+    // Formats that are already compressed and gain nothing from deflate
+    private static final Set<String> COMPRESSED_EXTENSIONS = Set.of(
+            "jpg", "jpeg", "png", "gif", "webp", "heic",
+            "mp3", "mp4", "m4a", "m4v", "mov", "mkv", "webm", "avi", "ts",
+            "zip", "gz", "tgz", "bz2", "xz", "7z", "rar",
+            "pdf", "docx", "xlsx", "pptx");
+
+    private final int level;
+
+    ZipCompression(int level) {
+        this.level = level;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Resolves AUTO to STORED for already-compressed media and DEFAULT otherwise
+     * @param fileName The name of the file being zipped
+     * @return The concrete compression mode to use for the entry
+     */
+    public ZipCompression resolveFor(String fileName) {
+        if (this != AUTO) {
+            return this;
+        }
+        return isAlreadyCompressed(fileName) ? STORED : DEFAULT;
+    }
+
+    /**
+     * Parses a request parameter, falling back to AUTO when it is missing or unknown
+     * @param value The raw parameter value
+     * @return The matching compression mode
+     */
+    public static ZipCompression fromString(String value) {
+        if (value == null || value.isBlank()) {
+            return AUTO;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            return AUTO;
+        }
+    }
+
+    public static boolean isAlreadyCompressed(String fileName) {
+        if (fileName == null) {
+            return false;
+        }
+        int dot = fileName.lastIndexOf('.');
+        if (dot < 0 || dot == fileName.length() - 1) {
+            return false;
+        }
+        return COMPRESSED_EXTENSIONS.contains(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.filestoring.util;
+
+import com.example.filestoring.storage.StorageBackend;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.attribute.FileTime;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Helpers for writing ZIP entries straight to an output stream
+ */
+public class ZipStreams {
+
+    // One buffer per download, reused for every entry and every read
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    private ZipStreams() {
+    }
+
+    public static byte[] newBuffer() {
+        return new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * Copies stored content into the archive as a single entry without holding it in memory
+     * @param storage The backend holding the content
+     * @param key The content's storage key
+     * @param entryName The name of the entry inside the archive
+     * @param compression The compression mode (AUTO is resolved from the entry name)
+     * @param zos The archive being written
+     * @param buffer A reusable copy buffer
+     */
+    public static void writeEntry(StorageBackend storage, String key, String entryName, ZipCompression compression,
+                                  ZipOutputStream zos, byte[] buffer) throws IOException {
+        ZipCompression mode = compression.resolveFor(entryName);
+        ZipEntry zipEntry = new ZipEntry(entryName);
+        zipEntry.setLastModifiedTime(FileTime.fromMillis(storage.lastModified(key)));
+
+        if (mode == ZipCompression.STORED) {
+            // STORED entries need size and CRC up front, so checksum the content first
+            long size = storage.size(key);
+            zipEntry.setMethod(ZipEntry.STORED);
+            zipEntry.setSize(size);
+            zipEntry.setCompressedSize(size);
+            zipEntry.setCrc(crc32(storage, key, buffer));
+        } else {
+            zipEntry.setMethod(ZipEntry.DEFLATED);
+            zos.setLevel(mode.getLevel());
+        }
+
+        zos.putNextEntry(zipEntry);
+        try (InputStream in = storage.openStream(key)) {
+            int length;
+            while ((length = in.read(buffer)) >= 0) {
+                zos.write(buffer, 0, length);
+            }
+        }
+        zos.closeEntry();
+    }
+
+    private static long crc32(StorageBackend storage, String key, byte[] buffer) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream in = storage.openStream(key)) {
+            int length;
+            while ((length = in.read(buffer)) >= 0) {
+                crc.update(buffer, 0, length);
+            }
+        }
+        return crc.getValue();
+    }
+}
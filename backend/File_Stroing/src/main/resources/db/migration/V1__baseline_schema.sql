@@ -0,0 +1,24 @@
+-- Schema as Hibernate's ddl-auto=update created it before migrations were introduced; databases that already
+-- have it are baselined at this version and get everything after it from V2 on
+create table users (
+    id bigint not null,
+    email varchar(255),
+    first_name varchar(255),
+    gender varchar(255),
+    last_name varchar(255),
+    password varchar(255),
+    primary key (id)
+) engine=InnoDB;
+
+create table files (
+    created_date datetime(6) not null,
+    id bigint not null,
+    user_id bigint not null,
+    file_path varchar(255),
+    file_url varchar(255),
+    title varchar(255),
+    description longtext,
+    primary key (id)
+) engine=InnoDB;
+
+alter table files add constraint fk_files_user foreign key (user_id) references users (id);
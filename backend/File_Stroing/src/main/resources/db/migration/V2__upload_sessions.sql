@@ -0,0 +1,26 @@
+-- Resumable chunked uploads: one row per session and one per chunk received
+create table upload_sessions (
+    chunk_count integer,
+    chunk_size integer,
+    created_date datetime(6) not null,
+    file_id bigint,
+    total_size bigint,
+    user_id bigint,
+    file_name varchar(255),
+    id varchar(255) not null,
+    title varchar(255),
+    description longtext,
+    status enum ('ACTIVE','COMPLETED','COMPLETING'),
+    primary key (id)
+) engine=InnoDB;
+
+create table upload_chunks (
+    chunk_index integer,
+    received_date datetime(6),
+    size bigint,
+    id varchar(255) not null,
+    session_id varchar(255) not null,
+    primary key (id)
+) engine=InnoDB;
+
+create index idx_upload_chunks_session on upload_chunks (session_id);
@@ -0,0 +1,8 @@
+-- What uploads now record about their content. Existing rows keep nulls: downloads sniff the type and stat the
+-- file when these are missing, and usage reconciliation fills in the sizes
+alter table files add column content_type varchar(255);
+alter table files add column file_size bigint;
+alter table files add column content_hash varchar(64);
+
+-- viewFile looks files up by their public name
+create index idx_files_file_path on files (file_path);
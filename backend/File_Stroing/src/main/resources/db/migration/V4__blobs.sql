@@ -0,0 +1,12 @@
+-- Content shared by files with the same SHA-256, counted by reference.
+-- Existing files keep a null storage_key and are still read from their file_path.
+create table blobs (
+    created_date datetime(6) not null,
+    ref_count bigint not null,
+    size bigint,
+    hash varchar(64) not null,
+    path varchar(255) not null,
+    primary key (hash)
+) engine=InnoDB;
+
+alter table files add column storage_key varchar(255);
@@ -0,0 +1,3 @@
+-- Keyset pagination: newest first overall and per owner; the second also serves user_id lookups and the foreign key
+create index idx_files_created_date on files (created_date, id);
+create index idx_files_user_created on files (user_id, created_date, id);
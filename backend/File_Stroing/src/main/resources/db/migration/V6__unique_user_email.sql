@@ -0,0 +1,3 @@
+-- Login and registration look users up by email; make it unique so the lookup is an index probe with one answer.
+-- Fails if duplicate emails already exist: resolve those rows first.
+alter table users add constraint uk_users_email unique (email);
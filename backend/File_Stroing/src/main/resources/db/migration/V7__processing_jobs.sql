@@ -0,0 +1,18 @@
+-- Post-upload processing: a status on each file and a durable queue of the work still owed.
+-- Existing files were fully handled on upload, so they start out READY.
+alter table files add column processing_status enum ('FAILED','PENDING','READY') default 'READY';
+
+create table processing_jobs (
+    attempts integer not null,
+    created_date datetime(6) not null,
+    file_id bigint not null,
+    id bigint not null,
+    run_after datetime(6) not null,
+    worker_id varchar(64),
+    last_error varchar(1000),
+    status enum ('FAILED','QUEUED','RUNNING') not null,
+    primary key (id)
+) engine=InnoDB;
+
+create index idx_processing_jobs_due on processing_jobs (status, run_after);
+create index idx_processing_jobs_file on processing_jobs (file_id);
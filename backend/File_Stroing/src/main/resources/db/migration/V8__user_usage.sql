@@ -0,0 +1,18 @@
+-- Per-user storage accounting, kept current by uploads and deletes instead of summing files on demand.
+-- quota_bytes overrides app.quota.default for one user (0 for unlimited); null means the default applies.
+create table user_usage (
+    bytes_used bigint not null,
+    file_count bigint not null,
+    quota_bytes bigint,
+    user_id bigint not null,
+    reconciled_date datetime(6),
+    primary key (user_id)
+) engine=InnoDB;
+
+alter table user_usage add constraint fk_user_usage_user foreign key (user_id) references users (id);
+
+-- Existing files at their recorded sizes; the reconciliation job corrects these from the stored content
+insert into user_usage (user_id, bytes_used, file_count)
+select u.id, coalesce(sum(f.file_size), 0), count(f.id)
+from users u left join files f on f.user_id = u.id
+group by u.id;
@@ -0,0 +1,3 @@
+-- Idle uploads expire from their last chunk rather than from when they started
+alter table upload_sessions add column last_activity_date datetime(6);
+update upload_sessions set last_activity_date = created_date;
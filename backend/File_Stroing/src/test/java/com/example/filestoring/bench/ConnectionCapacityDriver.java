@@ -0,0 +1,118 @@
+package com.example.filestoring.bench;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures how many slow downloads the server can hold open while still answering other requests, e.g. with
+ * and without the virtual profile. It opens the given number of connections that download a large file and read
+ * it at a trickle, then times cheap probe requests against another path. With platform threads the probes
+ * queue once the slow readers occupy every request thread. Run main() with the test classpath:
+ *   ConnectionCapacityDriver [baseUrl] [slowClients] [downloadPath] [probePath] [seconds]
+ */
+public class ConnectionCapacityDriver {
+
+    // Each slow client reads this much every READ_INTERVAL_MS, roughly a 40 KB/s connection
+    private static final int READ_SIZE = 4 * 1024;
+    private static final long READ_INTERVAL_MS = 100;
+
+    public static void main(String[] args) throws Exception {
+        URI base = URI.create(args.length > 0 ? args[0] : "http://localhost:8080");
+        int slowClients = args.length > 1 ? Integer.parseInt(args[1]) : 400;
+        String downloadPath = args.length > 2 ? args[2] : "/files/download/1";
+        String probePath = args.length > 3 ? args[3] : "/files/page?limit=10";
+        int seconds = args.length > 4 ? Integer.parseInt(args[4]) : 20;
+
+        AtomicInteger open = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        List<Thread> readers = new ArrayList<>(slowClients);
+        for (int i = 0; i < slowClients; i++) {
+            Thread reader = new Thread(() -> slowDownload(base, downloadPath, open, failed), "slow-" + i);
+            reader.setDaemon(true);
+            reader.start();
+            readers.add(reader);
+        }
+        Thread.sleep(2000);
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        HttpRequest probe = HttpRequest.newBuilder(base.resolve(probePath)).timeout(Duration.ofSeconds(10)).build();
+        long[] latencies = new long[1024];
+        int count = 0;
+        int probeErrors = 0;
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            long start = System.nanoTime();
+            try {
+                if (client.send(probe, HttpResponse.BodyHandlers.discarding()).statusCode() >= 400) {
+                    probeErrors++;
+                }
+            } catch (Exception ex) {
+                probeErrors++;
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = System.nanoTime() - start;
+            Thread.sleep(50);
+        }
+
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        System.out.printf("%d slow downloads requested, %d still streaming, %d failed%n",
+                slowClients, open.get(), failed.get());
+        System.out.printf("%d probes, %d errors, latency ms: p50=%.2f p95=%.2f p99=%.2f max=%.2f%n",
+                count, probeErrors, percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99),
+                percentile(sorted, 1.0));
+        readers.forEach(Thread::interrupt);
+    }
+
+    // A raw socket so the client really reads slowly instead of buffering the whole body ahead of us
+    private static void slowDownload(URI base, String path, AtomicInteger open, AtomicInteger failed) {
+        int port = base.getPort() == -1 ? 80 : base.getPort();
+        try (Socket socket = new Socket(base.getHost(), port)) {
+            socket.setReceiveBufferSize(READ_SIZE);
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET " + path + " HTTP/1.1\r\nHost: " + base.getHost() + "\r\nConnection: close\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            InputStream in = socket.getInputStream();
+            byte[] buffer = new byte[READ_SIZE];
+            if (in.read(buffer) < 0) {
+                failed.incrementAndGet();
+                return;
+            }
+            open.incrementAndGet();
+            try {
+                while (in.read(buffer) >= 0) {
+                    Thread.sleep(READ_INTERVAL_MS);
+                }
+            } finally {
+                open.decrementAndGet();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            failed.incrementAndGet();
+        }
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(fraction * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+}
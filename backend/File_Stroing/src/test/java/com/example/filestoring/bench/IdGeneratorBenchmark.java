@@ -0,0 +1,64 @@
+package com.example.filestoring.bench;
+
+import com.example.filestoring.util.IdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the time-ordered generator with the legacy random one, single-threaded and contended.
+ * Run main() with the test classpath after mvn test-compile (JMH needs its generated BenchmarkList)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdGeneratorBenchmark {
+
+    private static final Random LEGACY_RANDOM = new Random();
+
+    @Benchmark
+    public Long nextId() {
+        return IdGenerator.nextId();
+    }
+
+    @Benchmark
+    public Long randomEightDigit() {
+        return randomEightDigitId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Long nextIdContended() {
+        return IdGenerator.nextId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Long randomEightDigitContended() {
+        return randomEightDigitId();
+    }
+
+    // The generator IdGenerator used to have: one shared Random, 8-digit results
+    private static Long randomEightDigitId() {
+        return 10000000L + LEGACY_RANDOM.nextInt(90000000);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(IdGeneratorBenchmark.class.getSimpleName()).build()).run();
+    }
+}
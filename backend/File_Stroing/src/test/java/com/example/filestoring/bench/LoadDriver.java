@@ -0,0 +1,111 @@
+package com.example.filestoring.bench;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Closed-loop HTTP load generator for comparing configurations, e.g. the default settings against the prod profile.
+ * Each worker sends requests back to back for the given duration, picking GET paths at random; throughput,
+ * error count and latency percentiles are printed at the end. Run main() with the test classpath:
+ *   LoadDriver [baseUrl] [threads] [seconds] [path...]
+ */
+public class LoadDriver {
+
+    private static final List<String> DEFAULT_PATHS = List.of(
+            "/files/all",
+            "/files/page?limit=50",
+            "/users/page?limit=50",
+            "/files/search?query=report",
+            "/search/suggest?q=rep");
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        List<String> paths = args.length > 3 ? Arrays.asList(args).subList(3, args.length) : DEFAULT_PATHS;
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        List<URI> uris = paths.stream().map(path -> URI.create(baseUrl + path)).toList();
+
+        // A short warm-up so JIT compilation and pool growth stay out of the numbers
+        run(client, uris, threads, Math.max(1, seconds / 5));
+        Result result = run(client, uris, threads, seconds);
+
+        long[] latencies = result.latencies;
+        Arrays.sort(latencies);
+        System.out.printf("%d requests in %ds with %d threads: %.0f req/s, %d errors%n",
+                latencies.length, seconds, threads, latencies.length / (double) seconds, result.errors);
+        System.out.printf("latency ms: p50=%.2f p95=%.2f p99=%.2f max=%.2f%n",
+                percentile(latencies, 0.50), percentile(latencies, 0.95), percentile(latencies, 0.99),
+                percentile(latencies, 1.0));
+    }
+
+    private static Result run(HttpClient client, List<URI> uris, int threads, int seconds) throws Exception {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Result>> futures = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> worker(client, uris, deadline)));
+            }
+            Result total = new Result(new long[0], 0);
+            for (Future<Result> future : futures) {
+                total = total.merge(future.get());
+            }
+            return total;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Result worker(HttpClient client, List<URI> uris, long deadline) {
+        long[] latencies = new long[1024];
+        int count = 0;
+        long errors = 0;
+        while (System.nanoTime() < deadline) {
+            URI uri = uris.get(ThreadLocalRandom.current().nextInt(uris.size()));
+            long start = System.nanoTime();
+            try {
+                HttpResponse<Void> response = client.send(HttpRequest.newBuilder(uri).GET().build(),
+                        HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() >= 400) {
+                    errors++;
+                }
+            } catch (Exception ex) {
+                errors++;
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = System.nanoTime() - start;
+        }
+        return new Result(Arrays.copyOf(latencies, count), errors);
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(fraction * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    private record Result(long[] latencies, long errors) {
+
+        Result merge(Result other) {
+            long[] merged = Arrays.copyOf(latencies, latencies.length + other.latencies.length);
+            System.arraycopy(other.latencies, 0, merged, latencies.length, other.latencies.length);
+            return new Result(merged, errors + other.errors);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.filestoring.bench;
+
+import com.example.filestoring.util.MappedTransfer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.util.StreamUtils;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends a whole file into an OutputStream-backed channel, as a servlet response without sendfile gets it: through an
+ * InputStream (the old UrlResource path), FileChannel.transferTo (the current fallback) and mapped windows. The file
+ * is written once per size and read from the page cache, so this measures copy overhead rather than the disk.
+ * Run main() with the test classpath after mvn test-compile (JMH needs its generated BenchmarkList)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class ReadEngineBenchmark {
+
+    @Param({ "1", "100", "500" })
+    public int sizeMb;
+
+    private Path file;
+    private MappedTransfer mappedTransfer;
+
+    // Copies what it is given, as the servlet stream copies into its buffer, then drops it
+    private final WritableByteChannel target = Channels.newChannel(OutputStream.nullOutputStream());
+
+    @Setup(Level.Trial)
+    public void createFile() throws Exception {
+        file = Files.createTempFile("read-engine-", ".bin");
+        byte[] chunk = new byte[1024 * 1024];
+        ThreadLocalRandom.current().nextBytes(chunk);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (int i = 0; i < sizeMb; i++) {
+                out.write(chunk);
+            }
+        }
+        mappedTransfer = new MappedTransfer(16L * 1024 * 1024, 1, 1024);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws Exception {
+        mappedTransfer.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long stream() throws Exception {
+        try (InputStream in = Files.newInputStream(file)) {
+            return StreamUtils.copy(in, Channels.newOutputStream(target));
+        }
+    }
+
+    @Benchmark
+    public long transferTo() throws Exception {
+        try (FileChannel channel = FileChannel.open(file)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, target);
+            }
+            return position;
+        }
+    }
+
+    @Benchmark
+    public long mapped() throws Exception {
+        try (FileChannel channel = FileChannel.open(file)) {
+            long size = channel.size();
+            mappedTransfer.transfer(channel, 0, size, target);
+            return size;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(ReadEngineBenchmark.class.getSimpleName()).build()).run();
+    }
+}
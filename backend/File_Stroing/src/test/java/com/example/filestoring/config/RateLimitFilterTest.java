@@ -0,0 +1,136 @@
+package com.example.filestoring.config;
+
+import com.example.filestoring.config.RateLimitFilter.Endpoint;
+import com.example.filestoring.config.RateLimitFilter.Policy;
+import com.example.filestoring.ratelimit.InMemoryRateLimitStore;
+import com.example.filestoring.ratelimit.RateLimit;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RateLimitFilterTest {
+
+    private static final RateLimit NONE = new RateLimit(0, 0);
+
+    // A stand-in for a shared store, on a clock the test moves
+    private final AtomicLong now = new AtomicLong();
+    private final InMemoryRateLimitStore store = new InMemoryRateLimitStore(now::get);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    public void setUp() {
+        filter = new RateLimitFilter(store, Map.of(
+                Endpoint.API, new Policy(new RateLimit(1, 2), NONE, 0),
+                Endpoint.UPLOAD, new Policy(NONE, new RateLimit(1000, 1000), 0),
+                Endpoint.DOWNLOAD, new Policy(NONE, new RateLimit(1_000_000, 10_000), 1)), meterRegistry);
+    }
+
+    @Test
+    public void testRequestRateIsPerAddressAndPerUserInThePath() throws Exception {
+        assertEquals(200, send(get("/users/1"), new MockFilterChain()).getStatus());
+        assertEquals(200, send(get("/files/user/1/page"), new MockFilterChain()).getStatus());
+
+        MockHttpServletResponse rejected = send(get("/users/1/usage"), new MockFilterChain());
+        assertEquals(429, rejected.getStatus());
+        assertEquals("1", rejected.getHeader("Retry-After"));
+
+        assertEquals(429, send(get("/users/2"), new MockFilterChain()).getStatus(),
+                "naming another user does not escape the address's bucket");
+        assertEquals(200, send(from("10.0.0.2", get("/files/all")), new MockFilterChain()).getStatus(),
+                "another address has its own bucket");
+        assertEquals(429, send(from("10.0.0.3", get("/users/1")), new MockFilterChain()).getStatus(),
+                "the user's bucket is shared by every address");
+        assertEquals(200, send(from("10.0.0.3", get("/users/3")), new MockFilterChain()).getStatus());
+        assertEquals(3.0, meterRegistry.get("files.ratelimit.rejected")
+                .tags("endpoint", "api", "reason", "requests").counter().count());
+    }
+
+    @Test
+    public void testUploadBytesAreChargedFromContentLength() throws Exception {
+        MockHttpServletRequest first = upload(5000);
+        assertEquals(200, send(first, new MockFilterChain()).getStatus());
+
+        // 4000 bytes past the burst take four seconds to pay off
+        MockHttpServletResponse rejected = send(upload(10), new MockFilterChain());
+        assertEquals(429, rejected.getStatus());
+        assertEquals("5", rejected.getHeader("Retry-After"));
+        assertEquals("close", rejected.getHeader("Connection"));
+
+        // The user's bytes are spent whichever address sends them, and the address's whichever user it names
+        assertEquals(429, send(from("10.0.0.2", upload(10)), new MockFilterChain()).getStatus());
+        MockHttpServletRequest otherUser = upload(10);
+        otherUser.setServletPath("/files/upload/2");
+        assertEquals(429, send(otherUser, new MockFilterChain()).getStatus());
+
+        now.addAndGet(5_000_000_000L);
+        assertEquals(200, send(upload(10), new MockFilterChain()).getStatus());
+    }
+
+    @Test
+    public void testDownloadsAreCappedInFlightAndKeepSendfileOnlyWithinTheBurst() throws Exception {
+        AtomicBoolean nestedRejected = new AtomicBoolean();
+        MockHttpServletRequest small = get("/files/download/7");
+        small.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        send(small, (request, response) -> {
+            ((HttpServletResponse) response).setContentLengthLong(5000);
+            assertEquals(Boolean.TRUE, ((HttpServletRequest) request)
+                    .getAttribute("org.apache.tomcat.sendfile.support"));
+            // The same address already has its one download in flight
+            nestedRejected.set(send(get("/files/view/a.png"), new MockFilterChain()).getStatus() == 429);
+        });
+        assertTrue(nestedRejected.get());
+
+        MockHttpServletRequest large = get("/files/download/8");
+        large.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        MockHttpServletResponse response = send(large, (request, resp) -> {
+            ((HttpServletResponse) resp).setContentLengthLong(50_000);
+            assertNull(((HttpServletRequest) request).getAttribute("org.apache.tomcat.sendfile.support"),
+                    "more than the burst has to be paced through the stream");
+            resp.getOutputStream().write(new byte[50_000]);
+        });
+        assertEquals(50_000, response.getContentAsByteArray().length);
+        // Five burst-sized slices, each waiting since the sendfile above left the bucket half empty
+        assertEquals(5, meterRegistry.get("files.ratelimit.delay").timer().count());
+    }
+
+    private MockHttpServletResponse send(MockHttpServletRequest request, FilterChain chain)
+            throws IOException, ServletException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    private static MockHttpServletRequest get(String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        request.setServletPath(path);
+        return request;
+    }
+
+    private static MockHttpServletRequest from(String address, MockHttpServletRequest request) {
+        request.setRemoteAddr(address);
+        return request;
+    }
+
+    private static MockHttpServletRequest upload(int length) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/files/upload/1");
+        request.setServletPath("/files/upload/1");
+        request.setContent(new byte[length]);
+        return request;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.filestoring.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SlowSettingsCheckTest {
+
+    @Test
+    public void testDevelopmentSettingsAreReported() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("spring.jpa.show-sql", "true")
+                .withProperty("spring.jpa.hibernate.ddl-auto", "update")
+                .withProperty("spring.datasource.url", "jdbc:mysql://localhost:3306/testdb");
+
+        List<String> warnings = new SlowSettingsCheck(environment, new HikariDataSource()).findSlowSettings();
+
+        assertTrue(warnings.stream().anyMatch(w -> w.contains("show-sql")));
+        assertTrue(warnings.stream().anyMatch(w -> w.contains("ddl-auto=update")));
+        assertTrue(warnings.stream().anyMatch(w -> w.contains("batch_size")));
+        assertTrue(warnings.stream().anyMatch(w -> w.contains("rewriteBatchedStatements")));
+    }
+
+    @Test
+    public void testProductionSettingsPass() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("spring.jpa.show-sql", "false")
+                .withProperty("spring.jpa.hibernate.ddl-auto", "validate")
+                .withProperty("spring.jpa.properties.hibernate.jdbc.batch_size", "50")
+                .withProperty("spring.datasource.url",
+                        "jdbc:mysql://db:3306/files?rewriteBatchedStatements=true&cachePrepStmts=true");
+
+        assertEquals(List.of(), new SlowSettingsCheck(environment, new HikariDataSource()).findSlowSettings());
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.filestoring.ratelimit;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BandwidthShaperTest {
+
+    // A million bytes a second, so the waits below are microseconds
+    private static final RateLimit LIMIT = new RateLimit(1_000_000, 1000);
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+    private final InMemoryRateLimitStore store = new InMemoryRateLimitStore(now::get);
+    private final Timer delays = new SimpleMeterRegistry().timer("delays");
+
+    @Test
+    public void testEveryBucketIsChargedAndTheEmptiestSetsTheWait() throws Exception {
+        BandwidthShaper shaper = new BandwidthShaper(store, List.of("ip", "user"), LIMIT, delays);
+        assertEquals(0, store.tryAcquire("user", 1000, LIMIT));
+
+        shaper.pace(400);
+
+        assertEquals(1, delays.count());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(400), (long) delays.totalTime(TimeUnit.NANOSECONDS));
+        assertEquals(0, store.tryAcquire("ip", 600, LIMIT));
+        assertTrue(store.tryAcquire("ip", 1, LIMIT) > 0);
+    }
+
+    @Test
+    public void testBytesTakenByAFailedTryTakeAreNotChargedTwice() throws Exception {
+        BandwidthShaper shaper = new BandwidthShaper(store, List.of("ip", "user"), LIMIT, delays);
+        assertEquals(0, store.tryAcquire("user", 1000, LIMIT));
+
+        assertFalse(shaper.tryTake(500));
+        // The stream then moves the same bytes; the address already paid for them
+        shaper.pace(500);
+
+        assertEquals(0, store.tryAcquire("ip", 500, LIMIT));
+        assertTrue(store.tryAcquire("ip", 1, LIMIT) > 0);
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.filestoring.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InMemoryRateLimitStoreTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+    private final InMemoryRateLimitStore store = new InMemoryRateLimitStore(now::get);
+
+    @Test
+    public void testBurstThenRefillAtTheRate() {
+        RateLimit limit = new RateLimit(10, 5);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, store.tryAcquire("client", 1, limit));
+        }
+        // One permit every 100ms from here
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), store.tryAcquire("client", 1, limit));
+        assertEquals(0, store.tryAcquire("other", 1, limit), "buckets are per key");
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(0, store.tryAcquire("client", 1, limit));
+        assertTrue(store.tryAcquire("client", 1, limit) > 0);
+    }
+
+    @Test
+    public void testMoreThanTheBurstNeedsAFullBucketAndLeavesDebt() {
+        RateLimit limit = new RateLimit(1000, 100);
+
+        assertEquals(0, store.tryAcquire("bytes", 1000, limit));
+        // The 900 bytes beyond the burst take 900ms to pay off, then one byte more than the empty bucket holds
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(901), store.tryAcquire("bytes", 1, limit));
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), store.tryAcquire("bytes", 1000, limit),
+                "a large request waits for the bucket to be full again");
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(0, store.tryAcquire("bytes", 1000, limit));
+    }
+
+    @Test
+    public void testReserveAlwaysTakesAndReportsTheWait() {
+        RateLimit limit = new RateLimit(1000, 100);
+
+        assertEquals(0, store.reserve("bytes", 100, limit));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), store.reserve("bytes", 100, limit));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(200), store.reserve("bytes", 100, limit));
+    }
+
+    @Test
+    public void testFullBucketsAreEvicted() {
+        RateLimit limit = new RateLimit(10, 5);
+        store.tryAcquire("a", 1, limit);
+        store.tryAcquire("b", 5, limit);
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        store.evictFull();
+        assertEquals(1, store.size());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(400));
+        store.evictFull();
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testConcurrentTakersNeverExceedTheBurst() throws Exception {
+        RateLimit limit = new RateLimit(1, 1000);
+        AtomicInteger granted = new AtomicInteger();
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 5000; i++) {
+            threads.execute(() -> {
+                if (store.tryAcquire("shared", 1, limit) == 0) {
+                    granted.incrementAndGet();
+                }
+            });
+        }
+        threads.shutdown();
+        assertTrue(threads.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(1000, granted.get());
+    }
+}
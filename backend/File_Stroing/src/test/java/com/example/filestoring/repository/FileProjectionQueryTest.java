@@ -0,0 +1,155 @@
+package com.example.filestoring.repository;
+
+import com.example.filestoring.dto.FileDetail;
+import com.example.filestoring.dto.FileSummary;
+import com.example.filestoring.model.FileEntity;
+import com.example.filestoring.model.User;
+import com.example.filestoring.util.IdGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The list and detail endpoints return these projections as they are, so the JSON checked here is the response body
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+public class FileProjectionQueryTest {
+
+    private static final Set<String> SUMMARY_FIELDS = Set.of(
+            "id", "title", "filePath", "fileUrl", "contentType", "fileSize", "createdDate");
+
+    private static final Set<String> OWNER_FIELDS = Set.of("id", "firstName", "lastName");
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private Statistics statistics;
+
+    private Long ownerId;
+
+    private Long olderId;
+
+    private Long newerId;
+
+    private Long otherId;
+
+    @BeforeEach
+    public void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        User owner = userRepository.save(new User(null, "Ada", "Lovelace", "ada@example.com", "secret", "F"));
+        User other = userRepository.save(new User(null, "Alan", "Turing", "alan@example.com", "secret", "M"));
+        ownerId = owner.getId();
+        olderId = saveFile(owner, "Older");
+        newerId = saveFile(owner, "Newer");
+        otherId = saveFile(other, "Theirs");
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+    }
+
+    @Test
+    public void testListWithoutOwnerSelectsFileColumnsOnly() {
+        List<FileSummary> files = fileRepository.findSummaries();
+
+        assertEquals(List.of(otherId, newerId, olderId), ids(files));
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        for (FileSummary file : files) {
+            assertNull(file.user());
+            // No owner key at all, and never the description
+            assertEquals(SUMMARY_FIELDS, fieldNames(objectMapper.valueToTree(file)));
+        }
+    }
+
+    @Test
+    public void testListWithOwnerAddsOnlyThePublicOwnerFields() {
+        List<FileSummary> files = fileRepository.findSummariesWithOwner();
+
+        assertEquals(List.of(otherId, newerId, olderId), ids(files));
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+
+        JsonNode newer = objectMapper.valueToTree(files.get(1));
+        Set<String> expected = new TreeSet<>(SUMMARY_FIELDS);
+        expected.add("user");
+        assertEquals(expected, fieldNames(newer));
+        assertEquals(OWNER_FIELDS, fieldNames(newer.get("user")));
+        assertEquals(ownerId, newer.get("user").get("id").asLong());
+        assertEquals("Ada", newer.get("user").get("firstName").asText());
+        assertEquals("Turing", objectMapper.valueToTree(files.get(0)).get("user").get("lastName").asText());
+    }
+
+    @Test
+    public void testUserListsHoldOnlyThatUsersFiles() {
+        List<FileSummary> plain = fileRepository.findSummariesByUserId(ownerId);
+        List<FileSummary> withOwner = fileRepository.findSummariesWithOwnerByUserId(ownerId);
+
+        assertEquals(List.of(newerId, olderId), ids(plain));
+        assertEquals(List.of(newerId, olderId), ids(withOwner));
+        assertTrue(plain.stream().allMatch(file -> file.user() == null));
+        assertTrue(withOwner.stream().allMatch(file -> ownerId.equals(file.user().id())));
+    }
+
+    @Test
+    public void testDetailCarriesDescriptionAndOwnerButNoCredentials() {
+        FileDetail detail = fileRepository.findDetailById(otherId).orElseThrow();
+
+        assertEquals("About Theirs", detail.description());
+        assertEquals("Alan", detail.user().firstName());
+        assertEquals(0, statistics.getEntityLoadCount());
+        JsonNode json = objectMapper.valueToTree(detail);
+        assertEquals("About Theirs", json.get("description").asText());
+        assertEquals(OWNER_FIELDS, fieldNames(json.get("user")));
+        assertTrue(fileRepository.findDetailById(-1L).isEmpty());
+    }
+
+    private Long saveFile(User owner, String title) {
+        FileEntity file = new FileEntity(title, "About " + title, "path-" + IdGenerator.nextId(), "url", owner);
+        file.setContentType("application/pdf");
+        file.setFileSize(8L);
+        return fileRepository.save(file).getId();
+    }
+
+    private static List<Long> ids(List<FileSummary> files) {
+        return files.stream().map(FileSummary::id).toList();
+    }
+
+    private static Set<String> fieldNames(JsonNode node) {
+        Set<String> names = new TreeSet<>();
+        for (Iterator<String> it = node.fieldNames(); it.hasNext(); ) {
+            names.add(it.next());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.filestoring.repository;
+
+import com.example.filestoring.model.FileEntity;
+import com.example.filestoring.model.User;
+import com.example.filestoring.util.IdGenerator;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Counts the statements an upload and a registration send, before (merge) and after (persist)
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+public class NewEntityInsertTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    private Long ownerId;
+
+    @BeforeEach
+    public void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        ownerId = userRepository.save(newUser("owner@example.com")).getId();
+        flushAndClear();
+        statistics.clear();
+    }
+
+    @Test
+    public void testRegistrationIsASingleInsert() {
+        // What save() used to do with an assigned ID
+        entityManager.merge(newUser("before@example.com"));
+        flushAndClear();
+        assertEquals(2, statistics.getPrepareStatementCount(), "merge() selects before inserting");
+
+        statistics.clear();
+        userRepository.save(newUser("after@example.com"));
+        flushAndClear();
+        assertEquals(1, statistics.getPrepareStatementCount(), "save() should only insert");
+        assertEquals(1, statistics.getEntityInsertCount());
+    }
+
+    @Test
+    public void testUploadIsASingleInsert() {
+        // Before: load the owner, then merge the file
+        User owner = userRepository.findById(ownerId).orElseThrow();
+        entityManager.merge(newFile(owner));
+        flushAndClear();
+        assertEquals(3, statistics.getPrepareStatementCount(), "owner SELECT, merge SELECT and INSERT");
+
+        statistics.clear();
+        FileEntity saved = fileRepository.save(newFile(userRepository.getReferenceById(ownerId)));
+        flushAndClear();
+        assertEquals(1, statistics.getPrepareStatementCount(), "reference plus persist should only insert");
+        assertEquals(0, statistics.getEntityLoadCount(), "the owner should not be loaded");
+        assertTrue(fileRepository.findDetailById(saved.getId()).isPresent());
+    }
+
+    @Test
+    public void testLoadedEntitiesAreUpdated() {
+        User user = userRepository.findById(ownerId).orElseThrow();
+        assertFalse(user.isNew());
+        user.setFirstName("Renamed");
+        userRepository.save(user);
+        flushAndClear();
+
+        assertEquals("Renamed", userRepository.findById(ownerId).orElseThrow().getFirstName());
+        assertEquals(0, statistics.getEntityInsertCount());
+    }
+
+    @Test
+    public void testBulkInsertsAreBatched() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            users.add(newUser("bulk" + i + "@example.com"));
+        }
+        userRepository.saveAll(users);
+        flushAndClear();
+
+        assertEquals(120, statistics.getEntityInsertCount());
+        // Batches of 50: three executions of one prepared INSERT instead of 120 round trips
+        assertTrue(statistics.getPrepareStatementCount() <= 3,
+                "Expected batched inserts, got " + statistics.getPrepareStatementCount() + " statements");
+    }
+
+    private void flushAndClear() {
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private static User newUser(String email) {
+        return new User(IdGenerator.nextId(), "Ada", "Lovelace", email, "secret", "F");
+    }
+
+    private static FileEntity newFile(User owner) {
+        FileEntity file = new FileEntity("Report", "Quarterly numbers", "report.pdf", "/files/view/report.pdf", owner);
+        file.setId(IdGenerator.nextId());
+        return file;
+    }
+}
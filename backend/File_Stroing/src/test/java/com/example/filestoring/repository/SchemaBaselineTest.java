@@ -0,0 +1,118 @@
+package com.example.filestoring.repository;
+
+import com.example.filestoring.model.FileEntity;
+import com.example.filestoring.model.ProcessingStatus;
+import com.example.filestoring.model.User;
+import com.example.filestoring.model.UserUsage;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationInfo;
+import org.flywaydb.core.api.MigrationState;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// A database from before migrations existed: the tables ddl-auto=update made from the original entities, with data.
+// Flyway baselines it at V1 and must bring it to the schema the entities map today
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:baseline;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false",
+        "spring.flyway.enabled=true",
+        "spring.flyway.baseline-on-migrate=true",
+        "spring.flyway.baseline-version=1",
+        "spring.jpa.hibernate.ddl-auto=none"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public class SchemaBaselineTest {
+
+    private static final String[] PRE_MIGRATION_SCHEMA = {
+            "create table users (id bigint not null, email varchar(255), first_name varchar(255), "
+                    + "gender varchar(255), last_name varchar(255), password varchar(255), primary key (id))",
+            "create table files (created_date datetime(6) not null, id bigint not null, user_id bigint not null, "
+                    + "description longtext, file_path varchar(255), file_url varchar(255), title varchar(255), "
+                    + "primary key (id))",
+            "alter table files add constraint FKdgr5hx49828s5vhjo1s8q3wdp foreign key (user_id) references users (id)",
+            "insert into users (id, email, first_name, last_name, password, gender) "
+                    + "values (12345678, 'old@example.com', 'Old', 'User', 'secret', 'F')",
+            "insert into files (id, title, description, file_path, file_url, created_date, user_id) "
+                    + "values (87654321, 'Old file', 'Uploaded long ago', 'old.pdf', '/files/view/old.pdf', "
+                    + "current_timestamp, 12345678)"
+    };
+
+    @TestConfiguration
+    static class PreMigrationDatabase {
+
+        @Bean
+        public FlywayMigrationStrategy createPreMigrationSchemaFirst() {
+            return flyway -> {
+                JdbcTemplate jdbc = new JdbcTemplate(flyway.getConfiguration().getDataSource());
+                Arrays.stream(PRE_MIGRATION_SCHEMA).forEach(jdbc::execute);
+                flyway.migrate();
+            };
+        }
+    }
+
+    @Autowired
+    private Flyway flyway;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private UserUsageRepository userUsageRepository;
+
+    @Test
+    public void testBaselinedDatabaseGetsEveryLaterMigration() {
+        MigrationInfo[] applied = flyway.info().applied();
+        assertEquals(MigrationState.BASELINE, applied[0].getState());
+        assertEquals("1", applied[0].getVersion().getVersion());
+
+        // V1 itself is skipped; everything after it ran
+        List<MigrationInfo> later = Arrays.stream(flyway.info().all())
+                .filter(info -> info.getVersion().isNewerThan("1"))
+                .toList();
+        assertFalse(later.isEmpty());
+        assertTrue(later.stream().allMatch(info -> info.getState() == MigrationState.SUCCESS));
+        assertEquals(later.size() + 1, applied.length);
+    }
+
+    @Test
+    public void testExistingRowsWorkWithTheMigratedSchema() {
+        FileEntity old = fileRepository.findById(87654321L).orElseThrow();
+        assertNull(old.getStorageKey());
+        assertNull(old.getFileSize());
+        assertEquals(ProcessingStatus.READY, fileRepository.findDetailById(87654321L).orElseThrow().processingStatus());
+        assertEquals(1, fileRepository.findSummariesWithOwnerByUserId(12345678L).size());
+
+        UserUsage usage = userUsageRepository.findForUpdate(12345678L).orElseThrow();
+        assertEquals(0L, usage.getBytesUsed());
+        assertEquals(1L, usage.getFileCount());
+
+        // New rows use every column this series added
+        User user = userRepository.findByEmail("old@example.com");
+        FileEntity file = new FileEntity("New file", "", "new.txt", "/files/view/new.txt", user);
+        file.setStorageKey("blob-key");
+        file.setContentHash("ab".repeat(32));
+        file.setFileSize(42L);
+        file.setContentType("text/plain");
+        Long fileId = fileRepository.saveAndFlush(file).getId();
+        assertEquals("text/plain", fileRepository.findDetailById(fileId).orElseThrow().contentType());
+        assertEquals(2, fileRepository.findSummariesByUserId(user.getId()).size());
+    }
+}
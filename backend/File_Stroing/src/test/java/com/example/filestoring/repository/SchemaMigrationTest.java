@@ -0,0 +1,96 @@
+package com.example.filestoring.repository;
+
+import com.example.filestoring.model.FileEntity;
+import com.example.filestoring.model.JobStatus;
+import com.example.filestoring.model.ProcessingJob;
+import com.example.filestoring.model.ProcessingStatus;
+import com.example.filestoring.model.User;
+import com.example.filestoring.model.UserUsage;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.Date;
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Applies the Flyway migrations and round-trips the entities through the result. Hibernate's validate is not used
+// here: H2 reports MySQL's longtext as VARCHAR, which MySQL itself does not
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:migrations;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false",
+        "spring.flyway.enabled=true",
+        "spring.jpa.hibernate.ddl-auto=none"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+public class SchemaMigrationTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private ProcessingJobRepository processingJobRepository;
+
+    @Autowired
+    private UserUsageRepository userUsageRepository;
+
+    @Test
+    public void testMigratedSchemaMatchesEntities() {
+        User user = userRepository.saveAndFlush(new User(null, "Ada", "Lovelace", "ada@example.com", "secret", "F"));
+        FileEntity file = new FileEntity("Notes", "On the analytical engine", "notes.txt", "/files/view/notes.txt", user);
+        file.setStorageKey("blob-key");
+        file.setContentHash("ab".repeat(32));
+        file.setFileSize(42L);
+        file.setContentType("text/plain");
+        Long fileId = fileRepository.saveAndFlush(file).getId();
+
+        assertEquals(user.getId(), userRepository.findByEmail("ada@example.com").getId());
+        assertEquals("On the analytical engine", fileRepository.findDetailById(fileId).orElseThrow().description());
+        assertEquals(1, fileRepository.findSummariesWithOwnerByUserId(user.getId()).size());
+
+        processingJobRepository.saveAndFlush(new ProcessingJob(fileId));
+        assertEquals(1, processingJobRepository.findDueForUpdate(EnumSet.of(JobStatus.QUEUED), new Date(),
+                PageRequest.of(0, 10)).size());
+        assertEquals(ProcessingStatus.READY, fileRepository.findDetailById(fileId).orElseThrow().processingStatus());
+    }
+
+    @Test
+    public void testUsageChargesStopAtTheQuota() {
+        Long userId = userRepository.saveAndFlush(new User(null, "Ada", "Lovelace", "ada@example.com", "secret", "F"))
+                .getId();
+        userUsageRepository.insertEmpty(userId);
+        userUsageRepository.updateQuota(userId, 100L);
+
+        assertEquals(1, userUsageRepository.charge(userId, 60, 1, Long.MAX_VALUE));
+        assertEquals(0, userUsageRepository.charge(userId, 60, 1, Long.MAX_VALUE));
+        assertEquals(1, userUsageRepository.discharge(userId, 80));
+        assertEquals(1, userUsageRepository.charge(userId, 100, 1, Long.MAX_VALUE));
+
+        // 0 lifts the limit, including a default one
+        userUsageRepository.updateQuota(userId, 0L);
+        assertEquals(1, userUsageRepository.charge(userId, 1000, 1, 10));
+        UserUsage usage = userUsageRepository.findForUpdate(userId).orElseThrow();
+        assertEquals(1100L, usage.getBytesUsed());
+        assertEquals(2L, usage.getFileCount());
+
+        assertThrows(DataIntegrityViolationException.class, () -> userUsageRepository.insertEmpty(userId + 1));
+    }
+
+    @Test
+    public void testEmailsAreUnique() {
+        userRepository.saveAndFlush(new User(null, "Ada", "Lovelace", "same@example.com", "secret", "F"));
+        assertThrows(DataIntegrityViolationException.class, () -> userRepository.saveAndFlush(
+                new User(null, "Grace", "Hopper", "same@example.com", "secret", "F")));
+    }
+}
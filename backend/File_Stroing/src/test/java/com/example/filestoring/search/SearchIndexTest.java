@@ -0,0 +1,83 @@
+package com.example.filestoring.search;
+
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchIndexTest {
+
+    private SearchIndex index;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        index = new SearchIndex(new ByteBuffersDirectory());
+        index.indexFile(1L, "Quarterly report", "<p>Numbers for the <b>budget</b> review</p>", "Ann Lee");
+        index.indexFile(2L, "Budget 2024", "Spreadsheet", "Bob Stone");
+        index.indexFile(3L, "Holiday photos", "Trip to the lake", "José Budgetson");
+        index.indexUser(10L, "Ann", "Lee", "ann.lee@example.com");
+        index.indexUser(11L, "Bob", "Stone", "bob@example.com");
+        index.refresh();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        index.close();
+    }
+
+    @Test
+    public void testTitleMatchOutranksDescriptionAndPrefixMatches() throws Exception {
+        assertEquals(List.of(2L, 1L, 3L), index.searchFiles("budget", 0, 10));
+    }
+
+    @Test
+    public void testEveryTermMustMatchSomeField() throws Exception {
+        assertEquals(List.of(1L), index.searchFiles("report ann", 0, 10));
+        assertEquals(List.of(), index.searchFiles("report bob", 0, 10));
+    }
+
+    @Test
+    public void testAccentsAndCaseAreFolded() throws Exception {
+        assertEquals(List.of(3L), index.searchFiles("JOSE", 0, 10));
+    }
+
+    @Test
+    public void testUpdatesAndDeletesAreVisibleAfterRefresh() throws Exception {
+        index.indexFile(2L, "Invoices", "Spreadsheet", "Bob Stone");
+        index.refresh();
+        assertEquals(List.of(1L, 3L), index.searchFiles("budget", 0, 10));
+
+        index.deleteFile(1L);
+        index.refresh();
+        assertEquals(List.of(3L), index.searchFiles("budget", 0, 10));
+    }
+
+    @Test
+    public void testPagesAndUserSearch() throws Exception {
+        assertEquals(List.of(1L), index.searchFiles("budget", 1, 1));
+        assertEquals(List.of(10L), index.searchUsers("ann.lee", 0, 10));
+        assertEquals(List.of(11L), index.searchUsers("sto", 0, 10));
+        assertEquals(List.of(), index.searchUsers("   ", 0, 10));
+    }
+
+    @Test
+    public void testOlderGenerationsAreDroppedOnlyOnceRewritten() throws Exception {
+        index.startGeneration();
+        index.indexFile(2L, "Budget 2024", "Spreadsheet", "Bob Stone");
+        index.indexUser(10L, "Ann", "Lee", "ann.lee@example.com");
+        index.refresh();
+        // Not rewritten yet, but still searchable until the old generation is deleted
+        assertEquals(List.of(2L, 1L, 3L), index.searchFiles("budget", 0, 10));
+
+        index.deleteOlderGenerations();
+        index.refresh();
+        assertEquals(List.of(2L), index.searchFiles("budget", 0, 10));
+        assertEquals(List.of(10L), index.searchUsers("lee", 0, 10));
+        assertEquals(List.of(), index.searchUsers("bob", 0, 10));
+        assertEquals(2, index.numDocs());
+    }
+}
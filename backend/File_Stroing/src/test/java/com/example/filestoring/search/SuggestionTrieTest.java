@@ -0,0 +1,95 @@
+package com.example.filestoring.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SuggestionTrieTest {
+
+    @Test
+    public void testMostFrequentPhrasesComeFirst() {
+        SuggestionTrie trie = new SuggestionTrie();
+        trie.add("Report draft");
+        trie.add("Quarterly report");
+        trie.add("Quarterly report");
+        trie.add("Recipes");
+
+        assertEquals(List.of("Quarterly report", "Recipes", "Report draft"), trie.suggest("re", 10));
+        assertEquals(List.of("Quarterly report"), trie.suggest("re", 1));
+        assertEquals(List.of("Quarterly report", "Report draft"), trie.suggest("REPORT", 10));
+        assertEquals(3, trie.size());
+    }
+
+    @Test
+    public void testAccentsAndPunctuationAreIgnored() {
+        SuggestionTrie trie = new SuggestionTrie();
+        trie.add("José Álvarez");
+        trie.add("budget-2024.xlsx");
+
+        assertEquals(List.of("José Álvarez"), trie.suggest("alv", 5));
+        assertEquals(List.of("budget-2024.xlsx"), trie.suggest("2024 x", 5));
+        assertEquals(List.of(), trie.suggest("  ", 5));
+    }
+
+    @Test
+    public void testRemoveDropsPhraseOnlyWhenLastReferenceGoes() {
+        SuggestionTrie trie = new SuggestionTrie();
+        trie.add("Holiday photos");
+        trie.add("Holiday photos");
+        trie.add("Holiday plans");
+
+        trie.remove("Holiday photos");
+        assertEquals(List.of("Holiday photos", "Holiday plans"), trie.suggest("hol", 5));
+
+        trie.remove("Holiday photos");
+        assertEquals(List.of(), trie.suggest("photos", 5));
+        assertEquals(List.of("Holiday plans"), trie.suggest("hol", 5));
+        assertEquals(1, trie.size());
+
+        trie.remove("Holiday plans");
+        assertEquals(List.of(), trie.suggest("h", 5));
+        assertEquals(0, trie.size());
+    }
+
+    @Test
+    public void testMatchesBruteForceAfterRandomEdits() {
+        SuggestionTrie trie = new SuggestionTrie();
+        Map<String, Integer> counts = new HashMap<>();
+        Random random = new Random(3);
+        String[] words = { "alpha", "alpine", "alps", "beta", "bet", "better", "gamma", "gam" };
+        List<String> phrases = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            phrases.add(words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)]);
+        }
+        for (int i = 0; i < 2000; i++) {
+            String phrase = phrases.get(random.nextInt(phrases.size()));
+            if (random.nextInt(3) == 0 && counts.getOrDefault(phrase, 0) > 0) {
+                trie.remove(phrase);
+                counts.merge(phrase, -1, Integer::sum);
+            } else {
+                trie.add(phrase);
+                counts.merge(phrase, 1, Integer::sum);
+            }
+        }
+
+        for (String prefix : new String[] { "a", "alp", "bet", "gam", "beta g" }) {
+            List<String> expected = counts.entrySet().stream()
+                    .filter(e -> e.getValue() > 0)
+                    .filter(e -> (" " + e.getKey()).contains(" " + prefix))
+                    .sorted((a, b) -> a.getValue().equals(b.getValue())
+                            ? a.getKey().compareTo(b.getKey()) : b.getValue() - a.getValue())
+                    .map(Map.Entry::getKey)
+                    .limit(5)
+                    .toList();
+            assertEquals(expected, trie.suggest(prefix, 5), "prefix " + prefix);
+        }
+        assertEquals(counts.values().stream().filter(c -> c > 0).count(), trie.size());
+        assertTrue(trie.estimatedBytes() > 0);
+    }
+}
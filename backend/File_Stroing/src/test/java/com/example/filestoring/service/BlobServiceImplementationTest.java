@@ -0,0 +1,160 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.model.Blob;
+import com.example.filestoring.repository.BlobRepository;
+import com.example.filestoring.storage.InMemoryStorageBackend;
+import com.example.filestoring.storage.StorageBackend;
+import com.example.filestoring.util.IngestResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false"
+})
+@Import({ BlobServiceImplementation.class, BlobServiceImplementationTest.Storage.class })
+// References are counted by statements that commit on their own, as they do between concurrent uploads
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class BlobServiceImplementationTest {
+
+    private static final String HASH = "ab".repeat(32);
+    private static final String PATH = "blobs/ab/ab/" + HASH;
+
+    @TestConfiguration
+    static class Storage {
+
+        @Bean
+        public RacingStorageBackend storageBackend() {
+            return new RacingStorageBackend();
+        }
+    }
+
+    // Runs a competing upload's step in the window between finding no row and inserting the first reference
+    static class RacingStorageBackend extends InMemoryStorageBackend {
+
+        Runnable beforePut;
+
+        RacingStorageBackend() {
+            super(false);
+        }
+
+        @Override
+        public void putFile(String key, Path stagedFile) throws IOException {
+            if (beforePut != null) {
+                Runnable competitor = beforePut;
+                beforePut = null;
+                competitor.run();
+            }
+            super.putFile(key, stagedFile);
+        }
+    }
+
+    @Autowired
+    private BlobService blobService;
+
+    @Autowired
+    private BlobRepository blobRepository;
+
+    @Autowired
+    private RacingStorageBackend storageBackend;
+
+    @MockitoBean
+    private CompressionService compressionService;
+
+    private final IngestResult content = new IngestResult(HASH, 5, "text/plain");
+
+    @BeforeEach
+    public void setUp() {
+        storageBackend.beforePut = null;
+    }
+
+    @AfterEach
+    public void tearDown() {
+        blobRepository.deleteAllInBatch();
+    }
+
+    @Test
+    public void testFirstUploadStoresTheContent() throws Exception {
+        Path staged = stage();
+
+        assertEquals(PATH, blobService.store(staged, content));
+
+        Blob blob = blobRepository.findById(HASH).orElseThrow();
+        assertEquals(1L, blob.getRefCount());
+        assertEquals(PATH, blob.getPath());
+        assertEquals("hello", read(PATH));
+    }
+
+    @Test
+    public void testSameContentAddsAReferenceAndDropsTheCopy() throws Exception {
+        blobService.store(stage(), content);
+        Path duplicate = stage();
+
+        assertEquals(PATH, blobService.store(duplicate, content));
+
+        assertEquals(2L, blobRepository.findById(HASH).orElseThrow().getRefCount());
+        assertFalse(Files.exists(duplicate));
+    }
+
+    @Test
+    public void testLosingTheInsertRaceCountsAReferenceOnTheWinner() throws Exception {
+        // The other upload stores the same content and inserts its row after this one found none
+        storageBackend.beforePut = () -> blobRepository.insertFirstReference(HASH, PATH, 5L, new Date());
+
+        assertEquals(PATH, blobService.store(stage(), content));
+
+        assertEquals(2L, blobRepository.findById(HASH).orElseThrow().getRefCount());
+        assertEquals("hello", read(PATH));
+    }
+
+    @Test
+    public void testLastReleaseDeletesTheContentAndItsVariants() throws Exception {
+        blobService.store(stage(), content);
+        blobService.store(stage(), content);
+
+        blobService.release(HASH);
+        assertEquals(1L, blobRepository.findById(HASH).orElseThrow().getRefCount());
+        assertTrue(storageBackend.exists(PATH));
+        verify(compressionService, never()).deleteVariants(PATH);
+
+        blobService.release(HASH);
+        assertFalse(blobRepository.existsById(HASH));
+        assertFalse(storageBackend.exists(PATH));
+        verify(compressionService).deleteVariants(PATH);
+
+        // Releasing content that is already gone is a no-op
+        blobService.release(HASH);
+    }
+
+    private Path stage() throws Exception {
+        Path staged = storageBackend.createStagingFile();
+        Files.writeString(staged, "hello");
+        return staged;
+    }
+
+    private String read(String key) throws IOException {
+        try (InputStream in = storageBackend.openStream(key)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.config.CacheConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CacheEvictorTest {
+
+    private CacheManager cacheManager;
+
+    private CacheEvictor cacheEvictor;
+
+    @BeforeEach
+    public void setUp() {
+        cacheManager = new ConcurrentMapCacheManager(CacheConfig.USERS, CacheConfig.USERS_BY_EMAIL,
+                CacheConfig.EMAIL_TAKEN, CacheConfig.FILE_DETAILS, CacheConfig.USER_FILES);
+        cacheEvictor = new CacheEvictor(cacheManager);
+
+        put(CacheConfig.USERS, 1L);
+        put(CacheConfig.USERS_BY_EMAIL, "old@example.com");
+        put(CacheConfig.EMAIL_TAKEN, "new@example.com");
+        put(CacheConfig.FILE_DETAILS, 10L);
+        put(CacheConfig.FILE_DETAILS, 11L);
+        put(CacheConfig.USER_FILES, "1:true");
+        put(CacheConfig.USER_FILES, "1:false");
+        put(CacheConfig.USER_FILES, "2:false");
+    }
+
+    @Test
+    public void testFileChangeEvictsItsDetailAndOwnerLists() {
+        cacheEvictor.fileChanged(10L, 1L);
+
+        assertFalse(cached(CacheConfig.FILE_DETAILS, 10L));
+        assertTrue(cached(CacheConfig.FILE_DETAILS, 11L), "Other files stay cached");
+        assertFalse(cached(CacheConfig.USER_FILES, "1:true"));
+        assertFalse(cached(CacheConfig.USER_FILES, "1:false"));
+        assertTrue(cached(CacheConfig.USER_FILES, "2:false"), "Other owners stay cached");
+    }
+
+    @Test
+    public void testEmailChangeEvictsBothAddresses() {
+        cacheEvictor.userChanged(1L, "old@example.com", "new@example.com", false);
+
+        assertFalse(cached(CacheConfig.USERS, 1L));
+        assertFalse(cached(CacheConfig.USERS_BY_EMAIL, "old@example.com"));
+        assertFalse(cached(CacheConfig.EMAIL_TAKEN, "new@example.com"));
+        assertTrue(cached(CacheConfig.FILE_DETAILS, 10L), "Details keep their owner name without a rename");
+    }
+
+    @Test
+    public void testRenameDropsCachedOwnerNames() {
+        cacheEvictor.userChanged(1L, "old@example.com", "old@example.com", true);
+
+        assertFalse(cached(CacheConfig.FILE_DETAILS, 10L));
+        assertFalse(cached(CacheConfig.FILE_DETAILS, 11L));
+        assertFalse(cached(CacheConfig.USER_FILES, "1:true"));
+    }
+
+    @Test
+    public void testImportEvictsEveryUpdatedFile() {
+        cacheEvictor.filesChanged(List.of(10L, 11L), 2L);
+
+        assertFalse(cached(CacheConfig.FILE_DETAILS, 10L));
+        assertFalse(cached(CacheConfig.FILE_DETAILS, 11L));
+        assertFalse(cached(CacheConfig.USER_FILES, "2:false"));
+        assertTrue(cached(CacheConfig.USER_FILES, "1:false"));
+    }
+
+    private void put(String cacheName, Object key) {
+        cacheManager.getCache(cacheName).put(key, "value");
+    }
+
+    private boolean cached(String cacheName, Object key) {
+        return cacheManager.getCache(cacheName).get(key) != null;
+    }
+}
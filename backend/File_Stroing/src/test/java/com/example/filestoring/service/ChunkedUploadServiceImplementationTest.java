@@ -0,0 +1,332 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.model.FileEntity;
+import com.example.filestoring.model.UploadSession;
+import com.example.filestoring.model.UploadStatus;
+import com.example.filestoring.model.User;
+import com.example.filestoring.repository.UploadChunkRepository;
+import com.example.filestoring.repository.UploadSessionRepository;
+import com.example.filestoring.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false",
+        "app.upload.max-file-size=1MB",
+        "app.upload.session-ttl=1ms"
+})
+@Import(ChunkedUploadServiceImplementation.class)
+// Chunks, sessions and state transitions commit on their own, as they do across requests
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ChunkedUploadServiceImplementationTest {
+
+    private static final int CHUNK = 256 * 1024;
+
+    @TempDir
+    static Path partialDir;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("app.upload.partial-dir", () -> partialDir.toString());
+    }
+
+    @Autowired
+    private ChunkedUploadServiceImplementation uploadService;
+
+    @Autowired
+    private UploadSessionRepository uploadSessionRepository;
+
+    @Autowired
+    private UploadChunkRepository uploadChunkRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @MockitoBean
+    private FileService fileService;
+
+    @MockitoBean
+    private UsageService usageService;
+
+    private Long userId;
+    private byte[] content;
+
+    // What the part file held when completion handed it over
+    private final AtomicReference<byte[]> saved = new AtomicReference<>();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        userId = userRepository.save(new User(null, "Ada", "Lovelace", "ada@example.com", "secret", "F")).getId();
+        content = new byte[2 * CHUNK + 1000];
+        new Random(3).nextBytes(content);
+
+        when(usageService.remainingBytes(anyLong())).thenReturn(Long.MAX_VALUE);
+        when(fileService.saveUploadedFile(anyLong(), anyString(), any(), any(), any(), any())).thenAnswer(call -> {
+            saved.set(Files.readAllBytes(call.getArgument(2, Path.class)));
+            FileEntity file = new FileEntity();
+            file.setId(42L);
+            return file;
+        });
+    }
+
+    @AfterEach
+    public void tearDown() {
+        uploadChunkRepository.deleteAllInBatch();
+        uploadSessionRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+
+    @Test
+    public void testOutOfOrderChunksAssembleTheFile() throws Exception {
+        UploadSession session = initiate(content.length);
+        assertEquals(3, session.getChunkCount());
+        assertEquals(content.length, Files.size(partialDir.resolve(session.getId() + ".part")));
+
+        assertEquals(List.of(2), write(session, 2).getReceivedChunks());
+        write(session, 0);
+        assertThrows(Exception.class, () -> uploadService.completeUpload(session.getId()), "chunk 1 is missing");
+        write(session, 1);
+        // A re-sent chunk replaces its own record
+        assertEquals(List.of(0, 1, 2), write(session, 1).getReceivedChunks());
+
+        assertEquals(42L, uploadService.completeUpload(session.getId()).getId());
+        assertArrayEquals(content, saved.get());
+        assertEquals(UploadStatus.COMPLETED, uploadSessionRepository.findStatusById(session.getId()));
+    }
+
+    @Test
+    public void testInitiateValidatesTheRequest() {
+        assertThrows(Exception.class, () -> initiate(0));
+        assertThrows(Exception.class, () -> initiate(2 * 1024 * 1024), "larger than app.upload.max-file-size");
+
+        UploadSession tooSmallChunks = request(content.length);
+        tooSmallChunks.setChunkSize(1024);
+        assertThrows(Exception.class, () -> uploadService.initiateUpload(userId, tooSmallChunks));
+        assertThrows(Exception.class, () -> uploadService.initiateUpload(userId + 1, request(content.length)));
+
+        when(usageService.remainingBytes(userId)).thenReturn(100L);
+        assertThrows(Exception.class, () -> initiate(content.length), "over the quota");
+    }
+
+    @Test
+    public void testWrongSizedChunksAreRejected() throws Exception {
+        UploadSession session = initiate(content.length);
+
+        Exception oversize = assertThrows(Exception.class, () -> uploadService.writeChunk(session.getId(), 2,
+                new ByteArrayInputStream(new byte[1001])));
+        assertTrue(oversize.getMessage().contains("larger"));
+        Exception undersize = assertThrows(Exception.class, () -> uploadService.writeChunk(session.getId(), 0,
+                new ByteArrayInputStream(new byte[CHUNK - 1])));
+        assertTrue(undersize.getMessage().contains("expected"));
+        assertThrows(Exception.class, () -> uploadService.writeChunk(session.getId(), 3,
+                new ByteArrayInputStream(new byte[0])), "index out of range");
+
+        assertEquals(0, uploadChunkRepository.countBySessionId(session.getId()));
+    }
+
+    @Test
+    public void testCompletingTwiceReturnsTheSameFileAndLateChunksAreRejected() throws Exception {
+        UploadSession session = writeAll(initiate(content.length));
+
+        assertEquals(42L, uploadService.completeUpload(session.getId()).getId());
+        when(fileService.getFileById(42L)).thenReturn(new FileEntity());
+        uploadService.completeUpload(session.getId());
+        verify(fileService, times(1)).saveUploadedFile(anyLong(), anyString(), any(), any(), any(), any());
+        verify(fileService).getFileById(42L);
+
+        Exception late = assertThrows(Exception.class, () -> write(session, 0));
+        assertEquals("Upload is no longer accepting chunks", late.getMessage());
+    }
+
+    @Test
+    public void testCompletionWaitsForAChunkStillBeingWritten() throws Exception {
+        UploadSession session = writeAll(initiate(content.length));
+
+        // A retried PUT of chunk 0 whose last bytes are slow to arrive, carrying different content
+        byte[] resent = Arrays.copyOf(content, CHUNK);
+        resent[0] ^= 1;
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        InputStream slow = new InputStream() {
+            private int position;
+
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (position == CHUNK / 2) {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException ex) {
+                        throw new IOException(ex);
+                    }
+                }
+                if (position == CHUNK) {
+                    return -1;
+                }
+                int n = Math.min(len, (position < CHUNK / 2 ? CHUNK / 2 : CHUNK) - position);
+                System.arraycopy(resent, position, b, off, n);
+                position += n;
+                return n;
+            }
+        };
+        CompletableFuture<UploadSession> writer = CompletableFuture.supplyAsync(() -> {
+            try {
+                return uploadService.writeChunk(session.getId(), 0, slow);
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        CompletableFuture<FileEntity> completion = CompletableFuture.supplyAsync(() -> {
+            try {
+                return uploadService.completeUpload(session.getId());
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        assertThrows(TimeoutException.class, () -> completion.get(500, TimeUnit.MILLISECONDS));
+        assertNull(saved.get(), "the part file is not hashed while a chunk is being written");
+
+        release.countDown();
+        writer.get(10, TimeUnit.SECONDS);
+        completion.get(10, TimeUnit.SECONDS);
+        assertArrayEquals(resent, Arrays.copyOf(saved.get(), CHUNK));
+    }
+
+    @Test
+    public void testExpiredSessionsAreRemoved() throws Exception {
+        UploadSession session = write(initiate(content.length), 0);
+        Thread.sleep(10);
+
+        uploadService.removeExpiredUploads();
+
+        assertFalse(uploadSessionRepository.existsById(session.getId()));
+        assertEquals(0, uploadChunkRepository.countBySessionId(session.getId()));
+        assertFalse(Files.exists(partialDir.resolve(session.getId() + ".part")));
+        assertThrows(Exception.class, () -> write(session, 1));
+    }
+
+    @Test
+    public void testExpiryFollowsTheLastChunkNotTheStart() throws Exception {
+        UploadSession session = initiate(content.length);
+        Thread.sleep(10);
+        Date started = uploadSessionRepository.findById(session.getId()).orElseThrow().getLastActivityDate();
+        write(session, 0);
+        Date lastChunk = uploadSessionRepository.findById(session.getId()).orElseThrow().getLastActivityDate();
+        assertTrue(lastChunk.after(started));
+
+        // Started long ago, but a chunk arrived within the TTL
+        uploadSessionRepository.touch(session.getId(), new Date(System.currentTimeMillis() + 60_000));
+        uploadService.removeExpiredUploads();
+        assertTrue(uploadSessionRepository.existsById(session.getId()));
+
+        uploadSessionRepository.touch(session.getId(), started);
+        uploadService.removeExpiredUploads();
+        assertFalse(uploadSessionRepository.existsById(session.getId()));
+    }
+
+    @Test
+    public void testSessionBeingCompletedIsNotExpired() throws Exception {
+        UploadSession session = writeAll(initiate(content.length));
+        Thread.sleep(10);
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(call -> {
+            saving.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            saved.set(Files.readAllBytes(call.getArgument(2, Path.class)));
+            FileEntity file = new FileEntity();
+            file.setId(42L);
+            return file;
+        }).when(fileService).saveUploadedFile(anyLong(), anyString(), any(), any(), any(), any());
+        CompletableFuture<FileEntity> completion = CompletableFuture.supplyAsync(() -> {
+            try {
+                return uploadService.completeUpload(session.getId());
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        assertTrue(saving.await(10, TimeUnit.SECONDS));
+
+        // Past the TTL and COMPLETING, but its completion is still running
+        uploadService.removeExpiredUploads();
+        assertEquals(UploadStatus.COMPLETING, uploadSessionRepository.findStatusById(session.getId()));
+        assertTrue(Files.exists(partialDir.resolve(session.getId() + ".part")));
+        Exception abort = assertThrows(Exception.class, () -> uploadService.abortUpload(session.getId()));
+        assertEquals("Upload is being completed", abort.getMessage());
+
+        release.countDown();
+        assertEquals(42L, completion.get(10, TimeUnit.SECONDS).getId());
+        assertArrayEquals(content, saved.get());
+        assertEquals(UploadStatus.COMPLETED, uploadSessionRepository.findStatusById(session.getId()));
+    }
+
+    private UploadSession initiate(long totalSize) throws Exception {
+        return uploadService.initiateUpload(userId, request(totalSize));
+    }
+
+    private UploadSession request(long totalSize) {
+        UploadSession request = new UploadSession();
+        request.setFileName("video.bin");
+        request.setTitle("Video");
+        request.setTotalSize(totalSize);
+        request.setChunkSize(CHUNK);
+        return request;
+    }
+
+    private UploadSession write(UploadSession session, int index) throws Exception {
+        int from = index * CHUNK;
+        int to = Math.min(content.length, from + CHUNK);
+        return uploadService.writeChunk(session.getId(), index,
+                new ByteArrayInputStream(Arrays.copyOfRange(content, from, to)));
+    }
+
+    private UploadSession writeAll(UploadSession session) throws Exception {
+        for (int i = 0; i < session.getChunkCount(); i++) {
+            write(session, i);
+        }
+        return session;
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.model.FileEntity;
+import com.example.filestoring.storage.InMemoryStorageBackend;
+import com.example.filestoring.storage.StorageBackend;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = {
+        CompressionServiceImplementation.class,
+        FileDeliveryServiceImplementation.class,
+        CompressionServiceImplementationTest.Beans.class
+}, properties = {
+        "app.compression.min-size=100B",
+        "app.compression.max-concurrent=1"
+})
+public class CompressionServiceImplementationTest {
+
+    private static final String BLOB = "blobs/ab/cd/abcd";
+    private static final String ETAG = "\"abcd\"";
+    private static final String CSV = "text/csv";
+
+    @Autowired
+    private CompressionServiceImplementation compressionService;
+
+    @Autowired
+    private StorageBackend storage;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private String text;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        StringBuilder rows = new StringBuilder("id,name,amount\n");
+        for (int i = 0; i < 500; i++) {
+            rows.append(i).append(",customer-").append(i % 17).append(',').append(i * 3).append('\n');
+        }
+        text = rows.toString();
+        storage.write(BLOB, new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+        compressionService.deleteVariants(BLOB);
+    }
+
+    @Test
+    public void testCompressesOnTheFlyUntilAVariantExists() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertTrue(compressionService.sendFile(BLOB, BLOB, ETAG, CSV, null, gzipRequest(), response));
+
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.getHeader("Vary"));
+        assertEquals("W/\"abcd-gzip\"", response.getHeader("ETag"));
+        assertNull(response.getHeader("Content-Length"), "the compressed length is not known up front");
+        assertEquals(text, gunzip(response.getContentAsByteArray()));
+    }
+
+    @Test
+    public void testServesTheStoredVariantWithRanges() throws Exception {
+        compressionService.prepare(blobFile(CSV));
+        assertTrue(storage.exists(BLOB + ".gz"));
+        long variantSize = storage.size(BLOB + ".gz");
+        assertTrue(variantSize < text.length() / 3, "CSV compresses well");
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertTrue(compressionService.sendFile(BLOB, BLOB, ETAG, CSV, null, gzipRequest(), response));
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals("\"abcd-gzip\"", response.getHeader("ETag"));
+        assertEquals(variantSize, response.getContentLengthLong());
+        assertEquals(text, gunzip(response.getContentAsByteArray()));
+
+        // Ranges apply to the stored compressed bytes, which never change
+        MockHttpServletRequest rangeRequest = gzipRequest();
+        rangeRequest.addHeader("Range", "bytes=0-9");
+        MockHttpServletResponse partial = new MockHttpServletResponse();
+        assertTrue(compressionService.sendFile(BLOB, BLOB, ETAG, CSV, null, rangeRequest, partial));
+        assertEquals(206, partial.getStatus());
+        assertEquals(10, partial.getContentAsByteArray().length);
+    }
+
+    @Test
+    public void testLeavesOtherResponsesToTheCaller() throws Exception {
+        MockHttpServletResponse noGzip = new MockHttpServletResponse();
+        assertFalse(compressionService.sendFile(BLOB, BLOB, ETAG, CSV, null, new MockHttpServletRequest("GET", "/"),
+                noGzip));
+        assertEquals("Accept-Encoding", noGzip.getHeader("Vary"), "caches must still keep the codings apart");
+
+        MockHttpServletResponse image = new MockHttpServletResponse();
+        assertFalse(compressionService.sendFile(BLOB, BLOB, ETAG, "image/png", null, gzipRequest(), image));
+        assertNull(image.getHeader("Vary"));
+
+        compressionService.prepare(blobFile("application/zip"));
+        assertFalse(storage.exists(BLOB + ".gz"), "already-compressed types get no variant");
+
+        MockHttpServletRequest rangeRequest = gzipRequest();
+        rangeRequest.addHeader("Range", "bytes=0-9");
+        assertFalse(compressionService.sendFile(BLOB, BLOB, ETAG, CSV, null, rangeRequest,
+                new MockHttpServletResponse()), "ranges of on-the-fly output are not offered");
+    }
+
+    @Test
+    public void testSendsOriginalWhenOutOfBudget() throws Exception {
+        Semaphore permits = (Semaphore) ReflectionTestUtils.getField(compressionService, "streamPermits");
+        double busyBefore = meterRegistry.get("files.compression.responses").tag("result", "busy").counter().count();
+        permits.acquire();
+        try {
+            ByteBuffer content = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+            assertFalse(compressionService.sendBuffer(BLOB, content, 0L, ETAG, CSV, gzipRequest(),
+                    new MockHttpServletResponse()));
+        } finally {
+            permits.release();
+        }
+        assertEquals(busyBefore + 1,
+                meterRegistry.get("files.compression.responses").tag("result", "busy").counter().count());
+    }
+
+    private FileEntity blobFile(String contentType) {
+        FileEntity file = new FileEntity("Report", "Monthly", "report.csv", "/files/view/report.csv", null);
+        file.setStorageKey(BLOB);
+        file.setContentType(contentType);
+        return file;
+    }
+
+    private MockHttpServletRequest gzipRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader("Accept-Encoding", "gzip, deflate, br");
+        return request;
+    }
+
+    private String gunzip(byte[] compressed) throws Exception {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @TestConfiguration
+    static class Beans {
+
+        @Bean
+        StorageBackend storageBackend() {
+            return new InMemoryStorageBackend(false);
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
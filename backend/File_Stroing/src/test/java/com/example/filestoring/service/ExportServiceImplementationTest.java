@@ -0,0 +1,173 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.model.FileEntity;
+import com.example.filestoring.model.User;
+import com.example.filestoring.repository.FileRepository;
+import com.example.filestoring.repository.UserRepository;
+import com.example.filestoring.util.IdGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import(ExportServiceImplementation.class)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+// The export opens its own transaction on the writing thread, as it does behind an async request
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ExportServiceImplementationTest {
+
+    private static final int FILE_COUNT = 1201;
+
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private Long ownerId;
+
+    private Long otherId;
+
+    @BeforeEach
+    public void setUp() {
+        User owner = userRepository.save(newUser("owner@example.com"));
+        User other = userRepository.save(newUser("other@example.com"));
+        ownerId = owner.getId();
+        otherId = other.getId();
+        List<FileEntity> files = new ArrayList<>();
+        for (int i = 0; i < FILE_COUNT; i++) {
+            files.add(new FileEntity("File " + i, "", "path-" + IdGenerator.nextId(), "", owner));
+        }
+        files.add(new FileEntity("Theirs", "", "path-" + IdGenerator.nextId(), "", other));
+        fileRepository.saveAll(files);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        fileRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+
+    @Test
+    public void testStreamsEveryRowAsOneLineInIdOrder() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        String body = writeOnAnotherThread(exportService.exportFiles(null), new ByteArrayOutputStream());
+
+        assertTrue(body.endsWith("\n"));
+        String[] lines = body.split("\n");
+        assertEquals(FILE_COUNT + 1, lines.length);
+        long previousId = Long.MIN_VALUE;
+        for (String line : lines) {
+            JsonNode row = objectMapper.readTree(line);
+            assertTrue(row.get("id").asLong() > previousId);
+            previousId = row.get("id").asLong();
+            // The owner is written as its ID, so no user row has to be read for it
+            assertTrue(row.get("user").isNumber());
+        }
+        assertEquals(otherId, objectMapper.readTree(lines[FILE_COUNT]).get("user").asLong());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityFetchCount());
+    }
+
+    @Test
+    public void testExportsOnlyTheRequestedOwner() throws Exception {
+        String body = writeOnAnotherThread(exportService.exportFiles(otherId), new ByteArrayOutputStream());
+
+        String[] lines = body.split("\n");
+        assertEquals(1, lines.length);
+        assertEquals("Theirs", objectMapper.readTree(lines[0]).get("title").asText());
+    }
+
+    @Test
+    public void testClearsThePersistenceContextInsideAReadOnlyTransactionEvery500Rows() throws Exception {
+        BatchRecorder recorder = new BatchRecorder();
+
+        writeOnAnotherThread(exportService.exportFiles(ownerId), recorder);
+
+        // Flushed after rows 500 and 1000 while streaming, then once more after the transaction ends
+        assertEquals(List.of(true, true), recorder.readOnly);
+        assertEquals(List.of(0, 0), recorder.managedEntities);
+        assertEquals(FILE_COUNT, recorder.toString(StandardCharsets.UTF_8).split("\n").length);
+    }
+
+    @Test
+    public void testEmptyResultWritesNothing() throws Exception {
+        assertEquals("", writeOnAnotherThread(exportService.exportFiles(-1L), new ByteArrayOutputStream()));
+    }
+
+    private static String writeOnAnotherThread(StreamingResponseBody body, ByteArrayOutputStream out)
+            throws Exception {
+        CompletableFuture.runAsync(() -> {
+            try {
+                body.writeTo(out);
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+        }).get(30, TimeUnit.SECONDS);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static User newUser(String email) {
+        return new User(null, "Ada", "Lovelace", email, "secret", "F");
+    }
+
+    // Records the transaction state and persistence-context size each time the export flushes a batch
+    private class BatchRecorder extends ByteArrayOutputStream {
+
+        private final List<Boolean> readOnly = new ArrayList<>();
+
+        private final List<Integer> managedEntities = new ArrayList<>();
+
+        @Override
+        public void flush() {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                readOnly.add(TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+                managedEntities.add(entityManager.unwrap(Session.class).getStatistics().getEntityCount());
+            }
+        }
+    }
+}
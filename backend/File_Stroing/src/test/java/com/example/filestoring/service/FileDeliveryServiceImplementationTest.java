@@ -0,0 +1,162 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.storage.InMemoryStorageBackend;
+import com.example.filestoring.storage.LocalStorageBackend;
+import com.example.filestoring.util.MappedTransfer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileDeliveryServiceImplementationTest {
+
+    private static final String ETAG = "\"abc123\"";
+
+    @TempDir
+    Path tempDir;
+
+    private FileDeliveryService deliveryService;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        Files.writeString(tempDir.resolve("digits.txt"), "0123456789");
+        deliveryService = new FileDeliveryServiceImplementation(new LocalStorageBackend(tempDir));
+    }
+
+    @Test
+    public void testFullResponseCarriesValidators() throws Exception {
+        MockHttpServletResponse response = send(new MockHttpServletRequest("GET", "/"));
+
+        assertEquals(200, response.getStatus());
+        assertEquals("0123456789", response.getContentAsString());
+        assertEquals(10, response.getContentLengthLong());
+        assertEquals(ETAG, response.getHeader("ETag"));
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+        assertNotNull(response.getHeader("Last-Modified"));
+    }
+
+    @Test
+    public void testMatchingEtagAnswersNotModified() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader("If-None-Match", ETAG);
+
+        MockHttpServletResponse response = send(request);
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    public void testSingleRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader("Range", "bytes=2-5");
+
+        MockHttpServletResponse response = send(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 2-5/10", response.getHeader("Content-Range"));
+        assertEquals("2345", response.getContentAsString());
+    }
+
+    @Test
+    public void testMultipleRanges() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader("Range", "bytes=0-1,-2");
+
+        MockHttpServletResponse response = send(request);
+        String body = response.getContentAsString();
+
+        assertEquals(206, response.getStatus());
+        assertTrue(response.getContentType().startsWith("multipart/byteranges; boundary="));
+        assertTrue(body.contains("Content-Range: bytes 0-1/10\r\n\r\n01"));
+        assertTrue(body.contains("Content-Range: bytes 8-9/10\r\n\r\n89"));
+        assertEquals(response.getContentAsByteArray().length, response.getContentLengthLong());
+    }
+
+    @Test
+    public void testStaleIfRangeSendsWholeFile() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader("Range", "bytes=2-5");
+        request.addHeader("If-Range", "\"stale\"");
+
+        MockHttpServletResponse response = send(request);
+
+        assertEquals(200, response.getStatus());
+        assertEquals("0123456789", response.getContentAsString());
+    }
+
+    @Test
+    public void testUnsatisfiableRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader("Range", "bytes=20-30");
+
+        MockHttpServletResponse response = send(request);
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */10", response.getHeader("Content-Range"));
+    }
+
+    @Test
+    public void testRangeFromOffHeapBackend() throws Exception {
+        InMemoryStorageBackend storage = new InMemoryStorageBackend(true);
+        storage.write("digits.txt", new ByteArrayInputStream("0123456789".getBytes(StandardCharsets.US_ASCII)));
+        deliveryService = new FileDeliveryServiceImplementation(storage);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader("Range", "bytes=3-6");
+
+        MockHttpServletResponse response = send(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("3456", response.getContentAsString());
+    }
+
+    @Test
+    public void testRangesThroughMappedWindows() throws Exception {
+        FileDeliveryServiceImplementation mapped = new FileDeliveryServiceImplementation(new LocalStorageBackend(tempDir));
+        try (MappedTransfer mappedTransfer = new MappedTransfer(3, 1, 4)) {
+            mapped.setMappedTransfer(mappedTransfer);
+            deliveryService = mapped;
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+            request.addHeader("Range", "bytes=1-8,-1");
+
+            String body = send(request).getContentAsString();
+
+            assertTrue(body.contains("Content-Range: bytes 1-8/10\r\n\r\n12345678"));
+            assertTrue(body.contains("Content-Range: bytes 9-9/10\r\n\r\n9"));
+            assertEquals(0, mappedTransfer.mappedWindows());
+        }
+    }
+
+    @Test
+    public void testRangesFromBuffer() throws Exception {
+        ByteBuffer digits = ByteBuffer.allocateDirect(10).put("0123456789".getBytes(StandardCharsets.US_ASCII)).flip();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader("Range", "bytes=0-1,-2");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setCharacterEncoding(StandardCharsets.US_ASCII.name());
+
+        deliveryService.sendBuffer(digits.asReadOnlyBuffer(), 1_000_000L, ETAG, "text/plain", null, request, response);
+        String body = response.getContentAsString();
+
+        assertEquals(206, response.getStatus());
+        assertTrue(body.contains("Content-Range: bytes 0-1/10\r\n\r\n01"));
+        assertTrue(body.contains("Content-Range: bytes 8-9/10\r\n\r\n89"));
+        assertEquals(0, digits.position(), "the shared buffer is not consumed");
+    }
+
+    private MockHttpServletResponse send(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setCharacterEncoding(StandardCharsets.US_ASCII.name());
+        deliveryService.sendFile("digits.txt", ETAG, "text/plain", null, request, response);
+        return response;
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.model.FileEntity;
+import com.example.filestoring.model.JobStatus;
+import com.example.filestoring.model.ProcessingJob;
+import com.example.filestoring.model.ProcessingStatus;
+import com.example.filestoring.model.User;
+import com.example.filestoring.repository.FileRepository;
+import com.example.filestoring.repository.ProcessingJobRepository;
+import com.example.filestoring.repository.UserRepository;
+import com.example.filestoring.service.FileProcessingServiceImplementation.JobClaim;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false",
+        // Jobs are claimed and processed by the test itself
+        "app.processing.enabled=false",
+        "app.processing.max-attempts=2",
+        "app.processing.lease=PT1M",
+        "app.processing.retry-backoff=PT10S"
+})
+@Import({ FileProcessingServiceImplementation.class, FileProcessingServiceImplementationTest.Stages.class })
+// Claims and completions commit on their own, as they do on the worker threads
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class FileProcessingServiceImplementationTest {
+
+    @Autowired
+    private FileProcessingServiceImplementation processingService;
+
+    @Autowired
+    private ProcessingJobRepository jobRepository;
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private RecordingStage stage;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockitoBean
+    private CacheEvictor cacheEvictor;
+
+    private User owner;
+
+    @BeforeEach
+    public void setUp() {
+        jobRepository.deleteAll();
+        fileRepository.deleteAll();
+        userRepository.deleteAll();
+        stage.processed.clear();
+        stage.failing = false;
+        owner = userRepository.save(new User(null, "Ada", "Lovelace", "ada@example.com", "secret", "F"));
+    }
+
+    @Test
+    public void testEnqueueNeedsTheFilesTransaction() {
+        assertThrows(IllegalTransactionStateException.class, () -> processingService.enqueue(1L));
+    }
+
+    @Test
+    public void testCompletedJobMarksFileReady() {
+        double completedBefore = completedJobs();
+        Long fileId = upload();
+        assertEquals(ProcessingStatus.PENDING, fileRepository.findById(fileId).orElseThrow().getProcessingStatus());
+
+        List<JobClaim> claims = processingService.claim(10, new Date());
+        assertEquals(1, claims.size());
+        assertTrue(processingService.claim(10, new Date()).isEmpty(), "a leased job is not handed out twice");
+
+        processingService.process(claims.get(0));
+        assertEquals(List.of(fileId), stage.processed);
+        assertEquals(0, jobRepository.count());
+        assertEquals(ProcessingStatus.READY, fileRepository.findById(fileId).orElseThrow().getProcessingStatus());
+        assertEquals(completedBefore + 1, completedJobs());
+    }
+
+    @Test
+    public void testFailuresBackOffThenFail() {
+        Long fileId = upload();
+        stage.failing = true;
+
+        processingService.process(processingService.claim(10, new Date()).get(0));
+        ProcessingJob job = jobRepository.findAll().get(0);
+        assertEquals(JobStatus.QUEUED, job.getStatus());
+        assertNotNull(job.getLastError());
+        assertTrue(processingService.claim(10, new Date()).isEmpty(), "the retry waits for its backoff");
+
+        List<JobClaim> retry = processingService.claim(10, new Date(System.currentTimeMillis() + 11_000));
+        assertEquals(2, retry.get(0).attempts());
+        processingService.process(retry.get(0));
+
+        assertEquals(JobStatus.FAILED, jobRepository.findAll().get(0).getStatus());
+        assertEquals(ProcessingStatus.FAILED, fileRepository.findById(fileId).orElseThrow().getProcessingStatus());
+        assertTrue(processingService.claim(10, new Date(System.currentTimeMillis() + 3_600_000)).isEmpty());
+    }
+
+    @Test
+    public void testExpiredLeaseIsClaimedAgainAndFencesOutTheOldWorker() {
+        Long fileId = upload();
+        JobClaim first = processingService.claim(10, new Date()).get(0);
+
+        // The first worker stalls past its lease; another takes the job over
+        JobClaim second = processingService.claim(10, new Date(System.currentTimeMillis() + 61_000)).get(0);
+        assertEquals(first.id(), second.id());
+        assertEquals(2, second.attempts());
+
+        processingService.process(first);
+        assertEquals(1, jobRepository.count(), "the stale claim must not complete the job");
+
+        processingService.process(second);
+        assertEquals(0, jobRepository.count());
+        assertEquals(ProcessingStatus.READY, fileRepository.findById(fileId).orElseThrow().getProcessingStatus());
+    }
+
+    @Test
+    public void testJobForDeletedFileIsDropped() {
+        Long fileId = upload();
+        fileRepository.deleteById(fileId);
+
+        processingService.process(processingService.claim(10, new Date()).get(0));
+        assertEquals(0, jobRepository.count());
+        assertTrue(stage.processed.isEmpty());
+    }
+
+    // The registry lives as long as the shared test context
+    private double completedJobs() {
+        return meterRegistry.get("files.processing.jobs").tag("outcome", "completed").counter().count();
+    }
+
+    private Long upload() {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            FileEntity file = new FileEntity("Notes", "On the engine", "notes.txt", "/files/view/notes.txt", owner);
+            file.setProcessingStatus(ProcessingStatus.PENDING);
+            Long id = fileRepository.save(file).getId();
+            processingService.enqueue(id);
+            return id;
+        });
+    }
+
+    static class RecordingStage implements FileProcessingStage {
+
+        final List<Long> processed = new ArrayList<>();
+        volatile boolean failing;
+
+        @Override
+        public String name() {
+            return "recording";
+        }
+
+        @Override
+        public void process(FileEntity file) throws Exception {
+            if (failing) {
+                throw new Exception("Stage failed");
+            }
+            processed.add(file.getId());
+        }
+    }
+
+    @TestConfiguration
+    static class Stages {
+
+        @Bean
+        RecordingStage recordingStage() {
+            return new RecordingStage();
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
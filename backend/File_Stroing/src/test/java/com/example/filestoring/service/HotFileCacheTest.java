@@ -0,0 +1,78 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.storage.InMemoryStorageBackend;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HotFileCacheTest {
+
+    private InMemoryStorageBackend storage;
+
+    private HotFileCache cache;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        storage = new InMemoryStorageBackend(false);
+        storage.write("blobs/icon", new ByteArrayInputStream("icon-bytes".getBytes(StandardCharsets.US_ASCII)));
+        storage.write("blobs/big", new ByteArrayInputStream(new byte[2048]));
+        cache = new HotFileCache(DataSize.ofMegabytes(1), DataSize.ofKilobytes(1), Duration.ofMinutes(10),
+                new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void testFilesAreAdmittedOnTheirSecondView() throws Exception {
+        assertNull(admit("icon.png", "blobs/icon", 10));
+        assertNull(cache.get("icon.png"));
+
+        HotFileCache.Entry entry = admit("icon.png", "blobs/icon", 10);
+        assertNotNull(entry);
+        assertSame(entry, cache.get("icon.png"));
+        assertEquals("icon-bytes", text(entry.content()));
+        assertTrue(entry.content().isDirect());
+        assertTrue(entry.content().isReadOnly());
+    }
+
+    @Test
+    public void testLargeFilesStayOnDisk() throws Exception {
+        assertNull(admit("big.bin", "blobs/big", 2048));
+        assertNull(admit("big.bin", "blobs/big", 2048));
+        assertNull(cache.get("big.bin"));
+    }
+
+    @Test
+    public void testInvalidateDropsTheEntry() throws Exception {
+        admit("icon.png", "blobs/icon", 10);
+        admit("icon.png", "blobs/icon", 10);
+
+        cache.invalidate("icon.png");
+
+        assertNull(cache.get("icon.png"));
+        assertNull(admit("icon.png", "blobs/icon", 10), "a deleted name starts over at the doorkeeper");
+    }
+
+    @Test
+    public void testContentShorterThanExpectedIsNotCached() throws Exception {
+        admit("icon.png", "blobs/icon", 20);
+        assertNull(admit("icon.png", "blobs/icon", 20));
+        assertNull(cache.get("icon.png"));
+    }
+
+    private HotFileCache.Entry admit(String fileName, String storageKey, long size) throws Exception {
+        return cache.admit(fileName, storage, storageKey, storageKey, size, 0L, "\"etag\"", "image/png");
+    }
+
+    private static String text(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.config.StorageConfig;
+import com.example.filestoring.dto.ImportReport;
+import com.example.filestoring.model.Blob;
+import com.example.filestoring.model.FileEntity;
+import com.example.filestoring.model.User;
+import com.example.filestoring.repository.BlobRepository;
+import com.example.filestoring.repository.FileRepository;
+import com.example.filestoring.repository.UserRepository;
+import com.example.filestoring.repository.UserUsageRepository;
+import com.example.filestoring.storage.StorageBackend;
+import com.example.filestoring.util.IdGenerator;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "app.storage.backend=memory"
+})
+@Import({ ImportServiceImplementation.class, UsageServiceImplementation.class, BlobServiceImplementation.class,
+        StorageConfig.class })
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+// The service commits its own chunks, so the test must not wrap them in one rolled-back transaction
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ImportServiceImplementationTest {
+
+    @Autowired
+    private ImportService importService;
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserUsageRepository userUsageRepository;
+
+    @Autowired
+    private UsageService usageService;
+
+    @Autowired
+    private BlobRepository blobRepository;
+
+    @Autowired
+    private StorageBackend storageBackend;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockitoBean
+    private SearchIndexService searchIndexService;
+
+    @MockitoBean
+    private SuggestionService suggestionService;
+
+    @MockitoBean
+    private CacheEvictor cacheEvictor;
+
+    @MockitoBean
+    private CompressionService compressionService;
+
+    private Long ownerId;
+
+    private Long otherId;
+
+    @BeforeEach
+    public void setUp() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        ownerId = userRepository.save(newUser("owner@example.com")).getId();
+        otherId = userRepository.save(newUser("other@example.com")).getId();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        fileRepository.deleteAllInBatch();
+        userUsageRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+        blobRepository.deleteAllInBatch();
+    }
+
+    @Test
+    public void testReportsEachBadItemAndAppliesTheRest() throws Exception {
+        Long mine = saveFile(ownerId, "Old title");
+        Long theirs = saveFile(otherId, "Not yours");
+        String staged = stage(ownerId, "report.pdf");
+
+        ImportReport report = importFiles(
+                "{\"id\":" + mine + ",\"title\":\"New title\"}\n"
+                + "{\"id\":" + theirs + ",\"title\":\"Hijacked\"}\n"
+                + "{\"id\":1,\"title\":\"Missing\"}\n"
+                + "{\"title\":\"Report\",\"storageKey\":\"" + staged + "\"}\n"
+                + "{\"title\":\"Ghost\",\"storageKey\":\"imports/" + ownerId + "/not-there.pdf\"}\n"
+                + "{\"id\":" + mine + ",\"title\":\"  \"}\n");
+
+        assertEquals(1, report.created());
+        assertEquals(1, report.updated());
+        assertEquals(4, report.errors().size());
+        assertEquals(2, report.errors().get(0).item());
+        assertEquals("Unauthorized update attempt", report.errors().get(0).message());
+        assertEquals("File not found", report.errors().get(1).message());
+        assertEquals(5, report.errors().get(2).item());
+        assertEquals(6, report.errors().get(3).item());
+
+        assertEquals("New title", fileRepository.findById(mine).orElseThrow().getTitle());
+        assertEquals("Not yours", fileRepository.findById(theirs).orElseThrow().getTitle());
+        FileEntity registered = findByTitle("Report");
+        assertEquals("application/pdf", registered.getContentType());
+        assertEquals(8L, registered.getFileSize());
+        // Moved into a shared blob; the staged copy is gone once the row committed
+        assertEquals(1L, blobRepository.findById(registered.getContentHash()).orElseThrow().getRefCount());
+        assertTrue(storageBackend.exists(registered.getStorageKey()));
+        assertFalse(storageBackend.exists(staged));
+    }
+
+    @Test
+    public void testRegistrationsStopAtTheQuota() throws Exception {
+        usageService.setQuota(ownerId, 20L);
+        String a = stage(ownerId, "a.pdf");
+        String b = stage(ownerId, "b.pdf");
+        String c = stage(ownerId, "c.pdf");
+
+        ImportReport report = importFiles(
+                "{\"title\":\"A\",\"storageKey\":\"" + a + "\"}\n"
+                + "{\"title\":\"B\",\"storageKey\":\"" + b + "\"}\n"
+                + "{\"title\":\"C\",\"storageKey\":\"" + c + "\"}\n");
+
+        // The chunk as a whole does not fit, so it is redone item by item and the third file is refused
+        assertEquals(2, report.created());
+        assertEquals(1, report.errors().size());
+        assertEquals(3, report.errors().get(0).item());
+        assertEquals("Storage quota exceeded", report.errors().get(0).message());
+        assertEquals(16L, usageService.getUsage(ownerId).bytesUsed());
+        assertEquals(2L, usageService.getUsage(ownerId).fileCount());
+        // Identical content shares one blob; the rolled-back chunk took its references back with it
+        Blob blob = blobRepository.findById(findByTitle("A").getContentHash()).orElseThrow();
+        assertEquals(2L, blob.getRefCount());
+        assertFalse(storageBackend.exists(a));
+        assertTrue(storageBackend.exists(c));
+    }
+
+    @Test
+    public void testOnlyTheUsersOwnStagedContentCanBeImported() throws Exception {
+        String blobKey = "blobs/ab/cd/" + "abcd".repeat(16);
+        String theirs = stage(otherId, "theirs.pdf");
+        String[] keys = {
+                blobKey,
+                blobKey + ".gz",
+                ".staging/upload.part",
+                theirs,
+                "imports/" + ownerId + "/../" + otherId + "/theirs.pdf",
+                "imports/" + ownerId
+        };
+        StringBuilder body = new StringBuilder();
+        for (String key : keys) {
+            if (!key.equals(theirs)) {
+                storageBackend.write(key, new ByteArrayInputStream("%PDF-1.7".getBytes(StandardCharsets.US_ASCII)));
+            }
+            body.append("{\"title\":\"Stolen\",\"storageKey\":\"").append(key).append("\"}\n");
+        }
+
+        ImportReport report = importFiles(body.toString());
+
+        assertEquals(0, report.created());
+        assertEquals(keys.length, report.errors().size());
+        for (ImportReport.ItemError error : report.errors()) {
+            assertEquals("storageKey must name content staged under imports/" + ownerId + "/", error.message());
+        }
+        assertEquals(0, fileRepository.count());
+        assertEquals(0, blobRepository.count());
+        for (String key : keys) {
+            assertTrue(storageBackend.exists(key), key);
+        }
+    }
+
+    @Test
+    public void testMalformedInputKeepsEarlierItems() throws Exception {
+        Long mine = saveFile(ownerId, "Old title");
+
+        ImportReport report = importFiles("[{\"id\":" + mine + ",\"title\":\"Kept\"}, {\"id\": oops}]");
+
+        assertEquals(1, report.updated());
+        assertEquals(1, report.errors().size());
+        assertEquals(2, report.errors().get(0).item());
+        assertEquals("Kept", fileRepository.findById(mine).orElseThrow().getTitle());
+    }
+
+    @Test
+    public void testUnknownUserIsRejected() {
+        assertThrows(Exception.class, () -> importService.importFiles(1L, new ByteArrayInputStream(new byte[0])));
+    }
+
+    @Test
+    public void testUpdatesAreBatched() throws Exception {
+        int count = 5000;
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            body.append("{\"id\":").append(saveFile(ownerId, "File " + i)).append(",\"description\":\"Tagged\"}\n");
+        }
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        ImportReport report = importFiles(body.toString());
+
+        assertEquals(count, report.updated());
+        assertTrue(report.errors().isEmpty());
+        // Per 1000-item chunk: one SELECT for the files plus 20 batches of 50 UPDATEs, not 2000 statements
+        assertTrue(statistics.getPrepareStatementCount() <= 5 * 21 + 1,
+                "Expected batched updates, got " + statistics.getPrepareStatementCount() + " statements");
+    }
+
+    private ImportReport importFiles(String body) throws Exception {
+        return importService.importFiles(ownerId, new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private String stage(Long userId, String name) throws Exception {
+        String key = "imports/" + userId + "/" + name;
+        storageBackend.write(key, new ByteArrayInputStream("%PDF-1.7".getBytes(StandardCharsets.US_ASCII)));
+        return key;
+    }
+
+    private FileEntity findByTitle(String title) {
+        return fileRepository.findAll().stream().filter(file -> title.equals(file.getTitle())).findFirst().orElseThrow();
+    }
+
+    private Long saveFile(Long userId, String title) {
+        FileEntity file = new FileEntity(title, "", "path-" + IdGenerator.nextId(), "", userRepository.getReferenceById(userId));
+        return fileRepository.save(file).getId();
+    }
+
+    private static User newUser(String email) {
+        return new User(null, "Ada", "Lovelace", email, "secret", "F");
+    }
+}
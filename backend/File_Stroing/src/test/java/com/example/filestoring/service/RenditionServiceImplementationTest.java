@@ -0,0 +1,98 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.config.StorageConfig;
+import com.example.filestoring.model.FileEntity;
+import com.example.filestoring.storage.StorageBackend;
+import com.example.filestoring.util.RenditionSize;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = RenditionServiceImplementationTest.Config.class, properties = {
+        "app.storage.backend=memory",
+        "app.renditions.max-size=10MB"
+})
+public class RenditionServiceImplementationTest {
+
+    @TempDir
+    static Path renditionDir;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("app.renditions.dir", () -> renditionDir.toString());
+    }
+
+    @Configuration
+    @Import({ RenditionServiceImplementation.class, StorageConfig.class })
+    static class Config {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private RenditionService renditionService;
+
+    @Autowired
+    private StorageBackend storageBackend;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void testRenditionDeletedAfterTheLookupIsGeneratedAgain() throws Exception {
+        FileEntity file = storeImage("cd".repeat(32));
+        assertTrue(renditionService.prepare(file, RenditionSize.THUMB));
+        // Evicted by a concurrent put after the lookup found it
+        try (Stream<Path> cached = Files.walk(renditionDir.resolve("cd"))) {
+            for (Path path : cached.filter(Files::isRegularFile).toList()) {
+                Files.delete(path);
+            }
+        }
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        renditionService.sendRendition(file, RenditionSize.THUMB, new MockHttpServletRequest("GET", "/"), response);
+
+        assertEquals(200, response.getStatus());
+        assertEquals("image/jpeg", response.getContentType());
+        assertNotNull(ImageIO.read(new ByteArrayInputStream(response.getContentAsByteArray())));
+        assertEquals(2.0, meterRegistry.get("files.renditions").tag("result", "generated").counter().count());
+    }
+
+    private FileEntity storeImage(String hash) throws Exception {
+        BufferedImage image = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", encoded);
+        storageBackend.write("photo.jpg", new ByteArrayInputStream(encoded.toByteArray()));
+
+        FileEntity file = new FileEntity();
+        file.setId(1L);
+        file.setFilePath("photo.jpg");
+        file.setStorageKey("photo.jpg");
+        file.setContentHash(hash);
+        file.setContentType("image/jpeg");
+        return file;
+    }
+}
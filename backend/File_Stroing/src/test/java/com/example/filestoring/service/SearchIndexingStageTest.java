@@ -0,0 +1,26 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.model.FileEntity;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class SearchIndexingStageTest {
+
+    @Test
+    public void testFailedIndexWriteFailsTheStageSoTheJobIsRetried() throws Exception {
+        SearchIndexService searchIndexService = mock(SearchIndexService.class);
+        FileEntity file = new FileEntity();
+        IOException diskFull = new IOException("No space left on device");
+        doThrow(diskFull).when(searchIndexService).indexFileNow(file);
+
+        SearchIndexingStage stage = new SearchIndexingStage(searchIndexService);
+
+        assertSame(diskFull, assertThrows(IOException.class, () -> stage.process(file)));
+        verify(searchIndexService, never()).indexFile(any());
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.filestoring.service;
+
+import com.example.filestoring.config.StorageConfig;
+import com.example.filestoring.dto.UsageReconcileReport;
+import com.example.filestoring.dto.UserUsageSummary;
+import com.example.filestoring.model.FileEntity;
+import com.example.filestoring.model.User;
+import com.example.filestoring.repository.FileRepository;
+import com.example.filestoring.repository.UserRepository;
+import com.example.filestoring.repository.UserUsageRepository;
+import com.example.filestoring.storage.StorageBackend;
+import com.example.filestoring.util.IdGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.show-sql=false",
+        "app.storage.backend=memory",
+        "app.quota.default=1KB",
+        "app.quota.reconcile-threads=2"
+})
+@Import({ UsageServiceImplementation.class, StorageConfig.class })
+// Reconciliation commits each user in its own transaction from worker threads
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class UsageServiceImplementationTest {
+
+    @Autowired
+    private UsageService usageService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private FileRepository fileRepository;
+
+    @Autowired
+    private UserUsageRepository userUsageRepository;
+
+    @Autowired
+    private StorageBackend storageBackend;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Long userId;
+
+    @BeforeEach
+    public void setUp() {
+        userId = userRepository.save(new User(null, "Ada", "Lovelace", "ada@example.com", "secret", "F")).getId();
+        usageService.openAccount(userId);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        fileRepository.deleteAllInBatch();
+        userUsageRepository.deleteAllInBatch();
+        userRepository.deleteAllInBatch();
+    }
+
+    @Test
+    public void testChargesStopAtTheDefaultQuota() throws Exception {
+        assertTrue(charge(1000));
+        assertFalse(charge(25));
+        assertEquals(24, usageService.remainingBytes(userId));
+
+        usageService.setQuota(userId, 0L);
+        assertTrue(charge(10_000));
+        UserUsageSummary usage = usageService.getUsage(userId);
+        assertEquals(11_000, usage.bytesUsed());
+        assertEquals(2, usage.fileCount());
+        assertNull(usage.quotaBytes());
+        assertEquals(Long.MAX_VALUE, usageService.remainingBytes(userId));
+
+        // Without a row of its own a user is charged against the default
+        userUsageRepository.deleteAllInBatch();
+        assertTrue(charge(1024));
+        assertEquals(0, usageService.remainingBytes(userId));
+    }
+
+    @Test
+    public void testReconcileRebuildsTotalsFromStoredContent() throws Exception {
+        Long otherId = userRepository.save(new User(null, "Grace", "Hopper", "grace@example.com", "secret", "F"))
+                .getId();
+        store(userId, "a.txt", 100, 100L);
+        // Stored before sizes were recorded
+        Long unsized = store(userId, "b.txt", 50, null);
+        // Row whose content is gone keeps its recorded size
+        FileEntity ghost = new FileEntity("Ghost", "", "ghost.txt", "", userRepository.getReferenceById(otherId));
+        ghost.setFileSize(7L);
+        fileRepository.save(ghost);
+
+        UsageReconcileReport report = usageService.reconcile();
+
+        assertEquals(2, report.users());
+        assertEquals(3, report.files());
+        assertEquals(157, report.bytes());
+        assertEquals(1, report.missingFiles());
+        assertEquals(2, report.correctedUsers());
+        assertEquals(150, usageService.getUsage(userId).bytesUsed());
+        assertEquals(7, usageService.getUsage(otherId).bytesUsed());
+        assertEquals(1, usageService.getUsage(otherId).fileCount());
+        assertEquals(50L, fileRepository.findById(unsized).orElseThrow().getFileSize());
+        assertNotNull(userUsageRepository.findById(otherId).orElseThrow().getReconciledDate());
+
+        assertEquals(0, usageService.reconcile().correctedUsers());
+    }
+
+    private boolean charge(long bytes) {
+        return new TransactionTemplate(transactionManager).execute(status -> usageService.charge(userId, bytes, 1));
+    }
+
+    private Long store(Long ownerId, String key, int size, Long recordedSize) throws Exception {
+        storageBackend.write(key, new ByteArrayInputStream(new byte[size]));
+        FileEntity file = new FileEntity(key, "", key, "", userRepository.getReferenceById(ownerId));
+        file.setFileSize(recordedSize);
+        return fileRepository.save(file).getId();
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.filestoring.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RenditionCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testLeastRecentlyUsedEntriesAreEvicted() throws Exception {
+        RenditionCache cache = new RenditionCache(tempDir, 300);
+        put(cache, "a", 100);
+        put(cache, "b", 100);
+        put(cache, "c", 100);
+
+        // Reading "a" makes "b" the eldest
+        assertTrue(cache.contains("a"));
+        put(cache, "d", 100);
+
+        assertFalse(cache.contains("b"));
+        assertFalse(Files.exists(tempDir.resolve("b")));
+        assertTrue(cache.contains("a"));
+        assertTrue(cache.contains("d"));
+        assertEquals(300, cache.totalBytes());
+    }
+
+    @Test
+    public void testReopenedCacheKeepsItsFilesAndLimit() throws Exception {
+        RenditionCache cache = new RenditionCache(tempDir, 1000);
+        put(cache, "ab/cd/old", 100);
+        put(cache, "ab/cd/new", 100);
+        Files.setLastModifiedTime(tempDir.resolve("ab/cd/old"), FileTime.fromMillis(1_000));
+        Files.createDirectories(tempDir.resolve(".staging"));
+        Files.write(tempDir.resolve(".staging/leftover"), new byte[500]);
+
+        RenditionCache reopened = new RenditionCache(tempDir, 150);
+        assertEquals(1, reopened.size(), "staging files are not entries; the older file is evicted");
+        assertTrue(reopened.contains("ab/cd/new"));
+        assertFalse(Files.exists(tempDir.resolve("ab/cd/old")));
+    }
+
+    @Test
+    public void testEntryWhoseFileHasGoneIsForgotten() throws Exception {
+        RenditionCache cache = new RenditionCache(tempDir, 1000);
+        put(cache, "kept", 100);
+        put(cache, "gone", 100);
+        Files.delete(tempDir.resolve("gone"));
+
+        assertFalse(cache.forgetIfMissing("kept"));
+        assertTrue(cache.forgetIfMissing("gone"));
+        assertFalse(cache.contains("gone"));
+        assertTrue(cache.contains("kept"));
+        assertEquals(100, cache.totalBytes());
+    }
+
+    private static void put(RenditionCache cache, String key, int size) throws Exception {
+        Path staged = cache.createStagingFile();
+        Files.write(staged, new byte[size]);
+        cache.put(key, staged);
+    }
+}
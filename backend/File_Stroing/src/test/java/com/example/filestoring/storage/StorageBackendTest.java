@@ -0,0 +1,122 @@
+package com.example.filestoring.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StorageBackendTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testLocalBackendRoundTrip() throws Exception {
+        LocalStorageBackend storage = new LocalStorageBackend(tempDir.resolve("root"));
+        assertRoundTrip(storage);
+
+        storage.write("plain", new ByteArrayInputStream(new byte[3]));
+        assertEquals(tempDir.resolve("root").resolve("plain"), storage.localPath("plain").orElseThrow());
+    }
+
+    @Test
+    public void testHeapBackendRoundTrip() throws Exception {
+        assertRoundTrip(new InMemoryStorageBackend(false));
+    }
+
+    @Test
+    public void testOffHeapBackendRoundTrip() throws Exception {
+        assertRoundTrip(new InMemoryStorageBackend(true));
+    }
+
+    @Test
+    public void testLocalBackendRejectsKeysOutsideRoot() {
+        LocalStorageBackend storage = new LocalStorageBackend(tempDir.resolve("root"));
+        assertThrows(Exception.class, () -> storage.write("../escape", new ByteArrayInputStream(new byte[1])));
+    }
+
+    @Test
+    public void testThrottledBackendRoundTripReturnsPermits() throws Exception {
+        ThrottledStorageBackend storage = new ThrottledStorageBackend(new InMemoryStorageBackend(false), 2);
+        assertRoundTrip(storage);
+        assertEquals(2, storage.availablePermits());
+    }
+
+    @Test
+    public void testThrottledBackendCapsConcurrentOperations() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        StorageBackend slow = new InMemoryStorageBackend(false) {
+            @Override
+            public boolean exists(String key) {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                return false;
+            }
+        };
+        ThrottledStorageBackend storage = new ThrottledStorageBackend(slow, 2);
+
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<Boolean>> calls = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                calls.add(executor.submit(() -> storage.exists("key")));
+            }
+            Thread.sleep(200);
+            assertEquals(2, running.get());
+            release.countDown();
+            for (Future<Boolean> call : calls) {
+                assertFalse(call.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(2, maxRunning.get());
+        assertEquals(2, storage.availablePermits());
+    }
+
+    private void assertRoundTrip(StorageBackend storage) throws Exception {
+        byte[] content = "0123456789".getBytes(StandardCharsets.US_ASCII);
+        Path staged = storage.createStagingFile();
+        Files.write(staged, content);
+
+        storage.putFile("blobs/ab/key", staged);
+
+        assertTrue(storage.exists("blobs/ab/key"));
+        assertEquals(10, storage.size("blobs/ab/key"));
+        try (InputStream in = storage.openStream("blobs/ab/key")) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+        try (SeekableByteChannel channel = storage.openChannel("blobs/ab/key")) {
+            ByteBuffer buffer = ByteBuffer.allocate(4);
+            channel.position(6);
+            channel.read(buffer);
+            assertEquals("6789", new String(buffer.array(), StandardCharsets.US_ASCII));
+        }
+
+        storage.delete("blobs/ab/key");
+        assertFalse(storage.exists("blobs/ab/key"));
+    }
+}
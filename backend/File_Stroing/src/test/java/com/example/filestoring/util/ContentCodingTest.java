@@ -0,0 +1,25 @@
+package com.example.filestoring.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContentCodingTest {
+
+    @Test
+    public void testNegotiation() {
+        assertEquals(ContentCoding.GZIP, ContentCoding.negotiate("gzip, deflate, br"));
+        assertEquals(ContentCoding.GZIP, ContentCoding.negotiate("br;q=1.0, GZIP;q=0.5"));
+        assertEquals(ContentCoding.GZIP, ContentCoding.negotiate("*"));
+        assertNull(ContentCoding.negotiate(null));
+        assertNull(ContentCoding.negotiate("identity"));
+        assertNull(ContentCoding.negotiate("br, deflate"));
+        assertNull(ContentCoding.negotiate("gzip;q=0"));
+        assertNull(ContentCoding.negotiate("*, gzip;q=0"), "a named q=0 beats the wildcard");
+    }
+
+    @Test
+    public void testVariantKeySitsNextToTheBlob() {
+        assertEquals("blobs/ab/cd/abcd.gz", ContentCoding.GZIP.variantKey("blobs/ab/cd/abcd"));
+    }
+}
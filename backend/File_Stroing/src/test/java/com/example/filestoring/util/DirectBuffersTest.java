@@ -0,0 +1,67 @@
+package com.example.filestoring.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DirectBuffersTest {
+
+    @Test
+    public void testReleasedBuffersAreLentAgainCleared() {
+        ByteBuffer buffer = DirectBuffers.acquire();
+        assertTrue(buffer.isDirect());
+        buffer.put((byte) 1).flip();
+        DirectBuffers.release(buffer);
+
+        ByteBuffer again = DirectBuffers.acquire();
+        try {
+            assertSame(buffer, again);
+            assertEquals(0, again.position());
+            assertEquals(DirectBuffers.BUFFER_SIZE, again.remaining());
+        } finally {
+            DirectBuffers.release(again);
+        }
+    }
+
+    @Test
+    public void testDirectMemoryIsBoundedHoweverManyThreadsHoldBuffers() throws Exception {
+        int threads = DirectBuffers.MAX_DIRECT * 2;
+        CountDownLatch allHolding = new CountDownLatch(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<ByteBuffer>> held = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                held.add(executor.submit(() -> {
+                    ByteBuffer buffer = DirectBuffers.acquire();
+                    allHolding.countDown();
+                    allHolding.await();
+                    return buffer;
+                }));
+            }
+
+            List<ByteBuffer> buffers = new ArrayList<>();
+            for (Future<ByteBuffer> future : held) {
+                buffers.add(future.get());
+            }
+            long direct = buffers.stream().filter(ByteBuffer::isDirect).count();
+            assertEquals(DirectBuffers.MAX_DIRECT, direct);
+            assertTrue(buffers.stream().allMatch(buffer -> buffer.capacity() == DirectBuffers.BUFFER_SIZE));
+
+            buffers.forEach(DirectBuffers::release);
+            // Heap buffers were not pooled, so the next loan is direct again
+            ByteBuffer next = DirectBuffers.acquire();
+            assertTrue(next.isDirect());
+            DirectBuffers.release(next);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
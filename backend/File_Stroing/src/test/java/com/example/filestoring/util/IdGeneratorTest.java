@@ -1,27 +1,20 @@
 package com.example.filestoring.util;
 
 import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class IdGeneratorTest {
 
-    @Test
-    public void testGenerateEightDigitId() {
-        // Generate 100 IDs and verify they are all 8 digits
-        for (int i = 0; i < 100; i++) {
-            Long id = IdGenerator.generateEightDigitId();
-            
-            // Convert to string to check length
-            String idStr = id.toString();
-            
-            // Verify it's 8 digits
-            assertEquals(8, idStr.length(), "ID should be 8 digits long");
-            
-            // Verify it's a valid ID according to our validator
-            assertTrue(IdGenerator.isValidId(id), "ID should be valid");
-        }
-    }
-    
     @Test
     public void testIsValidId() {
         // Test valid IDs
@@ -32,4 +25,67 @@ public class IdGeneratorTest {
         assertFalse(IdGenerator.isValidId(123456789L), "9-digit ID should be invalid");
         assertFalse(IdGenerator.isValidId(null), "Null ID should be invalid");
     }
+
+    @Test
+    public void testNextIdIsMonotonicAndValid() {
+        long previous = IdGenerator.nextId();
+        // Far more than 128 per millisecond, so the sequence overflows into later milliseconds
+        for (int i = 0; i < 100_000; i++) {
+            long id = IdGenerator.nextId();
+            assertTrue(id > previous, "IDs should strictly increase");
+            previous = id;
+        }
+        assertTrue(IdGenerator.isValidId(previous), "Generated ID should be valid");
+        assertTrue(previous < (1L << 53), "ID should fit in a JavaScript number");
+    }
+
+    @Test
+    public void testNextIdLayout() {
+        long before = System.currentTimeMillis() - IdGenerator.EPOCH;
+        long id = IdGenerator.nextId();
+
+        assertTrue(IdGenerator.timestampOf(id) >= before, "ID should carry the current time");
+        assertEquals(0, IdGenerator.nodeOf(id), "ID should carry the configured node");
+        assertFalse(IdGenerator.isValidId(id + (1L << 53)), "IDs beyond 53 bits should be invalid");
+        assertFalse(IdGenerator.isValidId(-id), "Negative IDs should be invalid");
+    }
+
+    @Test
+    public void testSetNodeIdRejectsOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> IdGenerator.setNodeId(-1));
+        assertThrows(IllegalArgumentException.class, () -> IdGenerator.setNodeId(IdGenerator.MAX_NODE_ID + 1));
+    }
+
+    @Test
+    public void testNextIdIsUniqueAcrossThreads() throws Exception {
+        int threads = 8;
+        int perThread = 50_000;
+        Set<Long> seen = ConcurrentHashMap.newKeySet(threads * perThread);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    long previous = 0;
+                    for (int i = 0; i < perThread; i++) {
+                        long id = IdGenerator.nextId();
+                        // Each thread also sees its own IDs in increasing order
+                        assertTrue(id > previous);
+                        assertTrue(seen.add(id), "Duplicate ID " + id);
+                        previous = id;
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(threads * perThread, seen.size());
+    }
 }
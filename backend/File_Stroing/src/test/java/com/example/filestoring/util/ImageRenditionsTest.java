@@ -0,0 +1,91 @@
+package com.example.filestoring.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageRenditionsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testLargeJpegFitsTheBoxAndKeepsAspectRatio() throws Exception {
+        byte[] source = encode(image(4000, 3000, BufferedImage.TYPE_INT_RGB), "jpeg");
+        Path target = tempDir.resolve("thumb");
+
+        assertEquals(ImageRenditions.JPEG, ImageRenditions.render(new ByteArrayInputStream(source), 256, target));
+
+        BufferedImage thumb = ImageIO.read(target.toFile());
+        assertEquals(256, thumb.getWidth());
+        assertEquals(192, thumb.getHeight());
+        assertTrue(Files.size(target) < source.length / 20, "a thumbnail is a small fraction of the original");
+    }
+
+    @Test
+    public void testTransparentImagesStayPng() throws Exception {
+        byte[] source = encode(image(600, 1200, BufferedImage.TYPE_INT_ARGB), "png");
+        Path target = tempDir.resolve("thumb");
+
+        assertEquals(ImageRenditions.PNG, ImageRenditions.render(new ByteArrayInputStream(source), 256, target));
+
+        BufferedImage thumb = ImageIO.read(target.toFile());
+        assertEquals(128, thumb.getWidth());
+        assertEquals(256, thumb.getHeight());
+        assertTrue(thumb.getColorModel().hasAlpha());
+    }
+
+    @Test
+    public void testSmallImagesAreNotEnlarged() throws Exception {
+        byte[] source = encode(image(100, 50, BufferedImage.TYPE_INT_RGB), "png");
+        Path target = tempDir.resolve("thumb");
+
+        ImageRenditions.render(new ByteArrayInputStream(source), 256, target);
+
+        BufferedImage thumb = ImageIO.read(target.toFile());
+        assertEquals(100, thumb.getWidth());
+        assertEquals(50, thumb.getHeight());
+    }
+
+    @Test
+    public void testNonImagesAreRejected() throws Exception {
+        byte[] text = "not an image at all".getBytes(StandardCharsets.US_ASCII);
+        assertNull(ImageRenditions.render(new ByteArrayInputStream(text), 256, tempDir.resolve("thumb")));
+
+        byte[] truncated = encode(image(800, 600, BufferedImage.TYPE_INT_RGB), "jpeg");
+        byte[] head = Arrays.copyOf(truncated, 200);
+        assertNull(ImageRenditions.render(new ByteArrayInputStream(head), 256, tempDir.resolve("broken")));
+    }
+
+    private static BufferedImage image(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setColor(new Color(30, 120, 200, type == BufferedImage.TYPE_INT_ARGB ? 128 : 255));
+            graphics.fillRect(0, 0, width / 2, height);
+            graphics.setColor(Color.ORANGE);
+            graphics.fillOval(width / 4, height / 4, width / 2, height / 2);
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(ImageIO.write(image, format, out));
+        return out.toByteArray();
+    }
+}
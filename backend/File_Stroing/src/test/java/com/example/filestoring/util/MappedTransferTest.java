@@ -0,0 +1,77 @@
+package com.example.filestoring.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedTransferTest {
+
+    @TempDir
+    Path tempDir;
+
+    private byte[] content;
+    private Path file;
+    private MappedTransfer mappedTransfer;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        content = new byte[100_000];
+        new Random(7).nextBytes(content);
+        file = tempDir.resolve("video.bin");
+        Files.write(file, content);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (mappedTransfer != null) {
+            mappedTransfer.close();
+        }
+    }
+
+    @Test
+    public void testRangeSpanningWindowsWithReadAhead() throws Exception {
+        mappedTransfer = new MappedTransfer(4096, 2, 16);
+
+        assertArrayEquals(Arrays.copyOfRange(content, 1234, 98_765), send(1234, 98_765 - 1234));
+        assertArrayEquals(content, send(0, content.length));
+        assertEquals(0, mappedTransfer.mappedWindows(), "every window is released after the transfer");
+    }
+
+    @Test
+    public void testFallsBackToReadsWhenOutOfWindows() throws Exception {
+        // Read-ahead wants three windows but only one may be mapped at a time
+        mappedTransfer = new MappedTransfer(4096, 2, 1);
+
+        assertArrayEquals(content, send(0, content.length));
+        assertEquals(0, mappedTransfer.mappedWindows());
+    }
+
+    @Test
+    public void testTruncatedFileFailsAndReleasesWindows() throws Exception {
+        mappedTransfer = new MappedTransfer(4096, 1, 16);
+        Files.write(file, Arrays.copyOf(content, 10_000));
+
+        assertThrows(EOFException.class, () -> send(0, content.length));
+        assertEquals(0, mappedTransfer.mappedWindows());
+    }
+
+    private byte[] send(long position, long count) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (FileChannel channel = FileChannel.open(file)) {
+            mappedTransfer.transfer(channel, position, count, Channels.newChannel(out));
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.filestoring.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PageCursorTest {
+
+    @Test
+    public void testRoundTrip() {
+        PageCursor cursor = PageCursor.decode(new PageCursor(1718000000123L, 48151623L).encode());
+
+        assertEquals(1718000000123L, cursor.getSortKey());
+        assertEquals(48151623L, cursor.getId());
+    }
+
+    @Test
+    public void testBlankTokenMeansFirstPage() {
+        assertNull(PageCursor.decode(null));
+        assertNull(PageCursor.decode(""));
+    }
+
+    @Test
+    public void testTamperedTokenIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("not-a-cursor"));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("!!!"));
+    }
+}
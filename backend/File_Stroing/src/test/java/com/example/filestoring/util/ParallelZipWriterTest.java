@@ -0,0 +1,151 @@
+package com.example.filestoring.util;
+
+import com.example.filestoring.storage.LocalStorageBackend;
+import com.example.filestoring.storage.StorageBackend;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelZipWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ExecutorService executor;
+    private StorageBackend storage;
+
+    @BeforeEach
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+        storage = new LocalStorageBackend(tempDir);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testEntriesAreWrittenInOrder() throws Exception {
+        List<ParallelZipWriter.Source> sources = new ArrayList<>();
+        List<byte[]> contents = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 12; i++) {
+            // Mix compressible text with random "media" so both methods are exercised
+            String name = i % 3 == 0 ? "clip_" + i + ".mp4" : "notes_" + i + ".txt";
+            byte[] content;
+            if (name.endsWith(".mp4")) {
+                content = new byte[100_000 + i];
+                random.nextBytes(content);
+            } else {
+                content = ("line " + i + "\n").repeat(20_000 - i * 1000).getBytes(StandardCharsets.UTF_8);
+            }
+            contents.add(content);
+            Files.write(tempDir.resolve(name), content);
+            sources.add(new ParallelZipWriter.Source(name, name));
+        }
+
+        Path archive = writeArchive(new ParallelZipWriter(storage, executor, 3, ZipCompression.AUTO), sources);
+        assertArchiveMatches(archive, sources, contents);
+    }
+
+    @Test
+    public void testFailedWriteLeavesNoTempFiles() throws Exception {
+        List<ParallelZipWriter.Source> sources = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            String name = "notes_" + i + ".txt";
+            Files.write(tempDir.resolve(name), ("line " + i + "\n").repeat(20_000).getBytes(StandardCharsets.UTF_8));
+            sources.add(new ParallelZipWriter.Source(name, name));
+        }
+        Set<Path> before = tempFiles();
+
+        // The client goes away after the first entry while the window is still being compressed
+        OutputStream failing = new OutputStream() {
+            private long written;
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                written += len;
+                if (written > 1000) {
+                    throw new IOException("Broken pipe");
+                }
+            }
+        };
+        assertThrows(IOException.class,
+                () -> new ParallelZipWriter(storage, executor, 8, ZipCompression.AUTO).write(sources, failing));
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        Set<Path> after = tempFiles();
+        after.removeAll(before);
+        assertEquals(Set.of(), after);
+    }
+
+    private static Set<Path> tempFiles() throws IOException {
+        try (Stream<Path> files = Files.list(Path.of(System.getProperty("java.io.tmpdir")))) {
+            return files.filter(file -> file.getFileName().toString().startsWith("zip-export-"))
+                    .collect(Collectors.toCollection(HashSet::new));
+        }
+    }
+
+    @Test
+    public void testZip64RecordsAreReadable() throws Exception {
+        byte[] content = "zip64 content".repeat(500).getBytes(StandardCharsets.UTF_8);
+        storage.write("a.txt", new ByteArrayInputStream(content));
+        storage.write("b.png", new ByteArrayInputStream(content));
+        List<ParallelZipWriter.Source> sources = List.of(
+                new ParallelZipWriter.Source("a.txt", "a.txt"),
+                new ParallelZipWriter.Source("b.png", "b.png"));
+
+        Path archive = writeArchive(new ParallelZipWriter(storage, executor, 2, ZipCompression.AUTO, true), sources);
+        assertArchiveMatches(archive, sources, List.of(content, content));
+    }
+
+    private Path writeArchive(ParallelZipWriter writer, List<ParallelZipWriter.Source> sources) throws Exception {
+        Path archive = tempDir.resolve("out.zip");
+        try (OutputStream out = Files.newOutputStream(archive)) {
+            writer.write(sources, out);
+        }
+        return archive;
+    }
+
+    private void assertArchiveMatches(Path archive, List<ParallelZipWriter.Source> sources, List<byte[]> contents)
+            throws Exception {
+        try (ZipFile zipFile = new ZipFile(archive.toFile())) {
+            List<? extends ZipEntry> entries = zipFile.stream().toList();
+            assertEquals(sources.size(), entries.size());
+            for (int i = 0; i < sources.size(); i++) {
+                ZipEntry entry = entries.get(i);
+                assertEquals(sources.get(i).getEntryName(), entry.getName(), "Entries should keep request order");
+                assertArrayEquals(contents.get(i), zipFile.getInputStream(entry).readAllBytes());
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.filestoring.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamChannelsTest {
+
+    @Test
+    public void testCopiesThroughDirectAndHeapBuffers() throws Exception {
+        byte[] data = new byte[100_000];
+        new Random(7).nextBytes(data);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        ReadableByteChannel source = StreamChannels.readable(new ByteArrayInputStream(data));
+        WritableByteChannel sink = StreamChannels.writable(out);
+        for (ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.allocateDirect(30_000), ByteBuffer.allocate(30_000)}) {
+            buffer.clear();
+            while (buffer.hasRemaining() && source.read(buffer) > 0) {
+                // fill the whole buffer
+            }
+            buffer.flip();
+            assertEquals(buffer.remaining(), sink.write(buffer));
+            assertFalse(buffer.hasRemaining());
+        }
+        ByteBuffer rest = ByteBuffer.allocate(data.length);
+        while (source.read(rest) >= 0) {
+            // drain to the end of the stream
+        }
+        rest.flip();
+        sink.write(rest);
+
+        assertArrayEquals(data, out.toByteArray());
+        assertEquals(-1, source.read(ByteBuffer.allocateDirect(16)));
+    }
+
+    @Test
+    public void testClosedChannelRejectsIo() throws Exception {
+        WritableByteChannel sink = StreamChannels.writable(new ByteArrayOutputStream());
+        sink.close();
+
+        assertFalse(sink.isOpen());
+        assertThrows(ClosedChannelException.class, () -> sink.write(ByteBuffer.allocate(1)));
+    }
+}
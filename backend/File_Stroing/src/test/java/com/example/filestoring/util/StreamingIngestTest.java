@@ -0,0 +1,63 @@
+package com.example.filestoring.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamingIngestTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testIngestMatchesSeparateHashAndCopy() throws Exception {
+        // Spans several buffers and starts with a PNG signature
+        byte[] content = new byte[DirectBuffers.BUFFER_SIZE * 2 + 123];
+        new Random(3).nextBytes(content);
+        System.arraycopy(new byte[] { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' }, 0, content, 0, 8);
+        Path target = tempDir.resolve("upload.bin");
+
+        IngestResult result = StreamingIngest.ingest(new ByteArrayInputStream(content), target, "upload.bin");
+
+        String expectedHash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        assertEquals(expectedHash, result.getSha256());
+        assertEquals(content.length, result.getSize());
+        assertEquals("image/png", result.getContentType());
+        assertArrayEquals(content, Files.readAllBytes(target));
+
+        IngestResult inspected = StreamingIngest.inspect(target, "upload.bin");
+        assertEquals(expectedHash, inspected.getSha256());
+        assertEquals(content.length, inspected.getSize());
+    }
+
+    @Test
+    public void testEmptyUpload() throws Exception {
+        IngestResult result = StreamingIngest.ingest(new ByteArrayInputStream(new byte[0]),
+                tempDir.resolve("empty"), null);
+
+        assertEquals(0, result.getSize());
+        assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", result.getSha256());
+        assertEquals("application/octet-stream", result.getContentType());
+    }
+
+    @Test
+    public void testContentTypeFallsBackToNameThenText() {
+        byte[] csv = "id,name\n1,report\n".getBytes(StandardCharsets.UTF_8);
+        assertEquals("text/csv", ContentTypeDetector.detect(csv, csv.length, "report.csv"));
+        assertEquals("text/plain", ContentTypeDetector.detect(csv, csv.length, "report"));
+
+        byte[] docx = { 'P', 'K', 3, 4, 0, 0 };
+        assertEquals("application/vnd.openxmlformats-officedocument.wordprocessingml.document",
+                ContentTypeDetector.detect(docx, docx.length, "cv.docx"));
+        assertEquals("application/zip", ContentTypeDetector.detect(docx, docx.length, null));
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.filestoring.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ThrottledDataSourceTest {
+
+    @Test
+    public void testLoansOfTheSamePooledConnectionAreDistinctHandles() throws Exception {
+        Connection pooled = mock(Connection.class);
+        DataSource target = mock(DataSource.class);
+        when(target.getConnection()).thenReturn(pooled);
+        ThrottledDataSource dataSource = new ThrottledDataSource(target, 2, 10);
+
+        Connection first = dataSource.getConnection();
+        Connection second = dataSource.getConnection();
+
+        assertEquals(first, first);
+        assertNotEquals(first, second);
+        assertNotEquals(first, pooled);
+        assertEquals(System.identityHashCode(first), first.hashCode());
+        verify(pooled, never()).close();
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void testUnwrapAnswersForTheProxyBeforeTheDelegate() throws Exception {
+        Connection pooled = mock(Connection.class);
+        DataSource target = mock(DataSource.class);
+        when(target.getConnection()).thenReturn(pooled);
+        when(pooled.unwrap(Runnable.class)).thenReturn(() -> { });
+        when(pooled.isWrapperFor(Runnable.class)).thenReturn(true);
+        ThrottledDataSource dataSource = new ThrottledDataSource(target, 1, 10);
+
+        Connection connection = dataSource.getConnection();
+
+        assertSame(connection, connection.unwrap(Connection.class));
+        assertTrue(connection.isWrapperFor(Connection.class));
+        assertNotNull(connection.unwrap(Runnable.class));
+        assertTrue(connection.isWrapperFor(Runnable.class));
+        verify(pooled, never()).unwrap(Connection.class);
+        connection.close();
+    }
+
+    @Test
+    public void testPermitReturnsOnceHoweverOftenCloseIsCalled() throws Exception {
+        DataSource target = mock(DataSource.class);
+        when(target.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+        ThrottledDataSource dataSource = new ThrottledDataSource(target, 1, 10);
+
+        Connection connection = dataSource.getConnection();
+        assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+        connection.close();
+        connection.close();
+
+        assertEquals(1, dataSource.availablePermits());
+    }
+}
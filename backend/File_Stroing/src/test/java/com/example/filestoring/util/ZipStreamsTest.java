@@ -0,0 +1,61 @@
+package com.example.filestoring.util;
+
+import com.example.filestoring.storage.LocalStorageBackend;
+import com.example.filestoring.storage.StorageBackend;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ZipStreamsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testStoredAndDeflatedEntriesRoundTrip() throws Exception {
+        // Larger than one buffer so the copy loop runs more than once
+        byte[] content = new byte[ZipStreams.BUFFER_SIZE * 3 + 17];
+        new Random(42).nextBytes(content);
+        Files.write(tempDir.resolve("photo.jpg"), content);
+        Files.write(tempDir.resolve("notes.txt"), content);
+        StorageBackend storage = new LocalStorageBackend(tempDir);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(baos)) {
+            byte[] buffer = ZipStreams.newBuffer();
+            ZipStreams.writeEntry(storage, "photo.jpg", "photo.jpg", ZipCompression.AUTO, zos, buffer);
+            ZipStreams.writeEntry(storage, "notes.txt", "notes.txt", ZipCompression.AUTO, zos, buffer);
+        }
+
+        try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+            ZipEntry first = zis.getNextEntry();
+            assertEquals("photo.jpg", first.getName());
+            assertEquals(ZipEntry.STORED, first.getMethod(), "Already-compressed media should be stored");
+            assertArrayEquals(content, zis.readAllBytes());
+
+            ZipEntry second = zis.getNextEntry();
+            assertEquals("notes.txt", second.getName());
+            assertEquals(ZipEntry.DEFLATED, second.getMethod(), "Other files should be deflated");
+            assertArrayEquals(content, zis.readAllBytes());
+
+            assertNull(zis.getNextEntry());
+        }
+    }
+
+    @Test
+    public void testFromStringFallsBackToAuto() {
+        assertEquals(ZipCompression.STORED, ZipCompression.fromString("stored"));
+        assertEquals(ZipCompression.AUTO, ZipCompression.fromString(null));
+        assertEquals(ZipCompression.AUTO, ZipCompression.fromString("fastest-ever"));
+    }
+}
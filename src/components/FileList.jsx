@@ -79,7 +79,7 @@ const FileList = () => {
 
   useEffect(() => {
     axios
-      .get("http://localhost:8080/files/all")
+      .get("http://localhost:8080/files/all?owner=true")
       .then((response) => {
         setFiles(response.data);
         setFilteredFiles(response.data);
@@ -18,7 +18,7 @@ const Home = () => {
     console.log("User ID from cookies: ", storedUserId); // For debugging purposes
 
     // Fetch files (latest 10)
-    fetch("http://localhost:8080/files/all")
+    fetch("http://localhost:8080/files/all?owner=true")
       .then((response) => response.json())
       .then((data) => {
         // Filter last 10 files (most recent)
@@ -8,12 +8,6 @@ const getCookie = (name) => {
   return cookieString ? decodeURIComponent(cookieString.split("=")[1]) : null;
 };
 
-// Function to strip HTML tags from description
-const stripHtml = (html) => {
-  const doc = new DOMParser().parseFromString(html, "text/html");
-  return doc.body.textContent || "";
-};
-
 const ProfilePage = () => {
   const [user, setUser] = useState(null);
   const [files, setFiles] = useState([]);
@@ -97,10 +91,10 @@ const ProfilePage = () => {
               <div className="h-20 w-[80%] ">
                 <h4 className="font-bold">{file.title}</h4>
                 <p className="text-gray-700 text-nowrap truncate  w-full   mt-3">
-                  <strong>Description:</strong>{" "}
-                  {file.description
-                    ? stripHtml(file.description)
-                    : "No description available."}
+                  <strong>Uploaded:</strong>{" "}
+                  {file.createdDate
+                    ? new Date(file.createdDate).toLocaleDateString("en-GB")
+                    : "Unknown date"}
                 </p>
               </div>
               <div className="space-x-2">